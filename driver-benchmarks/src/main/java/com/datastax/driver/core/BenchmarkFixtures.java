@@ -0,0 +1,205 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds the protocol messages and cluster state used by the benchmarks.
+ * <p>
+ * Messages are built by hand following the native protocol spec, the same way Cassandra would send them, so that the
+ * benchmarks measure the driver's decoding paths and not a test double. Everything here is done once per trial and is
+ * never measured.
+ */
+final class BenchmarkFixtures {
+
+    static final ProtocolVersion VERSION = ProtocolVersion.V3;
+
+    static final String KEYSPACE = "ks";
+    static final String TABLE = "users";
+
+    static final String INSERT_QUERY = "INSERT INTO ks.users (id, name, age, score, updated) VALUES (?, ?, ?, ?, ?)";
+
+    // The columns of the table used for rows and prepared statements, the partition key comes first
+    static final String[] COLUMN_NAMES = { "id", "name", "age", "score", "updated" };
+    static final DataType[] COLUMN_TYPES = { DataType.uuid(), DataType.text(), DataType.cint(), DataType.cdouble(), DataType.timestamp() };
+
+    private static final int RESULT_OPCODE = 8;
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * The values of a row of the table, the same for a given index.
+     */
+    static Object[] rowValues(int i) {
+        return new Object[]{
+            new UUID(0x1234L, i),
+            "user" + i,
+            20 + i % 50,
+            i * 1.5,
+            new Date(1420070400000L + i * 1000L)
+        };
+    }
+
+    static ColumnDefinitions columnDefinitions() {
+        ColumnDefinitions.Definition[] defs = new ColumnDefinitions.Definition[COLUMN_NAMES.length];
+        for (int i = 0; i < defs.length; i++)
+            defs[i] = new ColumnDefinitions.Definition(KEYSPACE, TABLE, COLUMN_NAMES[i], COLUMN_TYPES[i]);
+        return new ColumnDefinitions(defs);
+    }
+
+    /**
+     * The body of a RESULT message of kind ROWS containing {@code rowCount} rows of the table.
+     */
+    static ChannelBuffer rowsBody(int rowCount) {
+        ChannelBuffer body = ChannelBuffers.dynamicBuffer();
+        body.writeInt(2); // Responses.Result.Kind.ROWS
+        writeMetadata(body, false);
+        body.writeInt(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            Object[] values = rowValues(i);
+            for (int c = 0; c < values.length; c++)
+                CBUtil.writeValue(COLUMN_TYPES[c].serialize(values[c], VERSION), body);
+        }
+        return body;
+    }
+
+    /**
+     * A complete RESULT frame, as received from the server, wrapping {@code body}.
+     */
+    static ChannelBuffer responseFrame(int streamId, ChannelBuffer body) {
+        ChannelBuffer frame = ChannelBuffers.buffer(Frame.Header.lengthFor(VERSION) + body.readableBytes());
+        frame.writeByte(0x80 | VERSION.toInt()); // the first bit is set for responses
+        frame.writeByte(0); // no flags
+        frame.writeShort(streamId);
+        frame.writeByte(RESULT_OPCODE);
+        frame.writeInt(body.readableBytes());
+        frame.writeBytes(body, body.readerIndex(), body.readableBytes());
+        return frame;
+    }
+
+    /**
+     * The statement that {@link #INSERT_QUERY} would be prepared to. There is no schema, so it has no routing
+     * information.
+     */
+    static PreparedStatement preparedInsert() {
+        ChannelBuffer body = ChannelBuffers.dynamicBuffer();
+        body.writeInt(4); // Responses.Result.Kind.PREPARED
+        byte[] id = new byte[16];
+        Arrays.fill(id, (byte)42);
+        CBUtil.writeBytes(id, body);
+        writeMetadata(body, false);
+        writeMetadata(body, true); // no result metadata for an INSERT
+        Responses.Result.Prepared msg = (Responses.Result.Prepared)Responses.Result.decoder.decode(body, VERSION);
+
+        return DefaultPreparedStatement.fromMessage(msg, new Metadata(null), VERSION, INSERT_QUERY, KEYSPACE);
+    }
+
+    private static void writeMetadata(ChannelBuffer body, boolean empty) {
+        if (empty) {
+            body.writeInt(1 << 2); // NO_METADATA
+            body.writeInt(0);
+            return;
+        }
+        body.writeInt(1); // GLOBAL_TABLES_SPEC
+        body.writeInt(COLUMN_NAMES.length);
+        CBUtil.writeString(KEYSPACE, body);
+        CBUtil.writeString(TABLE, body);
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            CBUtil.writeString(COLUMN_NAMES[i], body);
+            body.writeShort(COLUMN_TYPES[i].getName().protocolId);
+        }
+    }
+
+    /**
+     * Builds a cluster of {@code dcCount} data centers of {@code hostsPerDc} hosts each, with {@code vnodes} tokens per
+     * host, and a keyspace {@link #KEYSPACE} replicated {@code replicationFactor} times in each data center.
+     * <p>
+     * Only {@link Cluster#getMetadata()} and {@link Cluster#getConfiguration()} are usable on the cluster of the returned
+     * ring, which is all load balancing policies need.
+     */
+    static Ring ring(int dcCount, int hostsPerDc, int vnodes, int replicationFactor) throws Exception {
+        Metadata metadata = new Metadata(null);
+        Random random = new Random(42);
+        Map<Host, Collection<String>> tokens = new HashMap<Host, Collection<String>>();
+        StringBuilder options = new StringBuilder("{");
+        for (int dc = 0; dc < dcCount; dc++) {
+            String dcName = "dc" + (dc + 1);
+            for (int i = 0; i < hostsPerDc; i++) {
+                Host host = new Host(new InetSocketAddress(String.format("127.0.%d.%d", dc, i + 1), 9042), new ConvictionPolicy.Simple.Factory(), null);
+                host.setLocationInfo(dcName, "rack1");
+                host.setUp();
+                List<String> hostTokens = new ArrayList<String>(vnodes);
+                for (int v = 0; v < vnodes; v++)
+                    hostTokens.add(Long.toString(random.nextLong()));
+                tokens.put(host, hostTokens);
+            }
+            if (dc > 0)
+                options.append(',');
+            options.append(String.format("\"%s\":\"%d\"", dcName, replicationFactor));
+        }
+        options.append('}');
+
+        addKeyspace(metadata, KEYSPACE, "org.apache.cassandra.locator.NetworkTopologyStrategy", options.toString());
+        metadata.rebuildTokenMap("org.apache.cassandra.dht.Murmur3Partitioner", tokens);
+
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(cluster.getConfiguration()).thenReturn(new Configuration());
+        return new Ring(cluster, tokens.keySet());
+    }
+
+    static class Ring {
+        final Cluster cluster;
+        final Collection<Host> hosts;
+
+        private Ring(Cluster cluster, Collection<Host> hosts) {
+            this.cluster = cluster;
+            this.hosts = hosts;
+        }
+    }
+
+    // Keyspaces are only ever added when the schema is read from the system tables, so do what Metadata#rebuildSchema does
+    @SuppressWarnings("unchecked")
+    private static void addKeyspace(Metadata metadata, String name, String strategy, String options) throws Exception {
+        ColumnDefinitions defs = new ColumnDefinitions(new ColumnDefinitions.Definition[]{
+            new ColumnDefinitions.Definition("system", "schema_keyspaces", "keyspace_name", DataType.text()),
+            new ColumnDefinitions.Definition("system", "schema_keyspaces", "durable_writes", DataType.cboolean()),
+            new ColumnDefinitions.Definition("system", "schema_keyspaces", "strategy_class", DataType.text()),
+            new ColumnDefinitions.Definition("system", "schema_keyspaces", "strategy_options", DataType.text())
+        });
+        List<ByteBuffer> values = Arrays.asList(
+            DataType.text().serialize(name, VERSION),
+            DataType.cboolean().serialize(true, VERSION),
+            DataType.text().serialize(strategy, VERSION),
+            DataType.text().serialize(options, VERSION));
+        KeyspaceMetadata ksm = KeyspaceMetadata.build(ArrayBackedRow.fromData(defs, null, VERSION, values), null);
+
+        Field keyspaces = Metadata.class.getDeclaredField("keyspaces");
+        keyspaces.setAccessible(true);
+        ((ConcurrentMap<String, KeyspaceMetadata>)keyspaces.get(metadata)).put(name, ksm);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Binding the values of a prepared statement, which serializes each value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoundStatementBenchmark {
+
+    private PreparedStatement prepared;
+    private Object[] values;
+
+    private UUID id;
+    private String name;
+    private int age;
+    private double score;
+    private Date updated;
+
+    @Setup
+    public void setup() {
+        prepared = BenchmarkFixtures.preparedInsert();
+        values = BenchmarkFixtures.rowValues(1);
+        id = (UUID)values[0];
+        name = (String)values[1];
+        age = (Integer)values[2];
+        score = (Double)values[3];
+        updated = (Date)values[4];
+    }
+
+    @Benchmark
+    public BoundStatement bindAll() {
+        return prepared.bind(values);
+    }
+
+    @Benchmark
+    public BoundStatement setByIndex() {
+        return prepared.bind()
+                       .setUUID(0, id)
+                       .setString(1, name)
+                       .setInt(2, age)
+                       .setDouble(3, score)
+                       .setDate(4, updated);
+    }
+
+    @Benchmark
+    public BoundStatement setByName() {
+        return prepared.bind()
+                       .setUUID("id", id)
+                       .setString("name", name)
+                       .setInt("age", age)
+                       .setDouble("score", score)
+                       .setDate("updated", updated);
+    }
+}
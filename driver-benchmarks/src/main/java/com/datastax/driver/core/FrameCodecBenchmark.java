@@ -0,0 +1,102 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Encoding of requests into frames and decoding of frames into responses, through the same handlers as a connection's
+ * pipeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameCodecBenchmark {
+
+    @Param({ "1", "100" })
+    public int rowCount;
+
+    private EncoderEmbedder<ChannelBuffer> encoder;
+    private DecoderEmbedder<Message.Response> decoder;
+
+    private Requests.Query query;
+    private Requests.Execute execute;
+    private ChannelBuffer response;
+
+    @Setup
+    public void setup() {
+        ProtocolVersion version = BenchmarkFixtures.VERSION;
+        // Same order as in Connection's pipeline
+        encoder = new EncoderEmbedder<ChannelBuffer>(new Frame.Encoder(), new Message.ProtocolEncoder(version));
+        decoder = new DecoderEmbedder<Message.Response>(new Frame.Decoder(), new Message.ProtocolDecoder());
+
+        Object[] values = BenchmarkFixtures.rowValues(1);
+        List<ByteBuffer> serialized = new ArrayList<ByteBuffer>(values.length);
+        for (int i = 0; i < values.length; i++)
+            serialized.add(BenchmarkFixtures.COLUMN_TYPES[i].serialize(values[i], version));
+
+        query = new Requests.Query("SELECT * FROM ks.users WHERE id = 1234", options(Collections.<ByteBuffer>emptyList()));
+        query.setStreamId(1);
+        byte[] id = new byte[16];
+        Arrays.fill(id, (byte)42);
+        execute = new Requests.Execute(MD5Digest.wrap(id), options(serialized));
+        execute.setStreamId(1);
+
+        response = BenchmarkFixtures.responseFrame(1, BenchmarkFixtures.rowsBody(rowCount));
+    }
+
+    private static Requests.QueryProtocolOptions options(List<ByteBuffer> values) {
+        return new Requests.QueryProtocolOptions(ConsistencyLevel.LOCAL_ONE, values, false, 5000, null, ConsistencyLevel.SERIAL, Long.MIN_VALUE);
+    }
+
+    @Benchmark
+    public int encodeQuery() {
+        return encode(query);
+    }
+
+    @Benchmark
+    public int encodeExecute() {
+        return encode(execute);
+    }
+
+    private int encode(Message.Request request) {
+        encoder.offer(request);
+        ChannelBuffer frame = encoder.poll();
+        int length = frame.readableBytes();
+        // The embedder never completes write futures, so give the buffer back to the pool as the encoder's listener would
+        FrameBufferPool.instance.release(frame);
+        return length;
+    }
+
+    @Benchmark
+    public Message.Response decodeRows() {
+        decoder.offer(response.duplicate());
+        return decoder.poll();
+    }
+}
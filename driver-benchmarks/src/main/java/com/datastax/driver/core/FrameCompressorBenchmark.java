@@ -0,0 +1,72 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compression of request frames and decompression of response frames.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrameCompressorBenchmark {
+
+    @Param({ "LZ4", "SNAPPY" })
+    public String compression;
+
+    @Param({ "1", "100" })
+    public int rowCount;
+
+    private FrameCompressor compressor;
+    private ChannelBuffer body;
+    private ChannelBuffer compressedBody;
+
+    @Setup
+    public void setup() throws IOException {
+        compressor = compression.equals("LZ4")
+                   ? FrameCompressor.LZ4Compressor.instance
+                   : FrameCompressor.SnappyCompressor.instance;
+        if (compressor == null)
+            throw new IllegalStateException(compression + " is not available on the classpath");
+
+        body = BenchmarkFixtures.rowsBody(rowCount);
+        compressedBody = compressor.compress(frame(body, EnumSet.noneOf(Frame.Header.Flag.class))).body;
+    }
+
+    @Benchmark
+    public Frame compress() throws IOException {
+        return compressor.compress(frame(body, EnumSet.noneOf(Frame.Header.Flag.class)));
+    }
+
+    @Benchmark
+    public Frame decompress() throws IOException {
+        return compressor.decompress(frame(compressedBody, EnumSet.of(Frame.Header.Flag.COMPRESSED)));
+    }
+
+    // Compressors consume the body they read, so each frame gets its own view of the buffer
+    private static Frame frame(ChannelBuffer buffer, EnumSet<Frame.Header.Flag> flags) {
+        return Frame.create(BenchmarkFixtures.VERSION, 8, 0, flags, buffer.duplicate());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Murmur3 hashing of partition keys, done for every token aware query that has no routing token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class M3PTokenBenchmark {
+
+    @Param({ "4", "16", "64" })
+    public int keySize;
+
+    private ByteBuffer key;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = new byte[keySize];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte)i;
+        key = ByteBuffer.wrap(bytes);
+    }
+
+    @Benchmark
+    public Token hash() {
+        return Token.M3PToken.FACTORY.hash(key);
+    }
+}
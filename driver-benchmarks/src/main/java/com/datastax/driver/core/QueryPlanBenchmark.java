@@ -0,0 +1,92 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+
+/**
+ * Computation and full iteration of query plans, on a ring of 2 data centers of {@code hostsPerDc} hosts with vnodes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryPlanBenchmark {
+
+    private static final int KEY_COUNT = 1024;
+
+    @Param({ "3", "30" })
+    public int hostsPerDc;
+
+    private LoadBalancingPolicy tokenAware;
+    private LoadBalancingPolicy dcAware;
+
+    // Different keys so that the benchmark doesn't always hit the same replicas
+    private Statement[] statements;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.Ring ring = BenchmarkFixtures.ring(2, hostsPerDc, 256, 3);
+
+        tokenAware = new TokenAwarePolicy(new DCAwareRoundRobinPolicy("dc1", 2));
+        tokenAware.init(ring.cluster, ring.hosts);
+        dcAware = new DCAwareRoundRobinPolicy("dc1", 2);
+        dcAware.init(ring.cluster, ring.hosts);
+
+        statements = new Statement[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            ByteBuffer key = ByteBuffer.allocate(4);
+            key.putInt(0, i);
+            statements[i] = new SimpleStatement("SELECT * FROM users WHERE k = ?").setRoutingKey(key);
+        }
+    }
+
+    @Benchmark
+    public void tokenAware(Cursor cursor, Blackhole blackhole) {
+        consume(tokenAware.newQueryPlan(BenchmarkFixtures.KEYSPACE, next(cursor)), blackhole);
+    }
+
+    @Benchmark
+    public void dcAware(Cursor cursor, Blackhole blackhole) {
+        consume(dcAware.newQueryPlan(BenchmarkFixtures.KEYSPACE, next(cursor)), blackhole);
+    }
+
+    private Statement next(Cursor cursor) {
+        return statements[cursor.next++ & (KEY_COUNT - 1)];
+    }
+
+    // Query plans are lazy, iterate them fully for the benchmark to include the whole computation
+    private static void consume(Iterator<Host> plan, Blackhole blackhole) {
+        while (plan.hasNext())
+            blackhole.consume(plan.next());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding of the body of a ROWS result, then of its rows, as done when a {@link ResultSet} is iterated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowsDecodingBenchmark {
+
+    @Param({ "1", "100", "5000" })
+    public int rowCount;
+
+    private ChannelBuffer body;
+
+    @Setup
+    public void setup() {
+        body = BenchmarkFixtures.rowsBody(rowCount);
+    }
+
+    /**
+     * Splits the rows into values without deserializing them.
+     */
+    @Benchmark
+    public void decodeRows(Blackhole blackhole) {
+        Responses.Result.Rows rows = decode();
+        List<ByteBuffer> row;
+        while ((row = rows.data.poll()) != null)
+            blackhole.consume(row);
+    }
+
+    /**
+     * Also reads every value, through the same {@link Row} implementation as the driver's result sets.
+     */
+    @Benchmark
+    public void decodeAndReadRows(Blackhole blackhole) {
+        Responses.Result.Rows rows = decode();
+        ColumnDefinitions columns = rows.metadata.columns;
+        List<ByteBuffer> data;
+        while ((data = rows.data.poll()) != null) {
+            Row row = ArrayBackedRow.fromData(columns, null, BenchmarkFixtures.VERSION, data);
+            blackhole.consume(row.getUUID(0));
+            blackhole.consume(row.getString(1));
+            blackhole.consume(row.getInt(2));
+            blackhole.consume(row.getDouble(3));
+            blackhole.consume(row.getDate(4));
+        }
+    }
+
+    private Responses.Result.Rows decode() {
+        return (Responses.Result.Rows)Responses.Result.decoder.decode(body.duplicate(), BenchmarkFixtures.VERSION);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Acquisition and release of stream ids, by several threads sharing a connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamIdGeneratorBenchmark {
+
+    private StreamIdGenerator generator;
+
+    @Setup
+    public void setup() {
+        generator = StreamIdGenerator.newInstance(BenchmarkFixtures.VERSION);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int uncontended() throws BusyConnectionException {
+        return acquireAndRelease();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int contended() throws BusyConnectionException {
+        return acquireAndRelease();
+    }
+
+    private int acquireAndRelease() throws BusyConnectionException {
+        int id = generator.next();
+        generator.release(id);
+        return id;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Serialization and deserialization of a value of each type by its {@link TypeCodec}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeCodecBenchmark {
+
+    @Param({ "int", "bigint", "double", "text", "ascii", "blob", "uuid", "timestamp", "inet", "varint", "decimal", "list<int>", "set<text>", "map<text,int>" })
+    public String type;
+
+    private TypeCodec<Object> codec;
+    private Object value;
+    private ByteBuffer serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        DataType dataType;
+        if (type.equals("int")) {
+            dataType = DataType.cint();
+            value = 42;
+        } else if (type.equals("bigint")) {
+            dataType = DataType.bigint();
+            value = 42L;
+        } else if (type.equals("double")) {
+            dataType = DataType.cdouble();
+            value = 4.2;
+        } else if (type.equals("text")) {
+            dataType = DataType.text();
+            value = "The quick brown fox jumps over the lazy dog, \u00e9\u00e8";
+        } else if (type.equals("ascii")) {
+            dataType = DataType.ascii();
+            value = "The quick brown fox jumps over the lazy dog";
+        } else if (type.equals("blob")) {
+            dataType = DataType.blob();
+            value = ByteBuffer.wrap(new byte[256]);
+        } else if (type.equals("uuid")) {
+            dataType = DataType.uuid();
+            value = UUID.randomUUID();
+        } else if (type.equals("timestamp")) {
+            dataType = DataType.timestamp();
+            value = new Date();
+        } else if (type.equals("inet")) {
+            dataType = DataType.inet();
+            value = InetAddress.getByName("127.0.0.1");
+        } else if (type.equals("varint")) {
+            dataType = DataType.varint();
+            value = new BigInteger("123456789012345678901234567890");
+        } else if (type.equals("decimal")) {
+            dataType = DataType.decimal();
+            value = new BigDecimal("12345678901234567890.1234567890");
+        } else if (type.equals("list<int>")) {
+            dataType = DataType.list(DataType.cint());
+            List<Integer> list = new ArrayList<Integer>();
+            for (int i = 0; i < 10; i++)
+                list.add(i);
+            value = list;
+        } else if (type.equals("set<text>")) {
+            dataType = DataType.set(DataType.text());
+            Set<String> set = new HashSet<String>();
+            for (int i = 0; i < 10; i++)
+                set.add("element" + i);
+            value = set;
+        } else if (type.equals("map<text,int>")) {
+            dataType = DataType.map(DataType.text(), DataType.cint());
+            value = ImmutableMap.of("a", 1, "b", 2, "c", 3, "d", 4, "e", 5);
+        } else {
+            throw new IllegalArgumentException("Unknown type " + type);
+        }
+        codec = dataType.codec(BenchmarkFixtures.VERSION);
+        serialized = codec.serialize(value);
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() {
+        return codec.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        // Codecs don't move the position of the buffer they read, but use a duplicate to be safe
+        return codec.deserialize(serialized.duplicate());
+    }
+}
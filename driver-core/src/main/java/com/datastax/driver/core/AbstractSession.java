@@ -117,6 +117,14 @@ public abstract class AbstractSession implements Session {
         });
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ListenableFuture<Void> scanAsync(String keyspace, String table, int splitsPerRange, int maxConcurrentSplits, ScanCallback callback) {
+        return new TableScanner(this, keyspace, table, splitsPerRange, maxConcurrentSplits, callback).start();
+    }
+
     /**
      * {@inheritDoc}
      */
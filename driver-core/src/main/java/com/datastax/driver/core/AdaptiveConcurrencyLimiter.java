@@ -0,0 +1,131 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adjusts the number of requests that each host is allowed to have in flight, based on
+ * the latencies reported to the cluster's {@link LatencyTracker}s.
+ * <p>
+ * This follows a gradient algorithm: each host keeps a long-term average of its latency,
+ * which approximates its latency when it is not overloaded. When recent latencies rise
+ * above that average, the limit shrinks proportionally (by at most half); when they stay
+ * close to it, the limit grows by roughly its square root, which leaves room to probe for
+ * more capacity. Changes are smoothed over successive samples. The limit only grows while
+ * the host actually uses at least half of it, otherwise low latencies say nothing about
+ * how the host would behave with more requests.
+ *
+ * @see PoolingOptions#setAdaptiveConcurrencyLimitEnabled(boolean)
+ */
+class AdaptiveConcurrencyLimiter implements LatencyTracker {
+
+    static final int MIN_LIMIT = SystemProperties.getInt("com.datastax.driver.ADAPTIVE_CONCURRENCY_MIN_LIMIT", 8);
+    static final int MAX_LIMIT = SystemProperties.getInt("com.datastax.driver.ADAPTIVE_CONCURRENCY_MAX_LIMIT", 1024);
+    static final int INITIAL_LIMIT = SystemProperties.getInt("com.datastax.driver.ADAPTIVE_CONCURRENCY_INITIAL_LIMIT", 128);
+
+    // How much higher than the long-term average recent latencies can be before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_TERM_WINDOW = 600;
+
+    private final ConcurrentMap<Host, Limit> limits = new ConcurrentHashMap<Host, Limit>();
+
+    /**
+     * Returns whether the given host already has as many requests in flight as it is allowed to.
+     *
+     * @param inFlight the number of requests currently in flight to the host.
+     */
+    boolean isOverLimit(Host host, int inFlight) {
+        Limit limit = limits.get(host);
+        if (limit == null)
+            return inFlight >= INITIAL_LIMIT;
+        limit.inFlight = inFlight;
+        return inFlight >= limit.value;
+    }
+
+    @Override
+    public void update(Host host, long newLatencyNanos) {
+        Limit limit = limits.get(host);
+        if (limit == null) {
+            Limit newLimit = new Limit();
+            limit = limits.putIfAbsent(host, newLimit);
+            if (limit == null)
+                limit = newLimit;
+        }
+        limit.update(newLatencyNanos);
+    }
+
+    void onRemove(Host host) {
+        limits.remove(host);
+    }
+
+    static class Limit {
+        volatile int value = INITIAL_LIMIT;
+
+        // The last in-flight count seen when checking the limit. Racy, but only used as a hint of whether the limit is
+        // reached.
+        volatile int inFlight;
+
+        private final AtomicReference<State> state = new AtomicReference<State>(new State(INITIAL_LIMIT, -1));
+
+        void update(long latencyNanos) {
+            if (latencyNanos <= 0)
+                return;
+
+            while (true) {
+                State current = state.get();
+                State next = current.next(latencyNanos, inFlight >= value / 2);
+                if (state.compareAndSet(current, next)) {
+                    value = (int)next.estimatedLimit;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class State {
+        final double estimatedLimit;
+        final double longTermLatency;
+
+        State(double estimatedLimit, double longTermLatency) {
+            this.estimatedLimit = estimatedLimit;
+            this.longTermLatency = longTermLatency;
+        }
+
+        State next(long latencyNanos, boolean canGrow) {
+            if (longTermLatency < 0)
+                return new State(estimatedLimit, latencyNanos);
+
+            double newLongTermLatency = longTermLatency + (latencyNanos - longTermLatency) / LONG_TERM_WINDOW;
+
+            // If recent latencies are much lower than the long-term average (typically after an overload), let the
+            // average catch up faster so that the limit can recover
+            if (newLongTermLatency / latencyNanos > 2)
+                newLongTermLatency *= 0.95;
+
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * newLongTermLatency / latencyNanos));
+            double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            double newLimit = estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING;
+            if (newLimit > estimatedLimit && !canGrow)
+                newLimit = estimatedLimit;
+            newLimit = Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, newLimit));
+            return new State(newLimit, newLongTermLatency);
+        }
+    }
+}
@@ -31,7 +31,7 @@ import org.slf4j.LoggerFactory;
 import com.datastax.driver.core.exceptions.DriverInternalError;
 
 /**
- * Default implementation of a result set, backed by an ArrayDeque of ArrayList.
+ * Default implementation of a result set, backed by a queue of rows (see {@link LazyRows}).
  */
 abstract class ArrayBackedResultSet implements ResultSet {
 
@@ -219,6 +219,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
         private final SessionManager session;
         private final Statement statement;
+        private final int prefetchThreshold;
 
         private MultiPage(ColumnDefinitions metadata,
                           Token.Factory tokenFactory,
@@ -239,6 +240,11 @@ abstract class ArrayBackedResultSet implements ResultSet {
             this.fetchState = new FetchingState(pagingState, null);
             this.session = session;
             this.statement = statement;
+
+            int threshold = statement.getPrefetchThreshold();
+            this.prefetchThreshold = threshold < 0
+                                   ? session.configuration().getQueryOptions().getPrefetchThreshold()
+                                   : threshold;
         }
 
         public boolean isExhausted() {
@@ -248,7 +254,22 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
         public Row one() {
             prepareNextRow();
-            return ArrayBackedRow.fromData(metadata, tokenFactory, protocolVersion, currentPage.poll());
+            Row row = ArrayBackedRow.fromData(metadata, tokenFactory, protocolVersion, currentPage.poll());
+            maybePrefetch();
+            return row;
+        }
+
+        // Starts fetching the next page in the background if we're running low on rows
+        private void maybePrefetch() {
+            if (prefetchThreshold <= 0)
+                return;
+
+            FetchingState fetchingState = this.fetchState;
+            if (fetchingState == null || fetchingState.nextStart == null)
+                return;
+
+            if (getAvailableWithoutFetching() < prefetchThreshold)
+                fetchMoreResults(fetchingState);
         }
 
         public int getAvailableWithoutFetching() {
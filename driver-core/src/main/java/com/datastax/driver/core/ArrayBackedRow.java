@@ -21,7 +21,7 @@ import java.util.*;
 import com.datastax.driver.core.exceptions.DriverInternalError;
 
 /**
- * Implementation of a Row backed by an ArrayList.
+ * Implementation of a Row backed by a list of serialized values.
  */
 class ArrayBackedRow extends AbstractGettableData implements Row {
 
@@ -0,0 +1,386 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Session} wrapper that groups the single-partition writes executed asynchronously on it
+ * into {@code UNLOGGED} batches.
+ * <p>
+ * Writes are collected for a short window (or until a group reaches its maximum size) and grouped by
+ * replica set, using {@link Metadata#getReplicas}: each group is then sent as a single
+ * {@link BatchStatement}, whose routing key is the one of its first statement so that a token-aware
+ * load balancing policy sends it to one of the group's replicas. Each statement still gets its own
+ * future, which completes when the batch it was sent in completes.
+ * <p>
+ * Only {@link BoundStatement}s that don't return rows, have a routing key and a keyspace, target a table
+ * whose metadata is known, and don't use tracing nor a statement-level default timestamp are batched;
+ * any other statement is executed directly on the wrapped session. Writes to the same partition are
+ * never sent in the same batch: since all the statements of a batch get the same timestamp, the last
+ * one would not reliably win. Note that:
+ * <ul>
+ *   <li>the statements of a batch share the outcome of the batch: if it fails, all its statements fail;</li>
+ *   <li>conditional updates should not be executed through this session, since a batch with conditions
+ *   can't span multiple partitions;</li>
+ *   <li>batching requires version 2 or above of the native protocol;</li>
+ *   <li>batching requires the metadata of the tables written to, so nothing is batched if
+ *   {@link QueryOptions#setTableMetadataLoading table metadata loading} is disabled or if the keyspace
+ *   is excluded by {@link QueryOptions#setMetadataKeyspaces}.</li>
+ * </ul>
+ * Once this session is closed, statements are executed directly on the wrapped session.
+ */
+public class BatchingSession extends AbstractSession {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingSession.class);
+
+    /**
+     * The default window during which writes are collected: 500 microseconds.
+     */
+    public static final long DEFAULT_WINDOW_MICROS = 500;
+
+    /**
+     * The default maximum number of statements per batch: 32.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+
+    private final Session session;
+    private final long windowMicros;
+    private final int maxBatchSize;
+
+    private final ConcurrentMap<GroupKey, Group> groups = new ConcurrentHashMap<GroupKey, Group>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+    private final AtomicBoolean warnedNoTableMetadata = new AtomicBoolean();
+
+    /**
+     * Creates a new batching session wrapping {@code session}, using the default window
+     * and maximum batch size.
+     *
+     * @param session the session to wrap.
+     */
+    public BatchingSession(Session session) {
+        this(session, DEFAULT_WINDOW_MICROS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new batching session wrapping {@code session}.
+     *
+     * @param session the session to wrap.
+     * @param windowMicros how long writes are collected before their group is sent, in microseconds.
+     * @param maxBatchSize the maximum number of statements in a batch; a group is sent as soon as it reaches
+     * that size.
+     *
+     * @throws IllegalArgumentException if {@code windowMicros < 0} or {@code maxBatchSize < 1}.
+     */
+    public BatchingSession(Session session, long windowMicros, int maxBatchSize) {
+        if (windowMicros < 0)
+            throw new IllegalArgumentException("Invalid window, should be >= 0, got " + windowMicros);
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Invalid maximum batch size, should be >= 1, got " + maxBatchSize);
+
+        this.session = session;
+        this.windowMicros = windowMicros;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Cassandra Java Driver batching-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Returns the session wrapped by this batching session.
+     *
+     * @return the wrapped session.
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(Statement statement) {
+        GroupKey key = closed ? null : groupKeyFor(statement);
+        if (key == null)
+            return session.executeAsync(statement);
+
+        PendingWrite write = new PendingWrite(statement, statement.getRoutingKey());
+        while (true) {
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(key);
+                Group previous = groups.putIfAbsent(key, group);
+                if (previous != null)
+                    group = previous;
+            }
+            if (group.add(write))
+                return write;
+            // The group was sent, make sure it's not in the map anymore and start over
+            groups.remove(key, group);
+        }
+    }
+
+    private GroupKey groupKeyFor(Statement statement) {
+        if (!(statement instanceof BoundStatement) || statement.isTracing() || statement.getDefaultTimestamp() != Long.MIN_VALUE)
+            return null;
+
+        if (getCluster().getConfiguration().getProtocolOptions().getProtocolVersionEnum() == ProtocolVersion.V1)
+            return null;
+
+        BoundStatement bs = (BoundStatement)statement;
+        PreparedId preparedId = bs.preparedStatement().getPreparedId();
+        // Statements that return rows are reads
+        if (preparedId.resultSetMetadata != null && preparedId.resultSetMetadata.size() > 0)
+            return null;
+
+        String keyspace = statement.getKeyspace();
+        ByteBuffer routingKey = statement.getRoutingKey();
+        if (keyspace == null || routingKey == null)
+            return null;
+
+        // Counter updates can't be mixed with other writes. Bind variables don't tell, since the increment can be a
+        // literal, so use the table's columns.
+        if (preparedId.metadata.size() == 0)
+            return null;
+        KeyspaceMetadata ksm = getCluster().getMetadata().getKeyspace(Metadata.quote(preparedId.metadata.getKeyspace(0)));
+        TableMetadata table = ksm == null ? null : ksm.getTable(Metadata.quote(preparedId.metadata.getTable(0)));
+        if (table == null) {
+            QueryOptions queryOptions = getCluster().getConfiguration().getQueryOptions();
+            if ((queryOptions.getTableMetadataLoading() == QueryOptions.TableMetadataLoading.NONE || !queryOptions.includesMetadataOf(keyspace))
+                && warnedNoTableMetadata.compareAndSet(false, true))
+                logger.warn("Table metadata is not available for keyspace {}, writes to it will not be batched", keyspace);
+            return null;
+        }
+        boolean counter = false;
+        for (ColumnMetadata column : table.getColumns()) {
+            if (column.getType().getName() == DataType.Name.COUNTER) {
+                counter = true;
+                break;
+            }
+        }
+
+        ConsistencyLevel consistency = statement.getConsistencyLevel();
+        if (consistency == null)
+            consistency = getCluster().getConfiguration().getQueryOptions().getConsistencyLevel();
+
+        // Group by replica set when it is known, by partition otherwise
+        Set<Host> replicas = getCluster().getMetadata().getReplicas(Metadata.quote(keyspace), routingKey);
+        Object destination = replicas.isEmpty() ? routingKey : replicas;
+        return new GroupKey(destination, consistency, counter);
+    }
+
+    private void send(Group group) {
+        List<PendingWrite> writes = group.close();
+        if (writes.isEmpty())
+            return;
+
+        if (writes.size() == 1) {
+            PendingWrite write = writes.get(0);
+            write.track(session.executeAsync(write.statement));
+            return;
+        }
+
+        BatchStatement batch = new BatchStatement(group.key.counter ? BatchStatement.Type.COUNTER : BatchStatement.Type.UNLOGGED);
+        for (PendingWrite write : writes)
+            batch.add(write.statement);
+        batch.setConsistencyLevel(group.key.consistency);
+        batch.setRetryPolicy(writes.get(0).statement.getRetryPolicy());
+
+        ResultSetFuture future = session.executeAsync(batch);
+        for (PendingWrite write : writes)
+            write.track(future);
+    }
+
+    @Override
+    public String getLoggedKeyspace() {
+        return session.getLoggedKeyspace();
+    }
+
+    @Override
+    public Session init() {
+        session.init();
+        return this;
+    }
+
+    @Override
+    public ListenableFuture<PreparedStatement> prepareAsync(String query) {
+        return session.prepareAsync(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The pending writes are sent before closing the wrapped session.
+     */
+    @Override
+    public CloseFuture closeAsync() {
+        closed = true;
+        for (Group group : groups.values())
+            send(group);
+        scheduler.shutdown();
+        return session.closeAsync();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return session.isClosed();
+    }
+
+    @Override
+    public Cluster getCluster() {
+        return session.getCluster();
+    }
+
+    @Override
+    public State getState() {
+        return session.getState();
+    }
+
+    private static class GroupKey {
+        // Either the replica set or the routing key
+        private final Object destination;
+        private final ConsistencyLevel consistency;
+        private final boolean counter;
+
+        GroupKey(Object destination, ConsistencyLevel consistency, boolean counter) {
+            this.destination = destination;
+            this.consistency = consistency;
+            this.counter = counter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GroupKey))
+                return false;
+            GroupKey that = (GroupKey)o;
+            return this.destination.equals(that.destination)
+                && this.consistency == that.consistency
+                && this.counter == that.counter;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(destination, consistency, counter);
+        }
+    }
+
+    private class Group implements Runnable {
+        private final GroupKey key;
+
+        // All guarded by this
+        private List<PendingWrite> writes = new ArrayList<PendingWrite>();
+        private final Set<ByteBuffer> routingKeys = new HashSet<ByteBuffer>();
+        private boolean closed;
+
+        Group(GroupKey key) {
+            this.key = key;
+        }
+
+        // Returns false if the group was sent, either concurrently or because it already has a write to the same partition
+        boolean add(PendingWrite write) {
+            boolean samePartition, full = false;
+            synchronized (this) {
+                if (closed)
+                    return false;
+                samePartition = !routingKeys.add(write.routingKey);
+                if (!samePartition) {
+                    writes.add(write);
+                    full = writes.size() >= maxBatchSize;
+                    if (writes.size() == 1 && !full) {
+                        try {
+                            scheduler.schedule(this, windowMicros, TimeUnit.MICROSECONDS);
+                        } catch (RejectedExecutionException e) {
+                            // We're racing with closeAsync, send right away
+                            full = true;
+                        }
+                    }
+                }
+            }
+            if (samePartition || full)
+                send(this);
+            return !samePartition;
+        }
+
+        // Returns the writes to send and prevents any further addition (it returns an empty list if it was already closed)
+        List<PendingWrite> close() {
+            List<PendingWrite> toSend;
+            synchronized (this) {
+                if (closed)
+                    return new ArrayList<PendingWrite>(0);
+                closed = true;
+                toSend = writes;
+                writes = null;
+            }
+            groups.remove(key, this);
+            return toSend;
+        }
+
+        @Override
+        public void run() {
+            send(this);
+        }
+    }
+
+    private static class PendingWrite extends AbstractFuture<ResultSet> implements ResultSetFuture {
+        private final Statement statement;
+        private final ByteBuffer routingKey;
+
+        PendingWrite(Statement statement, ByteBuffer routingKey) {
+            this.statement = statement;
+            this.routingKey = routingKey;
+        }
+
+        void track(ResultSetFuture future) {
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    set(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    setException(t);
+                }
+            });
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            try {
+                return Uninterruptibles.getUninterruptibly(this);
+            } catch (ExecutionException e) {
+                throw DefaultResultSetFuture.extractCauseFromExecutionException(e);
+            }
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+            try {
+                return Uninterruptibles.getUninterruptibly(this, timeout, unit);
+            } catch (ExecutionException e) {
+                throw DefaultResultSetFuture.extractCauseFromExecutionException(e);
+            }
+        }
+    }
+}
@@ -54,6 +54,9 @@ public class BoundStatement extends Statement implements SettableData<BoundState
 
     private ByteBuffer routingKey;
 
+    // The last routing key (and token) computed for this statement. See currentRouting().
+    private volatile Routing routing;
+
     /**
      * Creates a new {@code BoundStatement} from the provided prepared
      * statement.
@@ -250,30 +253,84 @@ public class BoundStatement extends Statement implements SettableData<BoundState
      */
     @Override
     public ByteBuffer getRoutingKey() {
-        if (this.routingKey != null) {
-            return this.routingKey;
+        Routing current = currentRouting();
+        return current == null ? null : current.routingKey;
+    }
+
+    @Override
+    Token routingToken(Token.Factory factory) {
+        Token token = getRoutingToken();
+        if (token != null)
+            return token;
+
+        Routing current = currentRouting();
+        if (current == null)
+            return null;
+
+        synchronized (current) {
+            if (current.factory != factory) {
+                current.token = factory.hash(current.routingKey);
+                current.factory = factory;
+            }
+            return current.token;
         }
+    }
 
-        if (statement.getRoutingKey() != null) {
-            return statement.getRoutingKey();
+    /**
+     * Returns the routing key of this statement, reusing the last computed one (and its token) if it is still
+     * valid. The routing key of a statement only changes if it's set explicitly, or if the value of one of the
+     * partition key variables changes, in which case its {@code ByteBuffer} is replaced: so we only need to
+     * compare instances, which is much cheaper than composing the key (and hashing it) again.
+     */
+    private Routing currentRouting() {
+        Routing current = routing;
+
+        ByteBuffer explicit = this.routingKey != null ? this.routingKey : statement.getRoutingKey();
+        if (explicit != null) {
+            if (current == null || current.components != null || current.routingKey != explicit)
+                routing = current = new Routing(explicit, null);
+            return current;
         }
 
         int[] rkIndexes = statement.getPreparedId().routingKeyIndexes;
-        if (rkIndexes != null) {
-            if (rkIndexes.length == 1) {
-                return wrapper.values[rkIndexes[0]];
-            } else {
-                ByteBuffer[] components = new ByteBuffer[rkIndexes.length];
-                for (int i = 0; i < components.length; ++i) {
-                    ByteBuffer value = wrapper.values[rkIndexes[i]];
-                    if (value == null)
-                        return null;
-                    components[i] = value;
-                }
-                return SimpleStatement.compose(components);
+        if (rkIndexes == null)
+            return null;
+
+        if (current != null && current.components != null && current.isFor(wrapper.values, rkIndexes))
+            return current;
+
+        ByteBuffer[] components = new ByteBuffer[rkIndexes.length];
+        for (int i = 0; i < components.length; ++i) {
+            ByteBuffer value = wrapper.values[rkIndexes[i]];
+            if (value == null || value == UNSET)
+                return null;
+            components[i] = value;
+        }
+        ByteBuffer key = components.length == 1 ? components[0] : SimpleStatement.compose(components);
+        routing = current = new Routing(key, components);
+        return current;
+    }
+
+    private static class Routing {
+        final ByteBuffer routingKey;
+        // The values the routing key was composed from, or null if it was set explicitly
+        final ByteBuffer[] components;
+        // Guarded by this
+        Token.Factory factory;
+        Token token;
+
+        Routing(ByteBuffer routingKey, ByteBuffer[] components) {
+            this.routingKey = routingKey;
+            this.components = components;
+        }
+
+        boolean isFor(ByteBuffer[] values, int[] rkIndexes) {
+            for (int i = 0; i < rkIndexes.length; i++) {
+                if (values[rkIndexes[i]] != components[i])
+                    return false;
             }
+            return true;
         }
-        return null;
     }
 
     /**
@@ -16,6 +16,7 @@
 package com.datastax.driver.core;
 
 import java.io.Closeable;
+import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -426,6 +427,38 @@ public class Cluster implements Closeable {
         return this;
     }
 
+    /**
+     * Registers the provided listener to be notified of the duration of each
+     * phase of the requests executed by the sessions of this Cluster.
+     * <p>
+     * Registering the same listener multiple times is a no-op.
+     * <p>
+     * Be wary that the registered listener {@code onPhase} method will be
+     * called very frequently (several times per request), including on I/O
+     * threads, and should thus not be costly.
+     *
+     * @param listener the new {@link RequestPhaseListener} to register.
+     * @return this {@code Cluster} object;
+     */
+    public Cluster register(RequestPhaseListener listener) {
+        manager.phaseListeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Unregisters the provided request phase listener.
+     * <p>
+     * This method is a no-op if {@code listener} hadn't previously be
+     * registered against this Cluster.
+     *
+     * @param listener the {@link RequestPhaseListener} to unregister.
+     * @return this {@code Cluster} object;
+     */
+    public Cluster unregister(RequestPhaseListener listener) {
+        manager.phaseListeners.remove(listener);
+        return this;
+    }
+
     /**
      * Initiates a shutdown of this cluster instance.
      * <p>
@@ -560,11 +593,13 @@ public class Cluster implements Closeable {
         private RetryPolicy retryPolicy;
         private AddressTranslater addressTranslater;
         private TimestampGenerator timestampGenerator;
+        private SpeculativeExecutionPolicy speculativeExecutionPolicy;
 
         private ProtocolOptions.Compression compression = ProtocolOptions.Compression.NONE;
         private SSLOptions sslOptions = null;
         private boolean metricsEnabled = true;
         private boolean jmxEnabled = true;
+        private MetricsOptions metricsOptions;
 
         private PoolingOptions poolingOptions;
         private SocketOptions socketOptions;
@@ -908,6 +943,20 @@ public class Cluster implements Closeable {
             return this;
         }
 
+        /**
+         * Configures the speculative execution policy to use for the new cluster.
+         * <p>
+         * If no policy is set through this method, {@link Policies#defaultSpeculativeExecutionPolicy()}
+         * will be used instead.
+         *
+         * @param policy the policy to use.
+         * @return this Builder.
+         */
+        public Builder withSpeculativeExecutionPolicy(SpeculativeExecutionPolicy policy) {
+            this.speculativeExecutionPolicy = policy;
+            return this;
+        }
+
         /**
          * Uses the provided credentials when connecting to Cassandra hosts.
          * <p>
@@ -1014,8 +1063,9 @@ public class Cluster implements Closeable {
          * Disables JMX reporting of the metrics.
          * <p>
          * JMX reporting is enabled by default (see {@link Metrics}) but can be
-         * disabled using this option. If metrics are disabled, this is a
-         * no-op.
+         * disabled using this option. If metrics are disabled, or if
+         * metrics options have been provided with {@link #withMetricsOptions},
+         * this is a no-op.
          *
          * @return this builder.
          */
@@ -1024,6 +1074,22 @@ public class Cluster implements Closeable {
             return this;
         }
 
+        /**
+         * Sets the MetricsOptions to use for the newly created Cluster.
+         * <p>
+         * If no metrics options are set through this method, default metrics
+         * options will be used (taking {@link #withoutJMXReporting} into account).
+         * If metrics are disabled with {@link #withoutMetrics}, these options
+         * are ignored.
+         *
+         * @param options the metrics options to use.
+         * @return this builder.
+         */
+        public Builder withMetricsOptions(MetricsOptions options) {
+            this.metricsOptions = options;
+            return this;
+        }
+
         /**
          * Sets the PoolingOptions to use for the newly created Cluster.
          * <p>
@@ -1082,13 +1148,14 @@ public class Cluster implements Closeable {
                 reconnectionPolicy == null ? Policies.defaultReconnectionPolicy() : reconnectionPolicy,
                 retryPolicy == null ? Policies.defaultRetryPolicy() : retryPolicy,
                 addressTranslater == null ? Policies.defaultAddressTranslater() : addressTranslater,
-                timestampGenerator == null ? Policies.defaultTimestampGenerator() : timestampGenerator
+                timestampGenerator == null ? Policies.defaultTimestampGenerator() : timestampGenerator,
+                speculativeExecutionPolicy == null ? Policies.defaultSpeculativeExecutionPolicy() : speculativeExecutionPolicy
             );
             return new Configuration(policies,
                                      new ProtocolOptions(port, protocolVersion, maxSchemaAgreementWaitSeconds, sslOptions, authProvider).setCompression(compression),
                                      poolingOptions == null ? new PoolingOptions() : poolingOptions,
                                      socketOptions == null ? new SocketOptions() : socketOptions,
-                                     metricsEnabled ? new MetricsOptions(jmxEnabled) : null,
+                                     !metricsEnabled ? null : metricsOptions == null ? new MetricsOptions(jmxEnabled) : metricsOptions,
                                      queryOptions == null ? new QueryOptions() : queryOptions);
         }
 
@@ -1189,6 +1256,17 @@ public class Cluster implements Closeable {
 
         final Set<Host.StateListener> listeners;
         final Set<LatencyTracker> trackers = new CopyOnWriteArraySet<LatencyTracker>();
+        final Set<RequestPhaseListener> phaseListeners = new CopyOnWriteArraySet<RequestPhaseListener>();
+        // Only set if enabled in the pooling options
+        volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+        // Only set if enabled in the query options
+        volatile PreparedStatementStore preparedStatementStore;
+
+        // Coalesce the refreshes triggered by bursts of notifications
+        final EventDebouncer<SchemaRefreshRequest> schemaRefreshDebouncer;
+        final EventDebouncer<Object> nodeListRefreshDebouncer;
+        // The hosts for which an UP notification is being processed, so that repeated notifications are processed once
+        private final Set<Host> pendingUpNotifications = Sets.newSetFromMap(new ConcurrentHashMap<Host, Boolean>());
 
         private Manager(String clusterName, List<InetSocketAddress> contactPoints, Configuration configuration, Collection<Host.StateListener> listeners) {
             logger.debug("Starting new cluster with contact points " + contactPoints);
@@ -1202,6 +1280,46 @@ public class Cluster implements Closeable {
 
             this.reaper = new ConnectionReaper();
 
+            this.schemaRefreshDebouncer = new EventDebouncer<SchemaRefreshRequest>("schema refresh", scheduledTasksExecutor, executor) {
+                @Override
+                int windowMillis() {
+                    return Manager.this.configuration.getQueryOptions().getRefreshSchemaIntervalMillis();
+                }
+
+                @Override
+                int maxPendingEvents() {
+                    return Manager.this.configuration.getQueryOptions().getMaxPendingRefreshSchemaRequests();
+                }
+
+                @Override
+                void deliver(List<SchemaRefreshRequest> requests) throws InterruptedException {
+                    boolean keyspaceLevel = false;
+                    for (SchemaRefreshRequest request : SchemaRefreshRequest.coalesce(requests)) {
+                        controlConnection.refreshSchema(request.keyspace, request.table, request.udt, false);
+                        keyspaceLevel |= request.isKeyspaceLevel();
+                    }
+                    // Replication settings may have changed
+                    if (keyspaceLevel)
+                        submitNodeListRefresh();
+                }
+            };
+            this.nodeListRefreshDebouncer = new EventDebouncer<Object>("node list refresh", scheduledTasksExecutor, executor) {
+                @Override
+                int windowMillis() {
+                    return Manager.this.configuration.getQueryOptions().getRefreshNodeListIntervalMillis();
+                }
+
+                @Override
+                int maxPendingEvents() {
+                    return Manager.this.configuration.getQueryOptions().getMaxPendingRefreshNodeListRequests();
+                }
+
+                @Override
+                void deliver(List<Object> requests) {
+                    controlConnection.refreshNodeListAndTokenMap();
+                }
+            };
+
             this.metadata = new Metadata(this);
             this.contactPoints = contactPoints;
             this.connectionFactory = new Connection.Factory(this, configuration);
@@ -1220,6 +1338,15 @@ public class Cluster implements Closeable {
                 return;
             isInit = true;
 
+            if (configuration.getPoolingOptions().isAdaptiveConcurrencyLimitEnabled()) {
+                concurrencyLimiter = new AdaptiveConcurrencyLimiter();
+                trackers.add(concurrencyLimiter);
+            }
+
+            File preparedStatementsFile = configuration.getQueryOptions().getPreparedStatementsFile();
+            if (preparedStatementsFile != null)
+                preparedStatementStore = PreparedStatementStore.open(preparedStatementsFile, blockingExecutor);
+
             for (InetSocketAddress address : contactPoints) {
                 // We don't want to signal -- call onAdd() -- because nothing is ready
                 // yet (loadbalancing policy, control connection, ...). All we want is
@@ -1255,6 +1382,7 @@ public class Cluster implements Closeable {
                 // Now that the control connection is ready, we have all the information we need about the nodes (datacenter,
                 // rack...) to initialize the load balancing policy
                 loadBalancingPolicy().init(Cluster.this, contactPointHosts);
+                speculativeExecutionPolicy().init(Cluster.this);
                 for (Host host : downContactPointHosts) {
                     loadBalancingPolicy().onDown(host);
                     for (Host.StateListener listener : listeners)
@@ -1307,6 +1435,10 @@ public class Cluster implements Closeable {
             return configuration.getPolicies().getReconnectionPolicy();
         }
 
+        SpeculativeExecutionPolicy speculativeExecutionPolicy() {
+            return configuration.getPolicies().getSpeculativeExecutionPolicy();
+        }
+
         InetSocketAddress translateAddress(InetAddress address) {
             InetSocketAddress sa = new InetSocketAddress(address, connectionFactory.getPort());
             InetSocketAddress translated = configuration.getPolicies().getAddressTranslater().translate(sa);
@@ -1329,6 +1461,22 @@ public class Cluster implements Closeable {
             }
         }
 
+        boolean tracksRequestPhases() {
+            return !phaseListeners.isEmpty() || (metrics != null && metrics.tracksRequestPhases());
+        }
+
+        void reportRequestPhase(Host host, RequestPhase phase, long durationNanos) {
+            for (RequestPhaseListener listener : phaseListeners) {
+                try {
+                    listener.onPhase(host, phase, durationNanos);
+                } catch (RuntimeException e) {
+                    logger.warn("Unexpected error while notifying request phase listener " + listener, e);
+                }
+            }
+            if (metrics != null)
+                metrics.recordRequestPhase(phase, durationNanos);
+        }
+
         boolean isClosed() {
             return closeFuture.get() != null;
         }
@@ -1354,6 +1502,9 @@ public class Cluster implements Closeable {
             if (metrics != null)
                 metrics.shutdown();
 
+            if (preparedStatementStore != null)
+                preparedStatementStore.close();
+
             // And the load balancing policy
             LoadBalancingPolicy loadBalancingPolicy = loadBalancingPolicy();
             if (loadBalancingPolicy instanceof CloseableLoadBalancingPolicy)
@@ -1363,6 +1514,8 @@ public class Cluster implements Closeable {
             if (translater instanceof CloseableAddressTranslater)
                 ((CloseableAddressTranslater)translater).close();
 
+            speculativeExecutionPolicy().close();
+
             // Then we shutdown all connections
             List<CloseFuture> futures = new ArrayList<CloseFuture>(sessions.size() + 1);
             futures.add(controlConnection.closeAsync());
@@ -1887,6 +2040,10 @@ public class Cluster implements Closeable {
                 controlConnection.onRemove(host);
                 for (SessionManager s : sessions)
                     s.onRemove(host);
+                if (concurrencyLimiter != null)
+                    concurrencyLimiter.onRemove(host);
+                if (metrics != null)
+                    metrics.onRemove(host);
 
                 for (Host.StateListener listener : listeners)
                     listener.onRemove(host);
@@ -1950,9 +2107,15 @@ public class Cluster implements Closeable {
                 // So we need to make sure that the instance we do return to the user is the one that is in the cache.
                 return previous;
             }
+            if (preparedStatementStore != null)
+                preparedStatementStore.add(stmt);
             return stmt;
         }
 
+        private long remainingMillis(long deadlineNanos) {
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+        }
+
         private void prepareAllQueries(Host host) throws InterruptedException, UnsupportedProtocolVersionException, ClusterNameMismatchException {
             if (preparedQueries.isEmpty())
                 return;
@@ -1986,27 +2149,49 @@ public class Cluster implements Closeable {
                         perKeyspace.put(keyspace, ps.getQueryString());
                     }
 
+                    QueryOptions queryOptions = configuration.getQueryOptions();
+                    int maxConcurrent = queryOptions.getMaxConcurrentReprepares();
+                    if (protocolVersion().compareTo(ProtocolVersion.V3) < 0)
+                        maxConcurrent = Math.min(maxConcurrent, StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V2);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queryOptions.getReprepareTimeoutMillis());
+
+                    int prepared = 0;
                     for (String keyspace : perKeyspace.keySet())
                     {
                         // Empty string mean no particular keyspace to set
                         if (!keyspace.isEmpty())
                             connection.setKeyspace(keyspace);
 
-                        List<Connection.Future> futures = new ArrayList<Connection.Future>(preparedQueries.size());
+                        // Pipeline the queries over the connection, keeping at most maxConcurrent of them in flight.
+                        // All of them must have completed before we change the keyspace of the connection.
+                        final Semaphore inFlight = new Semaphore(maxConcurrent);
                         for (String query : perKeyspace.get(keyspace)) {
-                            futures.add(connection.write(new Requests.Prepare(query)));
-                        }
-                        for (Connection.Future future : futures) {
+                            long remaining = remainingMillis(deadline);
+                            if (remaining == 0 || !inFlight.tryAcquire(remaining, TimeUnit.MILLISECONDS))
+                                break;
                             try {
-                                future.get();
-                            } catch (ExecutionException e) {
-                                // This "might" happen if we drop a CF but haven't removed it's prepared queries (which we don't do
-                                // currently). It's not a big deal however as if it's a more serious problem it'll show up later when
-                                // the query is tried for execution.
-                                logger.debug("Unexpected error while preparing queries on new/newly up host", e);
+                                connection.write(new Requests.Prepare(query)).addListener(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        // Errors "might" happen if we drop a CF but haven't removed it's prepared queries (which we
+                                        // don't do currently). It's not a big deal however as if it's a more serious problem it'll
+                                        // show up later when the query is tried for execution.
+                                        inFlight.release();
+                                    }
+                                }, MoreExecutors.sameThreadExecutor());
+                                prepared++;
+                            } catch (BusyConnectionException e) {
+                                inFlight.release();
+                                break;
                             }
                         }
+                        if (!inFlight.tryAcquire(maxConcurrent, remainingMillis(deadline), TimeUnit.MILLISECONDS) || remainingMillis(deadline) == 0) {
+                            logger.warn("Could not re-prepare all queries on {} within {} ms, it will be used anyway "
+                                      + "(the remaining queries will be prepared on the fly)", host, queryOptions.getReprepareTimeoutMillis());
+                            break;
+                        }
                     }
+                    logger.debug("Sent {} prepared queries to {}", prepared, host);
                 } finally {
                     connection.closeAsync();
                 }
@@ -2019,14 +2204,14 @@ public class Cluster implements Closeable {
             }
         }
 
-        public void submitSchemaRefresh(final String keyspace, final String table, final String udt) {
+        public void submitSchemaRefresh(String keyspace, String table, String udt) {
             logger.trace("Submitting schema refresh");
-            executor.submit(new ExceptionCatchingRunnable() {
-                @Override
-                public void runMayThrow() throws InterruptedException, ExecutionException {
-                    controlConnection.refreshSchema(keyspace, table, udt);
-                }
-            });
+            schemaRefreshDebouncer.eventReceived(new SchemaRefreshRequest(keyspace, table, udt));
+        }
+
+        public void submitNodeListRefresh() {
+            logger.trace("Submitting node list and token map refresh");
+            nodeListRefreshDebouncer.eventReceived(Boolean.TRUE);
         }
 
         // refresh the schema using the provided connection, and notice the future with the provided resultset once done
@@ -2098,12 +2283,7 @@ public class Cluster implements Closeable {
                             removeHost(metadata.getHost(tpAddr), false);
                             break;
                         case MOVED_NODE:
-                            executor.submit(new ExceptionCatchingRunnable() {
-                                @Override
-                                public void runMayThrow() {
-                                    controlConnection.refreshNodeListAndTokenMap();
-                                }
-                            });
+                            submitNodeListRefresh();
                             break;
                     }
                     break;
@@ -2134,10 +2314,13 @@ public class Cluster implements Closeable {
                                         }
                                     }
                                 }, NEW_NODE_DELAY_SECONDS, TimeUnit.SECONDS);
-                            } else {
+                            } else if (pendingUpNotifications.add(hostUp)) {
+                                // Nodes tend to be announced UP several times in a row, there is no point in processing
+                                // a notification while the previous one has not been picked up yet.
                                 executor.submit(new ExceptionCatchingRunnable() {
                                     @Override
                                     public void runMayThrow() throws InterruptedException, ExecutionException {
+                                        pendingUpNotifications.remove(hostUp);
                                         // Make sure we have up-to-date infos on that host before adding it (so we typically
                                         // catch that an upgraded node uses a new cassandra version).
                                         if (controlConnection.refreshNodeInfo(hostUp)) {
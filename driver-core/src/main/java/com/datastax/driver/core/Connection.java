@@ -18,6 +18,7 @@ package com.datastax.driver.core;
 import javax.net.ssl.SSLEngine;
 import java.net.InetSocketAddress;
 import java.util.Iterator;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -43,6 +44,7 @@ import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.exceptions.AuthenticationException;
 import com.datastax.driver.core.exceptions.DriverInternalError;
+import com.datastax.driver.core.policies.NoSpeculativeExecutionPolicy;
 
 // For LoggingHandler
 //import org.jboss.netty.handler.logging.LoggingHandler;
@@ -64,6 +66,9 @@ class Connection {
 
     private final Dispatcher dispatcher;
 
+    // Only set if write coalescing is enabled in SocketOptions
+    private final Flusher flusher;
+
     // Used by connection pooling to count how many requests are "in flight" on that connection.
     public final AtomicInteger inFlight = new AtomicInteger(0);
 
@@ -89,12 +94,18 @@ class Connection {
         this.dispatcher = new Dispatcher();
         this.name = name;
 
+        SocketOptions socketOptions = factory.configuration.getSocketOptions();
+        this.flusher = socketOptions.isWriteCoalescingEnabled()
+                     ? new Flusher(socketOptions.getMaxCoalescedRequests())
+                     : null;
+
         try {
             ClientBootstrap bootstrap = factory.newBootstrap();
             ProtocolOptions protocolOptions = factory.configuration.getProtocolOptions();
             ProtocolVersion protocolVersion = factory.protocolVersion == null ? ProtocolVersion.NEWEST_SUPPORTED : factory.protocolVersion;
             bootstrap.setPipelineFactory(new PipelineFactory(this, protocolVersion, protocolOptions.getCompression().compressor, protocolOptions.getSSLOptions(),
-                factory.configuration.getPoolingOptions().getHeartbeatIntervalSeconds(), factory.timer));
+                factory.configuration.getPoolingOptions().getHeartbeatIntervalSeconds(), factory.timer,
+                flusher == null ? 0 : socketOptions.getMaxCoalescedWriteBytes()));
 
             ChannelFuture future = bootstrap.connect(address);
 
@@ -381,12 +392,20 @@ class Connection {
     }
 
     public ResponseHandler write(ResponseCallback callback, boolean startTimeout) throws ConnectionException, BusyConnectionException {
+        return write(callback, startTimeout, false);
+    }
+
+    /**
+     * @param tracksPhases whether to report the phases of the request to {@link Cluster.Manager#reportRequestPhase}.
+     */
+    public ResponseHandler write(ResponseCallback callback, boolean startTimeout, boolean tracksPhases) throws ConnectionException, BusyConnectionException {
 
         Message.Request request = callback.request();
 
-        ResponseHandler handler = new ResponseHandler(this, callback);
+        ResponseHandler handler = new ResponseHandler(this, callback, tracksPhases);
         dispatcher.add(handler);
         request.setStreamId(handler.streamId);
+        request.encodeNanos = tracksPhases ? 0 : -1;
 
         /*
          * We check for close/defunct *after* having set the handler because closing/defuncting
@@ -406,7 +425,10 @@ class Connection {
 
         logger.trace("{} writing request {}", this, request);
         writer.incrementAndGet();
-        channel.write(request).addListener(writeHandler(request, handler));
+        if (flusher == null)
+            channel.write(request).addListener(writeHandler(request, handler));
+        else
+            flusher.enqueue(request, writeHandler(request, handler));
 
         if (startTimeout)
             handler.startTimeout();
@@ -447,6 +469,13 @@ class Connection {
                     });
                 } else {
                     logger.trace("{} request sent successfully", Connection.this);
+                    if (handler.tracksPhases) {
+                        long now = System.nanoTime();
+                        handler.writtenAt = now;
+                        long encodeNanos = Math.max(request.encodeNanos, 0);
+                        reportRequestPhase(RequestPhase.ENCODE, encodeNanos);
+                        reportRequestPhase(RequestPhase.WRITE, now - handler.startTime - encodeNanos);
+                    }
                 }
             }
         };
@@ -456,6 +485,76 @@ class Connection {
         return closeFuture.get() != null;
     }
 
+    private void reportRequestPhase(RequestPhase phase, long durationNanos) {
+        Cluster.Manager manager = factory.manager;
+        manager.reportRequestPhase(manager.metadata.getHost(address), phase, durationNanos);
+    }
+
+    /**
+     * Drains the requests queued by {@link #write(ResponseCallback, boolean)} when write coalescing is
+     * enabled. Runs on the channel's I/O thread, and relies on {@link Frame.Coalescer} to send all the
+     * frames encoded during a run in a single socket write.
+     */
+    private class Flusher implements Runnable {
+
+        private final int maxRequestsPerRun;
+        private final Queue<FlushItem> queued = new ConcurrentLinkedQueue<FlushItem>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // Only accessed by the thread running the flush cycle, the CAS on scheduled guarantees visibility.
+        private ChannelHandlerContext coalescerContext;
+
+        Flusher(int maxRequestsPerRun) {
+            this.maxRequestsPerRun = maxRequestsPerRun;
+        }
+
+        void enqueue(Message.Request request, ChannelFutureListener listener) {
+            queued.add(new FlushItem(request, listener));
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true))
+                channel.getPipeline().execute(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (coalescerContext == null)
+                    coalescerContext = channel.getPipeline().getContext("frameCoalescer");
+                Frame.Coalescer coalescer = (Frame.Coalescer)coalescerContext.getHandler();
+
+                coalescer.startBuffering();
+                try {
+                    FlushItem item;
+                    int written = 0;
+                    while (written < maxRequestsPerRun && (item = queued.poll()) != null) {
+                        channel.write(item.request).addListener(item.listener);
+                        written += 1;
+                    }
+                } finally {
+                    coalescer.flush(coalescerContext);
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // Either we stopped because of maxRequestsPerRun, or new requests raced with the end of the run
+            if (!queued.isEmpty())
+                schedule();
+        }
+    }
+
+    private static class FlushItem {
+        final Message.Request request;
+        final ChannelFutureListener listener;
+
+        FlushItem(Message.Request request, ChannelFutureListener listener) {
+            this.request = request;
+            this.listener = listener;
+        }
+    }
+
     /**
      * Closes the connection: no new writes will be accepted after this method has returned.
      *
@@ -527,7 +626,7 @@ class Connection {
 
         private final ExecutorService bossExecutor = Executors.newCachedThreadPool();
         private final ExecutorService workerExecutor = Executors.newCachedThreadPool();
-        public final HashedWheelTimer timer = new HashedWheelTimer(new ThreadFactoryBuilder().setNameFormat("Timeouter-%d").build());
+        public final HashedWheelTimer timer;
 
         private final ChannelFactory channelFactory = new NioClientSocketChannelFactory(bossExecutor, workerExecutor);
         private final ChannelGroup allChannels = new DefaultChannelGroup();
@@ -550,6 +649,16 @@ class Connection {
             this.configuration = configuration;
             this.authProvider = configuration.getProtocolOptions().getAuthProvider();
             this.protocolVersion = configuration.getProtocolOptions().initialProtocolVersion;
+            this.timer = newTimer(configuration);
+        }
+
+        private static HashedWheelTimer newTimer(Configuration configuration) {
+            ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Timeouter-%d").build();
+            // The default tick (100ms) is too coarse for speculative executions, which are typically scheduled after a
+            // few milliseconds. A finer tick costs more wake-ups though, so only use it if they are enabled.
+            return configuration.getPolicies().getSpeculativeExecutionPolicy() instanceof NoSpeculativeExecutionPolicy
+                ? new HashedWheelTimer(threadFactory)
+                : new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS);
         }
 
         public int getPort() {
@@ -731,6 +840,14 @@ class Connection {
                     return;
                 }
                 handler.cancelTimeout();
+                if (handler.tracksPhases) {
+                    long now = System.nanoTime();
+                    response.dispatchedAt = now;
+                    // The write listener might not have run yet if the response came back very fast
+                    if (handler.writtenAt != 0)
+                        reportRequestPhase(RequestPhase.SERVER, response.receivedAt - handler.writtenAt);
+                    reportRequestPhase(RequestPhase.DECODE, now - response.receivedAt);
+                }
                 handler.callback.onSet(Connection.this, response, System.nanoTime() - handler.startTime, handler.retryCount);
 
                 // If we happen to be closed and we're the last outstanding request, we need to terminate the connection
@@ -936,17 +1053,21 @@ class Connection {
         public final int streamId;
         public final ResponseCallback callback;
         public final int retryCount;
+        final boolean tracksPhases;
 
         private final long startTime;
         private volatile Timeout timeout;
+        // When the write completed, only set if tracksPhases
+        private volatile long writtenAt;
 
         private final AtomicBoolean isCancelled = new AtomicBoolean();
 
-        public ResponseHandler(Connection connection, ResponseCallback callback) throws BusyConnectionException {
+        public ResponseHandler(Connection connection, ResponseCallback callback, boolean tracksPhases) throws BusyConnectionException {
             this.connection = connection;
             this.streamId = connection.dispatcher.streamIdHandler.next();
             this.callback = callback;
             this.retryCount = callback.retryCount();
+            this.tracksPhases = tracksPhases;
 
             this.startTime = System.nanoTime();
         }
@@ -1002,13 +1123,16 @@ class Connection {
         private final FrameCompressor compressor;
         private final SSLOptions sslOptions;
         private final ChannelHandler idleStateHandler;
+        private final int maxCoalescedWriteBytes;
 
-        public PipelineFactory(Connection connection, ProtocolVersion protocolVersion, FrameCompressor compressor, SSLOptions sslOptions, int heartBeatIntervalSeconds, HashedWheelTimer timer) {
+        public PipelineFactory(Connection connection, ProtocolVersion protocolVersion, FrameCompressor compressor, SSLOptions sslOptions, int heartBeatIntervalSeconds, HashedWheelTimer timer,
+                               int maxCoalescedWriteBytes) {
             this.connection = connection;
             this.protocolVersion = protocolVersion;
             this.compressor = compressor;
             this.sslOptions = sslOptions;
             this.idleStateHandler = new IdleStateHandler(timer, 0, 0, heartBeatIntervalSeconds);
+            this.maxCoalescedWriteBytes = maxCoalescedWriteBytes;
         }
 
         @Override
@@ -1026,6 +1150,10 @@ class Connection {
 
             //pipeline.addLast("debug", new LoggingHandler(InternalLogLevel.INFO));
 
+            // Stateful, and must sit below the frame encoder so that it sees fully encoded frames
+            if (maxCoalescedWriteBytes > 0)
+                pipeline.addLast("frameCoalescer", new Frame.Coalescer(maxCoalescedWriteBytes));
+
             pipeline.addLast("frameDecoder", new Frame.Decoder());
             pipeline.addLast("frameEncoder", frameEncoder);
 
@@ -0,0 +1,153 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.datastax.driver.core.exceptions.DriverInternalError;
+
+/**
+ * Opens a connection to the hosts of a query plan without waiting for each host to fail before trying the next one.
+ * <p>
+ * A new attempt is started every {@code staggerDelayMillis} (or right away if all the attempts in progress have
+ * failed), and attempts are returned in the order in which they complete. This way, a host that is down or doesn't
+ * answer only delays the connection by the stagger delay instead of the whole connect timeout. Once the race is
+ * {@link #stop stopped}, the connections that were opened but not returned are closed.
+ * <p>
+ * This is not thread-safe: {@link #next} must always be called from the same thread.
+ */
+class ConnectionRace {
+
+    private final Iterator<Host> plan;
+    private final Connection.Factory factory;
+    private final long staggerDelayMillis;
+
+    private final ExecutorService executor;
+    private final BlockingQueue<Attempt> completed = new LinkedBlockingQueue<Attempt>();
+    private int pending;
+    // Guarded by this, so that no connection is added to completed after it has been drained by stop()
+    private boolean stopped;
+
+    ConnectionRace(Iterator<Host> plan, Connection.Factory factory, long staggerDelayMillis) {
+        this.plan = plan;
+        this.factory = factory;
+        this.staggerDelayMillis = staggerDelayMillis;
+        this.executor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("Cassandra Java Driver connection race-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Returns the next attempt to complete, waiting for it if necessary.
+     *
+     * @return the attempt, or {@code null} if all the hosts of the plan have been tried.
+     */
+    Attempt next() throws InterruptedException {
+        while (true) {
+            if (pending == 0) {
+                if (!plan.hasNext())
+                    return null;
+                start(plan.next());
+            }
+
+            Attempt attempt = plan.hasNext()
+                            ? completed.poll(staggerDelayMillis, TimeUnit.MILLISECONDS)
+                            : completed.take();
+            if (attempt != null) {
+                pending--;
+                return attempt;
+            }
+            // The attempts in progress are taking too long, start another one in parallel
+            start(plan.next());
+        }
+    }
+
+    /**
+     * Stops the race, closing the connections that were opened but not returned by {@link #next}.
+     */
+    void stop() {
+        List<Attempt> leftovers = new ArrayList<Attempt>();
+        synchronized (this) {
+            stopped = true;
+            completed.drainTo(leftovers);
+        }
+        for (Attempt attempt : leftovers) {
+            if (attempt.connection != null)
+                attempt.connection.closeAsync().force();
+        }
+        // Let the attempts in progress complete, they'll close their connection themselves
+        executor.shutdown();
+    }
+
+    private void start(final Host host) {
+        pending++;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Attempt attempt;
+                try {
+                    attempt = new Attempt(host, factory.open(host), null);
+                } catch (Exception e) {
+                    attempt = new Attempt(host, null, e);
+                }
+                synchronized (ConnectionRace.this) {
+                    if (!stopped) {
+                        completed.add(attempt);
+                        return;
+                    }
+                }
+                // Somebody else won the race
+                if (attempt.connection != null)
+                    attempt.connection.closeAsync().force();
+            }
+        });
+    }
+
+    static class Attempt {
+        final Host host;
+        private final Connection connection;
+        private final Exception error;
+
+        private Attempt(Host host, Connection connection, Exception error) {
+            this.host = host;
+            this.connection = connection;
+            this.error = error;
+        }
+
+        /**
+         * Returns the connection that was opened, or throws the exception that prevented opening it.
+         */
+        Connection get() throws ConnectionException, InterruptedException, UnsupportedProtocolVersionException, ClusterNameMismatchException {
+            if (error == null)
+                return connection;
+            if (error instanceof ConnectionException)
+                throw (ConnectionException)error;
+            if (error instanceof InterruptedException)
+                throw (InterruptedException)error;
+            if (error instanceof UnsupportedProtocolVersionException)
+                throw (UnsupportedProtocolVersionException)error;
+            if (error instanceof ClusterNameMismatchException)
+                throw (ClusterNameMismatchException)error;
+            if (error instanceof RuntimeException)
+                throw (RuntimeException)error;
+            throw new DriverInternalError(error);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
@@ -46,6 +47,9 @@ class ControlConnection implements Host.StateListener {
         }
     }
 
+    // How long to wait for a host to answer before also trying the next one when connecting (0 to try them all at once)
+    private static final int CONNECTION_ATTEMPT_DELAY_MS = SystemProperties.getInt("com.datastax.driver.CONNECTION_ATTEMPT_DELAY_MS", 250);
+
     private static final String SELECT_KEYSPACES = "SELECT * FROM system.schema_keyspaces";
     private static final String SELECT_COLUMN_FAMILIES = "SELECT * FROM system.schema_columnfamilies";
     private static final String SELECT_COLUMNS = "SELECT * FROM system.schema_columns";
@@ -182,12 +186,16 @@ class ControlConnection implements Host.StateListener {
 
         Map<InetSocketAddress, Throwable> errors = null;
 
+        // Hosts are tried concurrently (with a small delay between each new attempt), so that a host that doesn't
+        // answer doesn't delay the connection by the whole connect timeout
+        ConnectionRace race = new ConnectionRace(iter, cluster.connectionFactory, CONNECTION_ATTEMPT_DELAY_MS);
         Host host = null;
         try {
-            while (iter.hasNext()) {
-                host = iter.next();
+            ConnectionRace.Attempt attempt;
+            while ((attempt = race.next()) != null) {
+                host = attempt.host;
                 try {
-                    return tryConnect(host, isInitialConnection);
+                    return tryConnect(attempt.get(), isInitialConnection);
                 } catch (ConnectionException e) {
                     errors = logError(host, e, errors, iter);
                     if (isInitialConnection) {
@@ -219,6 +227,8 @@ class ControlConnection implements Host.StateListener {
                 errors = logError(host, new DriverException("Connection thread interrupted"), errors, iter);
             while (iter.hasNext())
                 errors = logError(iter.next(), new DriverException("Connection thread interrupted"), errors, iter);
+        } finally {
+            race.stop();
         }
         throw new NoHostAvailableException(errors == null ? Collections.<InetSocketAddress, Throwable>emptyMap() : errors);
     }
@@ -239,10 +249,8 @@ class ControlConnection implements Host.StateListener {
         return errors;
     }
 
-    private Connection tryConnect(Host host, boolean isInitialConnection) throws ConnectionException, ExecutionException, InterruptedException, UnsupportedProtocolVersionException, ClusterNameMismatchException
+    private Connection tryConnect(Connection connection, boolean isInitialConnection) throws ConnectionException, ExecutionException, InterruptedException
     {
-        Connection connection = cluster.connectionFactory.open(host);
-
         // If no protocol version was specified, set the default as soon as a connection succeeds (it's needed to parse UDTs in refreshSchema)
         if (cluster.connectionFactory.protocolVersion == null)
             cluster.connectionFactory.protocolVersion = ProtocolVersion.NEWEST_SUPPORTED;
@@ -285,6 +293,14 @@ class ControlConnection implements Host.StateListener {
     }
 
     public void refreshSchema(String keyspace, String table, String udt) throws InterruptedException {
+        refreshSchema(keyspace, table, udt, true);
+    }
+
+    /**
+     * @param refreshTokenMap whether to also refresh the node list and token map if a whole keyspace is refreshed.
+     * If false, the caller is responsible for it.
+     */
+    public void refreshSchema(String keyspace, String table, String udt, boolean refreshTokenMap) throws InterruptedException {
         logger.debug("[Control connection] Refreshing schema for {}{}",
             keyspace == null ? "everything" : keyspace,
             table == null ? (udt == null ? "" : '.' + udt + " (UDT)") : '.' + table + " (table)");
@@ -293,7 +309,7 @@ class ControlConnection implements Host.StateListener {
             // At startup, when we add the initial nodes, this will be null, which is ok
             if (c == null)
                 return;
-            refreshSchema(c, keyspace, table, udt, cluster, false);
+            refreshSchema(c, keyspace, table, udt, cluster, false, refreshTokenMap);
         } catch (ConnectionException e) {
             logger.debug("[Control connection] Connection error while refreshing schema ({})", e.getMessage());
             signalError();
@@ -309,6 +325,10 @@ class ControlConnection implements Host.StateListener {
     }
 
     static void refreshSchema(Connection connection, String keyspace, String table, String udt, Cluster.Manager cluster, boolean isInitialConnection) throws ConnectionException, BusyConnectionException, ExecutionException, InterruptedException {
+        refreshSchema(connection, keyspace, table, udt, cluster, isInitialConnection, true);
+    }
+
+    private static VersionNumber cassandraVersion(Connection connection, Cluster.Manager cluster) {
         Host host = cluster.metadata.getHost(connection.address);
         // Neither host, nor it's version should be null. But instead of dying if there is a race or something, we can kind of try to infer
         // a Cassandra version from the protocol version (this is not full proof, we can have the protocol 1 against C* 2.0+, but it's worth
@@ -321,15 +341,38 @@ class ControlConnection implements Host.StateListener {
         } else {
             cassandraVersion = host.getCassandraVersion();
         }
+        return cassandraVersion;
+    }
+
+    static void refreshSchema(Connection connection, String keyspace, String table, String udt, Cluster.Manager cluster, boolean isInitialConnection, boolean refreshTokenMap) throws ConnectionException, BusyConnectionException, ExecutionException, InterruptedException {
+        VersionNumber cassandraVersion = cassandraVersion(connection, cluster);
+        QueryOptions queryOptions = cluster.configuration.getQueryOptions();
+
+        // Table metadata is only fetched here in EAGER mode, and for the keyspaces that are included
+        boolean withTables = queryOptions.getTableMetadataLoading() == QueryOptions.TableMetadataLoading.EAGER
+                          && (keyspace == null || queryOptions.includesMetadataOf(keyspace));
+        if (table != null && !withTables) {
+            if (queryOptions.getTableMetadataLoading() == QueryOptions.TableMetadataLoading.LAZY) {
+                // Forget about the table, it will be loaded again when needed
+                KeyspaceMetadata ksm = cluster.metadata.getKeyspaceInternal(keyspace);
+                if (ksm != null)
+                    ksm.invalidateTable(table);
+            }
+            return;
+        }
 
         // Make sure we're up to date on schema
         String whereClause = "";
+        String tablesWhereClause = "";
         if (keyspace != null) {
             whereClause = " WHERE keyspace_name = '" + keyspace + '\'';
             if (table != null)
                 whereClause += " AND columnfamily_name = '" + table + '\'';
             else if (udt != null)
                 whereClause += " AND type_name = '" + udt + '\'';
+            tablesWhereClause = whereClause;
+        } else if (!queryOptions.getMetadataKeyspaces().isEmpty()) {
+            tablesWhereClause = " WHERE keyspace_name IN ('" + Joiner.on("', '").join(queryOptions.getMetadataKeyspaces()) + "')";
         }
 
         DefaultResultSetFuture ksFuture = (table == null && udt == null)
@@ -338,11 +381,11 @@ class ControlConnection implements Host.StateListener {
         DefaultResultSetFuture udtFuture = table == null && (cassandraVersion.getMajor() > 2 || (cassandraVersion.getMajor() == 2 && cassandraVersion.getMinor() >= 1))
                                          ? new DefaultResultSetFuture(null, cluster.protocolVersion(), new Requests.Query(SELECT_USERTYPES + whereClause))
                                          : null;
-        DefaultResultSetFuture cfFuture = udt == null
-                                        ? new DefaultResultSetFuture(null, cluster.protocolVersion(), new Requests.Query(SELECT_COLUMN_FAMILIES + whereClause))
+        DefaultResultSetFuture cfFuture = udt == null && withTables
+                                        ? new DefaultResultSetFuture(null, cluster.protocolVersion(), new Requests.Query(SELECT_COLUMN_FAMILIES + tablesWhereClause))
                                         : null;
-        DefaultResultSetFuture colsFuture = udt == null
-                                          ? new DefaultResultSetFuture(null, cluster.protocolVersion(), new Requests.Query(SELECT_COLUMNS + whereClause))
+        DefaultResultSetFuture colsFuture = udt == null && withTables
+                                          ? new DefaultResultSetFuture(null, cluster.protocolVersion(), new Requests.Query(SELECT_COLUMNS + tablesWhereClause))
                                           : null;
 
         if (ksFuture != null)
@@ -370,10 +413,47 @@ class ControlConnection implements Host.StateListener {
 
         // If the table is null, we either rebuild all from scratch or have an updated keyspace. In both case, rebuild the token map
         // since some replication on some keyspace may have changed
-        if (table == null)
+        if (table == null && refreshTokenMap)
             refreshNodeListAndTokenMap(connection, cluster, false, false);
     }
 
+    /**
+     * Fetches the metadata of one table (or all of them if {@code table} is null) of a keyspace and adds it to
+     * that keyspace, without touching the rest of the schema metadata. This blocks until the metadata is fetched.
+     *
+     * @return whether the metadata could be fetched.
+     */
+    boolean loadTables(KeyspaceMetadata ksm, String table) throws InterruptedException {
+        Connection c = connectionRef.get();
+        if (c == null)
+            return false;
+
+        String whereClause = " WHERE keyspace_name = '" + ksm.getName() + '\'';
+        if (table != null)
+            whereClause += " AND columnfamily_name = '" + table + '\'';
+
+        logger.debug("[Control connection] Loading metadata of {}.{}", ksm.getName(), table == null ? "*" : table);
+        try {
+            DefaultResultSetFuture cfFuture = new DefaultResultSetFuture(null, cluster.protocolVersion(), new Requests.Query(SELECT_COLUMN_FAMILIES + whereClause));
+            DefaultResultSetFuture colsFuture = new DefaultResultSetFuture(null, cluster.protocolVersion(), new Requests.Query(SELECT_COLUMNS + whereClause));
+            c.write(cfFuture);
+            c.write(colsFuture);
+            cluster.metadata.addTables(ksm, cfFuture.get(), colsFuture.get(), cassandraVersion(c, cluster));
+            return true;
+        } catch (ConnectionException e) {
+            logger.debug("[Control connection] Connection error while loading table metadata ({})", e.getMessage());
+            signalError();
+        } catch (ExecutionException e) {
+            if (!isShutdown)
+                logger.error("[Control connection] Unexpected error while loading table metadata", e);
+            signalError();
+        } catch (BusyConnectionException e) {
+            logger.debug("[Control connection] Connection is busy, reconnecting");
+            signalError();
+        }
+        return false;
+    }
+
     public void refreshNodeListAndTokenMap() {
         Connection c = connectionRef.get();
         // At startup, when we add the initial nodes, this will be null, which is ok
@@ -689,7 +769,7 @@ class ControlConnection implements Host.StateListener {
         // or it's not part of our computed token map
         Metadata.TokenMap tkmap = cluster.metadata.tokenMap;
         if (host.getCassandraVersion() == null || tkmap == null || !tkmap.hosts.contains(host))
-            refreshNodeListAndTokenMap();
+            cluster.submitNodeListRefresh();
     }
 
     @Override
@@ -703,6 +783,6 @@ class ControlConnection implements Host.StateListener {
             backgroundReconnect(0);
         }
 
-        refreshNodeListAndTokenMap();
+        cluster.submitNodeListRefresh();
     }
 }
@@ -63,7 +63,9 @@ class DefaultResultSetFuture extends AbstractFuture<ResultSet> implements Result
                     switch (rm.kind) {
                         case SET_KEYSPACE:
                             // propagate the keyspace change to other connections
-                            session.poolsState.setKeyspace(((Responses.Result.SetKeyspace)rm).keyspace);
+                            String newKeyspace = ((Responses.Result.SetKeyspace)rm).keyspace;
+                            session.poolsState.setKeyspace(newKeyspace);
+                            session.warmUpPreparedStatements(newKeyspace);
                             set(ArrayBackedResultSet.fromMessage(rm, session, protocolVersion, info, statement));
                             break;
                         case SCHEMA_CHANGE:
@@ -275,7 +277,9 @@ class DefaultResultSetFuture extends AbstractFuture<ResultSet> implements Result
         if (!super.cancel(mayInterruptIfRunning))
             return false;
 
-        handler.cancel();
+        // The handler can be null if this future is waiting on a request shared with other futures
+        if (handler != null)
+            handler.cancel();
         return true;
     }
 
@@ -18,6 +18,7 @@ package com.datastax.driver.core;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.*;
 
@@ -31,7 +32,9 @@ import com.datastax.driver.core.exceptions.AuthenticationException;
 /**
  * A connection pool with a varying number of connections.
  *
- * This is used with {@link ProtocolVersion#V2} and lower.
+ * This is used with {@link ProtocolVersion#V2} and lower, and with {@link ProtocolVersion#V3}
+ * when the pool is allowed to grow past a single connection (see
+ * {@link PoolingOptions#getMaxConnectionsPerHostV3}).
  */
 class DynamicConnectionPool extends HostConnectionPool {
 
@@ -39,13 +42,20 @@ class DynamicConnectionPool extends HostConnectionPool {
 
     private static final int MAX_SIMULTANEOUS_CREATION = 1;
 
+    // Only warn once about an unreachable max connections setting, not for every pool
+    private static final AtomicBoolean warnedUnreachableMaxConnections = new AtomicBoolean();
+
     // When a request timeout, we may never release its stream ID. So over time, a given connection
     // may get less an less available streams. When the number of available ones go below the
     // following threshold, we just replace the connection by a new one.
     private static final int MIN_AVAILABLE_STREAMS = 96;
+    private static final int MIN_AVAILABLE_STREAMS_V3 = 32768 * 3 / 4;
 
     final List<PooledConnection> connections;
     private final AtomicInteger open;
+    private final ProtocolVersion protocolVersion;
+    // Only maintained with V3, where the number of in flight requests is also bounded per host
+    private final AtomicInteger totalInFlight = new AtomicInteger();
     private final Set<Connection> trash = new CopyOnWriteArraySet<Connection>();
 
     private volatile int waiter = 0;
@@ -56,8 +66,9 @@ class DynamicConnectionPool extends HostConnectionPool {
 
     private final AtomicInteger scheduledForCreation = new AtomicInteger();
 
-    public DynamicConnectionPool(Host host, HostDistance hostDistance, SessionManager manager) throws ConnectionException, UnsupportedProtocolVersionException, ClusterNameMismatchException {
+    public DynamicConnectionPool(Host host, HostDistance hostDistance, SessionManager manager, ProtocolVersion protocolVersion) throws ConnectionException, UnsupportedProtocolVersionException, ClusterNameMismatchException {
         super(host, hostDistance, manager);
+        this.protocolVersion = protocolVersion;
 
         this.newConnectionTask = new Runnable() {
             @Override
@@ -68,9 +79,9 @@ class DynamicConnectionPool extends HostConnectionPool {
         };
 
         // Create initial core connections
-        List<PooledConnection> l = new ArrayList<PooledConnection>(options().getCoreConnectionsPerHost(hostDistance));
+        List<PooledConnection> l = new ArrayList<PooledConnection>(coreConnections());
         try {
-            for (int i = 0; i < options().getCoreConnectionsPerHost(hostDistance); i++)
+            for (int i = 0; i < coreConnections(); i++)
                 l.add(manager.connectionFactory().open(this));
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -92,9 +103,25 @@ class DynamicConnectionPool extends HostConnectionPool {
         this.connections = new CopyOnWriteArrayList<PooledConnection>(l);
         this.open = new AtomicInteger(connections.size());
 
+        if (isV3())
+            checkMaxConnectionsReachable();
+
         logger.trace("Created connection pool to host {}", host);
     }
 
+    // A new connection is only opened once all others have newConnectionThreshold requests in flight, so with V3 the
+    // per-host request cap bounds how many connections can ever be opened
+    private void checkMaxConnectionsReachable() {
+        int maxRequests = options().getMaxSimultaneousRequestsPerHostThreshold(hostDistance);
+        int threshold = newConnectionThreshold();
+        int reachable = maxRequests / threshold + 1;
+        if (reachable < maxConnections() && warnedUnreachableMaxConnections.compareAndSet(false, true))
+            logger.warn("Max connections per host for {} hosts is {}, but with at most {} requests per host and a new "
+                        + "connection threshold of {}, pools can't grow past {} connections. Lower the new connection "
+                        + "threshold or raise the max requests per host to allow more connections.",
+                        new Object[]{ hostDistance, maxConnections(), maxRequests, threshold, reachable });
+    }
+
     // Clean up if we got an error at construction time but still created part of the core connections
     private void forceClose(List<PooledConnection> l) {
         for (PooledConnection connection : l) {
@@ -106,6 +133,41 @@ class DynamicConnectionPool extends HostConnectionPool {
         return manager.configuration().getPoolingOptions();
     }
 
+    private boolean isV3() {
+        return protocolVersion.compareTo(ProtocolVersion.V3) >= 0;
+    }
+
+    private int coreConnections() {
+        return isV3()
+             ? options().getCoreConnectionsPerHostV3(hostDistance)
+             : options().getCoreConnectionsPerHost(hostDistance);
+    }
+
+    private int maxConnections() {
+        return isV3()
+             ? options().getMaxConnectionsPerHostV3(hostDistance)
+             : options().getMaxConnectionsPerHost(hostDistance);
+    }
+
+    private int newConnectionThreshold() {
+        return isV3()
+             ? options().getNewConnectionThreshold(hostDistance)
+             : options().getMaxSimultaneousRequestsPerConnectionThreshold(hostDistance);
+    }
+
+    // With V3, the threshold is low enough compared to the new connection threshold that
+    // trashing a connection doesn't push the remaining ones back over it (since load is spread
+    // evenly across connections), which would make the pool oscillate.
+    private int trashThreshold() {
+        return isV3()
+             ? options().getNewConnectionThreshold(hostDistance) / 4
+             : options().getMinSimultaneousRequestsPerConnectionThreshold(hostDistance);
+    }
+
+    private int minAvailableStreams() {
+        return isV3() ? MIN_AVAILABLE_STREAMS_V3 : MIN_AVAILABLE_STREAMS;
+    }
+
     @Override
     public PooledConnection borrowConnection(long timeout, TimeUnit unit) throws ConnectionException, TimeoutException {
         if (isClosed())
@@ -114,7 +176,7 @@ class DynamicConnectionPool extends HostConnectionPool {
             throw new ConnectionException(host.getSocketAddress(), "Pool is shutdown");
 
         if (connections.isEmpty()) {
-            for (int i = 0; i < options().getCoreConnectionsPerHost(hostDistance); i++) {
+            for (int i = 0; i < coreConnections(); i++) {
                 // We don't respect MAX_SIMULTANEOUS_CREATION here because it's  only to
                 // protect against creating connection in excess of core too quickly
                 scheduledForCreation.incrementAndGet();
@@ -135,7 +197,7 @@ class DynamicConnectionPool extends HostConnectionPool {
             }
         }
 
-        if (minInFlight >= options().getMaxSimultaneousRequestsPerConnectionThreshold(hostDistance) && connections.size() < options().getMaxConnectionsPerHost(hostDistance))
+        if (minInFlight >= newConnectionThreshold() && connections.size() < maxConnections())
             maybeSpawnNewConnection();
 
         if (leastBusy == null) {
@@ -146,21 +208,38 @@ class DynamicConnectionPool extends HostConnectionPool {
             // the previous check to connections and now. But in that case, the line above will have trigger the creation of
             // a new connection, so just wait that connection and move on
             leastBusy = waitForConnection(timeout, unit);
-        } else {
-            while (true) {
-                int inFlight = leastBusy.inFlight.get();
+        } else if (!tryAcquireStream(leastBusy)) {
+            leastBusy = waitForConnection(timeout, unit);
+        }
+        leastBusy.setKeyspace(manager.poolsState.keyspace);
+        return leastBusy;
+    }
 
-                if (inFlight >= leastBusy.maxAvailableStreams()) {
-                    leastBusy = waitForConnection(timeout, unit);
+    // Reserves a request slot on the connection, as well as on the host with V3.
+    private boolean tryAcquireStream(PooledConnection connection) {
+        if (isV3()) {
+            int maxRequests = options().getMaxSimultaneousRequestsPerHostThreshold(hostDistance);
+            while (true) {
+                int inFlight = totalInFlight.get();
+                if (inFlight >= maxRequests)
+                    return false;
+                if (totalInFlight.compareAndSet(inFlight, inFlight + 1))
                     break;
-                }
+            }
+        }
 
-                if (leastBusy.inFlight.compareAndSet(inFlight, inFlight + 1))
-                    break;
+        while (true) {
+            int inFlight = connection.inFlight.get();
+
+            if (inFlight >= connection.maxAvailableStreams()) {
+                if (isV3())
+                    totalInFlight.decrementAndGet();
+                return false;
             }
+
+            if (connection.inFlight.compareAndSet(inFlight, inFlight + 1))
+                return true;
         }
-        leastBusy.setKeyspace(manager.poolsState.keyspace);
-        return leastBusy;
     }
 
     private void awaitAvailableConnection(long timeout, TimeUnit unit) throws InterruptedException {
@@ -175,6 +254,8 @@ class DynamicConnectionPool extends HostConnectionPool {
     }
 
     private void signalAvailableConnection() {
+        dequeuePending();
+
         // Quick check if it's worth signaling to avoid locking
         if (waiter == 0)
             return;
@@ -230,17 +311,8 @@ class DynamicConnectionPool extends HostConnectionPool {
 
             // If we race with shutdown, leastBusy could be null. In that case we just loop and we'll throw on the next
             // iteration anyway
-            if (leastBusy != null) {
-                while (true) {
-                    int inFlight = leastBusy.inFlight.get();
-
-                    if (inFlight >= leastBusy.maxAvailableStreams())
-                        break;
-
-                    if (leastBusy.inFlight.compareAndSet(inFlight, inFlight + 1))
-                        return leastBusy;
-                }
-            }
+            if (leastBusy != null && tryAcquireStream(leastBusy))
+                return leastBusy;
 
             remaining = timeout - Cluster.timeSince(start, unit);
         } while (remaining > 0);
@@ -251,6 +323,8 @@ class DynamicConnectionPool extends HostConnectionPool {
     @Override
     public void returnConnection(PooledConnection connection) {
         int inFlight = connection.inFlight.decrementAndGet();
+        if (isV3())
+            totalInFlight.decrementAndGet();
 
         if (isClosed()) {
             close(connection);
@@ -267,9 +341,9 @@ class DynamicConnectionPool extends HostConnectionPool {
             if (inFlight == 0 && trash.remove(connection))
                 close(connection);
         } else {
-            if (connections.size() > options().getCoreConnectionsPerHost(hostDistance) && inFlight <= options().getMinSimultaneousRequestsPerConnectionThreshold(hostDistance)) {
+            if (connections.size() > coreConnections() && inFlight <= trashThreshold()) {
                 trashConnection(connection);
-            } else if (connection.maxAvailableStreams() < MIN_AVAILABLE_STREAMS) {
+            } else if (connection.maxAvailableStreams() < minAvailableStreams()) {
                 replaceConnection(connection);
             } else {
                 signalAvailableConnection();
@@ -291,7 +365,7 @@ class DynamicConnectionPool extends HostConnectionPool {
             // First, make sure we don't go below core connections
             for (;;) {
                 int opened = open.get();
-                if (opened <= options().getCoreConnectionsPerHost(hostDistance)) {
+                if (opened <= coreConnections()) {
                     connection.markForTrash.set(false);
                     return false;
                 }
@@ -325,7 +399,7 @@ class DynamicConnectionPool extends HostConnectionPool {
         // First, make sure we don't cross the allowed limit of open connections
         for(;;) {
             int opened = open.get();
-            if (opened >= options().getMaxConnectionsPerHost(hostDistance))
+            if (opened >= maxConnections())
                 return false;
 
             if (open.compareAndSet(opened, opened + 1))
@@ -437,7 +511,7 @@ class DynamicConnectionPool extends HostConnectionPool {
         // more connection than maximum (and if we create more than core connection due to a race but this isn't
         // justified by the load, the connection in excess will be quickly trashed anyway)
         int opened = open.get();
-        for (int i = opened; i < options().getCoreConnectionsPerHost(hostDistance); i++) {
+        for (int i = opened; i < coreConnections(); i++) {
             // We don't respect MAX_SIMULTANEOUS_CREATION here because it's only to
             // protect against creating connection in excess of core too quickly
             scheduledForCreation.incrementAndGet();
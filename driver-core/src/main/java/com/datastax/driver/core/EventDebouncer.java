@@ -0,0 +1,126 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accumulates events and delivers them in bulk.
+ * <p>
+ * Each new event restarts the window; the pending events are delivered when the window ends without
+ * any new event, or as soon as there are too many of them. Deliveries happen on {@code executor}.
+ */
+abstract class EventDebouncer<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventDebouncer.class);
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    // All guarded by this
+    private List<T> pending = new ArrayList<T>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    EventDebouncer(String name, ScheduledExecutorService scheduler, Executor executor) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    /**
+     * The current window, in milliseconds (0 to deliver events right away).
+     */
+    abstract int windowMillis();
+
+    /**
+     * The number of pending events that triggers a delivery before the end of the window.
+     */
+    abstract int maxPendingEvents();
+
+    /**
+     * Processes a batch of events. This is called on the executor.
+     */
+    abstract void deliver(List<T> events) throws Exception;
+
+    void eventReceived(T event) {
+        int window = windowMillis();
+        boolean flushNow;
+        synchronized (this) {
+            pending.add(event);
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            flushNow = window <= 0 || pending.size() >= maxPendingEvents();
+            if (!flushNow) {
+                try {
+                    scheduledFlush = scheduler.schedule(flushTask, window, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // The cluster is shutting down
+                    return;
+                }
+            }
+        }
+        if (flushNow)
+            flush();
+    }
+
+    /**
+     * Delivers the pending events now.
+     */
+    void flush() {
+        final List<T> events;
+        synchronized (this) {
+            if (pending.isEmpty())
+                return;
+            events = pending;
+            pending = new ArrayList<T>();
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+
+        logger.debug("Delivering {} coalesced {} events", events.size(), name);
+        try {
+            executor.execute(new ExceptionCatchingRunnable() {
+                @Override
+                public void runMayThrow() throws Exception {
+                    deliver(events);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The cluster is shutting down, the events don't matter anymore
+        }
+    }
+}
@@ -16,12 +16,13 @@
 package com.datastax.driver.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
 import org.jboss.netty.handler.codec.frame.FrameDecoder;
 import org.jboss.netty.handler.codec.frame.LengthFieldBasedFrameDecoder;
@@ -36,6 +37,10 @@ class Frame {
     public final Header header;
     public final ChannelBuffer body;
 
+    // If non-null, the body is a slice of this buffer, which starts with enough room for the header. This allows
+    // the Encoder to write the header in place instead of allocating a separate buffer for it.
+    private final ChannelBuffer withHeaderRoom;
+
     /**
      * On-wire frame.
      * Frames for protocol versions 1+2 are defined as:
@@ -59,8 +64,13 @@ class Frame {
      *   +---------+
      */
     private Frame(Header header, ChannelBuffer body) {
+        this(header, body, null);
+    }
+
+    private Frame(Header header, ChannelBuffer body, ChannelBuffer withHeaderRoom) {
         this.header = header;
         this.body = body;
+        this.withHeaderRoom = withHeaderRoom;
     }
 
     private static Frame create(ChannelBuffer fullFrame) {
@@ -99,6 +109,20 @@ class Frame {
         return new Frame(header, body);
     }
 
+    /**
+     * Creates a frame from a buffer that contains {@link Header#lengthFor} unused bytes followed by the body, so that
+     * the header can be written in place when the frame is encoded.
+     */
+    public static Frame createWithHeaderRoom(ProtocolVersion version, int opcode, int streamId, EnumSet<Header.Flag> flags, ChannelBuffer buffer) {
+        Header header = new Header(version, flags, streamId, opcode);
+        return new Frame(header, bodyAfterHeaderRoom(buffer, version), buffer);
+    }
+
+    private static ChannelBuffer bodyAfterHeaderRoom(ChannelBuffer buffer, ProtocolVersion version) {
+        int headerLength = Header.lengthFor(version);
+        return buffer.slice(buffer.readerIndex() + headerLength, buffer.readableBytes() - headerLength);
+    }
+
     public static class Header {
 
         public final ProtocolVersion version;
@@ -158,6 +182,13 @@ class Frame {
         return new Frame(header, newBody);
     }
 
+    /**
+     * Same as {@link #with}, but {@code newBuffer} must leave room for the header like in {@link #createWithHeaderRoom}.
+     */
+    public Frame withHeaderRoom(ChannelBuffer newBuffer) {
+        return new Frame(header, bodyAfterHeaderRoom(newBuffer, header.version), newBuffer);
+    }
+
     public static final class Decoder extends FrameDecoder {
         static final DecoderV1 decoderV1 = new DecoderV1();
         static final DecoderV3 decoderV3 = new DecoderV3();
@@ -240,15 +271,27 @@ class Frame {
 
             Frame frame = (Frame)msg;
             ProtocolVersion protocolVersion = frame.header.version;
+            int headerLength = Header.lengthFor(protocolVersion);
+
+            if (frame.withHeaderRoom != null) {
+                ChannelBuffer header = frame.withHeaderRoom.slice(frame.withHeaderRoom.readerIndex(), headerLength);
+                header.clear();
+                writeHeader(frame, header, protocolVersion);
+                return frame.withHeaderRoom;
+            }
 
-            ChannelBuffer header = ChannelBuffers.buffer(Header.lengthFor(protocolVersion));
+            ChannelBuffer header = ChannelBuffers.buffer(headerLength);
+            writeHeader(frame, header, protocolVersion);
+            return ChannelBuffers.wrappedBuffer(header, frame.body);
+        }
+
+        private void writeHeader(Frame frame, ChannelBuffer header, ProtocolVersion protocolVersion) {
             // We don't bother with the direction, we only send requests.
             header.writeByte(frame.header.version.toInt());
             header.writeByte(Header.Flag.serialize(frame.header.flags));
             writeStreamId(frame.header.streamId, header, protocolVersion);
             header.writeByte(frame.header.opcode);
             header.writeInt(frame.body.readableBytes());
-            return ChannelBuffers.wrappedBuffer(header, frame.body);
         }
 
         private void writeStreamId(int streamId, ChannelBuffer header, ProtocolVersion protocolVersion) {
@@ -310,4 +353,80 @@ class Frame {
             return compressor.compress(frame);
         }
     }
+
+    /**
+     * Gathers the encoded frames written during a flush cycle and sends them downstream as a single
+     * composite buffer, so that they reach the socket in one write.
+     * <p>
+     * This handler is stateful: there must be one instance per channel, and flush cycles must only
+     * be driven by one thread at a time (see {@code Connection.Flusher}). Outside of a flush cycle,
+     * writes go through unchanged.
+     */
+    public static class Coalescer extends SimpleChannelDownstreamHandler {
+
+        private final int maxBytes;
+        private final List<MessageEvent> pending = new ArrayList<MessageEvent>();
+        private int pendingBytes;
+        private boolean buffering;
+
+        public Coalescer(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        void startBuffering() {
+            buffering = true;
+        }
+
+        void flush(ChannelHandlerContext ctx) {
+            buffering = false;
+            writePending(ctx);
+        }
+
+        @Override
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            if (!buffering || !(e.getMessage() instanceof ChannelBuffer)) {
+                writePending(ctx);
+                ctx.sendDownstream(e);
+                return;
+            }
+
+            pending.add(e);
+            pendingBytes += ((ChannelBuffer)e.getMessage()).readableBytes();
+            if (pendingBytes >= maxBytes)
+                writePending(ctx);
+        }
+
+        private void writePending(ChannelHandlerContext ctx) {
+            int size = pending.size();
+            if (size == 0)
+                return;
+
+            if (size == 1) {
+                ctx.sendDownstream(pending.get(0));
+            } else {
+                ChannelBuffer[] buffers = new ChannelBuffer[size];
+                final ChannelFuture[] futures = new ChannelFuture[size];
+                for (int i = 0; i < size; i++) {
+                    MessageEvent e = pending.get(i);
+                    buffers[i] = (ChannelBuffer)e.getMessage();
+                    futures[i] = e.getFuture();
+                }
+                ChannelFuture future = Channels.future(ctx.getChannel());
+                future.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture written) {
+                        for (ChannelFuture f : futures) {
+                            if (written.isSuccess())
+                                f.setSuccess();
+                            else
+                                f.setFailure(written.getCause());
+                        }
+                    }
+                });
+                Channels.write(ctx, future, ChannelBuffers.wrappedBuffer(buffers));
+            }
+            pending.clear();
+            pendingBytes = 0;
+        }
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * A bounded pool of fixed-size direct buffers, used to encode outgoing frames.
+ * <p>
+ * Netty 3 does not pool buffers, so otherwise every request would allocate a heap buffer that the NIO worker
+ * then copies to a direct buffer. Requests that don't fit in a pooled buffer get an exactly-sized heap buffer.
+ * <p>
+ * Buffers must only be released once the write that uses them has completed.
+ */
+class FrameBufferPool {
+
+    static final FrameBufferPool instance = new FrameBufferPool(
+        SystemProperties.getInt("com.datastax.driver.FRAME_BUFFER_SIZE", 8 * 1024),
+        SystemProperties.getInt("com.datastax.driver.FRAME_BUFFER_POOL_SIZE", 1024));
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+
+    private final Queue<ChannelBuffer> pooled = new ConcurrentLinkedQueue<ChannelBuffer>();
+    // Tracks the size of the queue, since ConcurrentLinkedQueue#size is not constant time
+    private final AtomicInteger pooledCount = new AtomicInteger();
+
+    FrameBufferPool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Returns an empty buffer that can hold at least {@code capacity} bytes.
+     */
+    ChannelBuffer acquire(int capacity) {
+        if (capacity > bufferSize || maxPooledBuffers <= 0)
+            return ChannelBuffers.buffer(capacity);
+
+        ChannelBuffer buffer = pooled.poll();
+        if (buffer == null)
+            return ChannelBuffers.directBuffer(bufferSize);
+
+        pooledCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer obtained from {@link #acquire} back to the pool. This is a no-op for buffers that were not
+     * allocated by the pool, or if the pool is full.
+     */
+    void release(ChannelBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != bufferSize)
+            return;
+
+        if (pooledCount.incrementAndGet() > maxPooledBuffers) {
+            pooledCount.decrementAndGet();
+            return;
+        }
+        pooled.offer(buffer);
+    }
+
+    int pooledCount() {
+        return pooledCount.get();
+    }
+}
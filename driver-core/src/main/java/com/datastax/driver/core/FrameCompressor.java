@@ -57,10 +57,12 @@ abstract class FrameCompressor {
 
         public Frame compress(Frame frame) throws IOException {
             byte[] input = CBUtil.readRawBytes(frame.body);
-            byte[] output = new byte[Snappy.maxCompressedLength(input.length)];
+            // Leave room for the header so that it doesn't need a separate buffer
+            int headerLength = Frame.Header.lengthFor(frame.header.version);
+            byte[] output = new byte[headerLength + Snappy.maxCompressedLength(input.length)];
 
-            int written = Snappy.compress(input, 0, input.length, output, 0);
-            return frame.with(ChannelBuffers.wrappedBuffer(output, 0, written));
+            int written = Snappy.compress(input, 0, input.length, output, headerLength);
+            return frame.withHeaderRoom(ChannelBuffers.wrappedBuffer(output, 0, headerLength + written));
         }
 
         public Frame decompress(Frame frame) throws IOException {
@@ -105,17 +107,19 @@ abstract class FrameCompressor {
         public Frame compress(Frame frame) throws IOException {
             byte[] input = CBUtil.readRawBytes(frame.body);
 
+            // Leave room for the header so that it doesn't need a separate buffer
+            int headerLength = Frame.Header.lengthFor(frame.header.version);
             int maxCompressedLength = compressor.maxCompressedLength(input.length);
-            byte[] output = new byte[INTEGER_BYTES + maxCompressedLength];
+            byte[] output = new byte[headerLength + INTEGER_BYTES + maxCompressedLength];
 
-            output[0] = (byte) (input.length >>> 24);
-            output[1] = (byte) (input.length >>> 16);
-            output[2] = (byte) (input.length >>>  8);
-            output[3] = (byte) (input.length);
+            output[headerLength]     = (byte) (input.length >>> 24);
+            output[headerLength + 1] = (byte) (input.length >>> 16);
+            output[headerLength + 2] = (byte) (input.length >>>  8);
+            output[headerLength + 3] = (byte) (input.length);
 
             try {
-                int written = compressor.compress(input, 0, input.length, output, INTEGER_BYTES, maxCompressedLength);
-                return frame.with(ChannelBuffers.wrappedBuffer(output, 0, INTEGER_BYTES + written));
+                int written = compressor.compress(input, 0, input.length, output, headerLength + INTEGER_BYTES, maxCompressedLength);
+                return frame.withHeaderRoom(ChannelBuffers.wrappedBuffer(output, 0, headerLength + INTEGER_BYTES + written));
             } catch (Exception e) {
                 throw new IOException(e);
             }
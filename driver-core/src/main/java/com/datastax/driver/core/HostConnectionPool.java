@@ -15,10 +15,20 @@
  */
 package com.datastax.driver.core;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+
+import com.datastax.driver.core.exceptions.DriverException;
+
 /**
  * A set of connections to a live host.
  *
@@ -30,9 +40,12 @@ abstract class HostConnectionPool {
         switch (version) {
             case V1:
             case V2:
-                return new DynamicConnectionPool(host, hostDistance, manager);
+                return new DynamicConnectionPool(host, hostDistance, manager, version);
             case V3:
-                return new SingleConnectionPool(host, hostDistance, manager);
+                // A single connection is enough in most cases, only use the dynamic pool if it's allowed to grow
+                return manager.configuration().getPoolingOptions().getMaxConnectionsPerHostV3(hostDistance) > 1
+                     ? new DynamicConnectionPool(host, hostDistance, manager, version)
+                     : new SingleConnectionPool(host, hostDistance, manager);
             default:
                 throw version.unsupported();
         }
@@ -44,6 +57,12 @@ abstract class HostConnectionPool {
 
     protected final AtomicReference<CloseFuture> closeFuture = new AtomicReference<CloseFuture>();
 
+    // Requests parked until a connection has a free stream, see PoolingOptions#getMaxQueueSize
+    private final Queue<PendingEntry> pending = new ConcurrentLinkedQueue<PendingEntry>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Number of times dequeuePending was called since the dispatch task last checked, see dequeuePending
+    private final AtomicInteger dequeueSignals = new AtomicInteger();
+
     protected HostConnectionPool(Host host, HostDistance hostDistance, SessionManager manager) {
         assert hostDistance != HostDistance.IGNORED;
         this.host = host;
@@ -65,6 +84,124 @@ abstract class HostConnectionPool {
 
     protected abstract CloseFuture makeCloseFuture();
 
+    /**
+     * Parks a request until a connection of this pool can accept it, without blocking the caller.
+     *
+     * @return {@code false} if the queue of pending requests is full, in which case the request
+     * was not parked.
+     */
+    boolean enqueue(PendingBorrow borrow, int maxQueueSize, long timeout, TimeUnit unit) {
+        while (true) {
+            int count = pendingCount.get();
+            if (count >= maxQueueSize)
+                return false;
+            if (pendingCount.compareAndSet(count, count + 1))
+                break;
+        }
+
+        final PendingEntry entry = new PendingEntry(borrow);
+        entry.timeout = manager.connectionFactory().timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout t) {
+                if (entry.claim()) {
+                    // Don't wait for a dispatch to drop it: if no connection is returned for a while, the timed out
+                    // entries would pile up in the queue (and keep their requests reachable)
+                    pending.remove(entry);
+                    entry.borrow.onFailure(new DriverException("Timeout while waiting in the queue of pending requests"));
+                }
+            }
+        }, timeout, unit);
+        pending.add(entry);
+
+        // A stream might have been freed up, or the pool closed, between the caller's attempt and now
+        if (isClosed())
+            failPending();
+        else
+            dequeuePending();
+        return true;
+    }
+
+    /**
+     * Hands streams that were freed up to parked requests. This must be called by implementations
+     * each time a connection might have become available.
+     * <p>
+     * This is usually called from an I/O thread, and borrowing a connection can block (to set the
+     * keyspace on it), so the requests are actually dispatched from {@link SessionManager#executor()}.
+     */
+    protected void dequeuePending() {
+        if (pending.isEmpty())
+            return;
+        // Only one dispatch task at a time; signals received while it runs make it do another pass
+        if (dequeueSignals.getAndIncrement() > 0)
+            return;
+        try {
+            manager.executor().execute(dequeueTask);
+        } catch (RejectedExecutionException e) {
+            // The session is shutting down, closing the pool will fail the pending requests
+            dequeueSignals.set(0);
+        }
+    }
+
+    private final Runnable dequeueTask = new Runnable() {
+        @Override
+        public void run() {
+            int signals;
+            do {
+                signals = dequeueSignals.get();
+                dispatchPending();
+            } while (!dequeueSignals.compareAndSet(signals, 0));
+        }
+    };
+
+    private void dispatchPending() {
+        while (!pending.isEmpty()) {
+            PooledConnection connection;
+            try {
+                connection = borrowConnection(0, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Still saturated
+                return;
+            } catch (ConnectionException e) {
+                // If the pool was closed, closeAsync fails pending requests. Otherwise the keyspace
+                // could not be set on the connection: fail a request so that it tries the next host.
+                if (isClosed())
+                    return;
+                PendingEntry entry = claimNext();
+                if (entry != null)
+                    entry.borrow.onFailure(e);
+                continue;
+            }
+
+            PendingEntry entry = claimNext();
+            if (entry == null) {
+                // Only timed out requests were left
+                connection.release();
+                return;
+            }
+            entry.borrow.onConnection(connection);
+        }
+    }
+
+    private PendingEntry claimNext() {
+        PendingEntry entry;
+        do {
+            entry = pending.poll();
+        } while (entry != null && !entry.claim());
+        return entry;
+    }
+
+    private void failPending() {
+        PendingEntry entry;
+        while ((entry = pending.poll()) != null) {
+            if (entry.claim())
+                entry.borrow.onFailure(new ConnectionException(host.getSocketAddress(), "Pool is shutdown"));
+        }
+    }
+
+    int pendingCount() {
+        return pendingCount.get();
+    }
+
     public final boolean isClosed() {
         return closeFuture.get() != null;
     }
@@ -77,9 +214,47 @@ abstract class HostConnectionPool {
 
         future = makeCloseFuture();
 
-        return closeFuture.compareAndSet(null, future)
-            ? future
-            : closeFuture.get(); // We raced, it's ok, return the future that was actually set
+        if (!closeFuture.compareAndSet(null, future))
+            return closeFuture.get(); // We raced, it's ok, return the future that was actually set
+
+        failPending();
+        return future;
+    }
+
+    /**
+     * A request waiting for a connection of a saturated pool.
+     */
+    interface PendingBorrow {
+        /**
+         * Called with a borrowed connection, from {@link SessionManager#executor()}.
+         */
+        void onConnection(PooledConnection connection);
+
+        /**
+         * Called if no connection became available in time, or if the pool was closed.
+         */
+        void onFailure(Exception exception);
+    }
+
+    private class PendingEntry {
+        final PendingBorrow borrow;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        volatile Timeout timeout;
+
+        PendingEntry(PendingBorrow borrow) {
+            this.borrow = borrow;
+        }
+
+        // Exactly one of dispatch, timeout or close gets to complete the entry
+        boolean claim() {
+            if (!claimed.compareAndSet(false, true))
+                return false;
+            pendingCount.decrementAndGet();
+            Timeout t = timeout;
+            if (t != null)
+                t.cancel();
+            return true;
+        }
     }
 
     static class PoolState {
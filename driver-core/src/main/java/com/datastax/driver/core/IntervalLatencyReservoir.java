@@ -0,0 +1,117 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+/**
+ * A {@link Reservoir} that records values in striped, fixed-size histograms, and reports the values of the last
+ * complete interval.
+ * <p>
+ * Each thread records into one of several stripes (chosen by thread id), with the same buckets as
+ * {@link LatencyReservoir}, so that recording is a single atomic increment that is rarely contended, whatever the
+ * number of threads. The stripes are merged when a snapshot is taken.
+ * <p>
+ * Time is divided in intervals of {@code intervalNanos}: a snapshot contains the values recorded during the last
+ * interval that is over. Intervals are switched lazily, when a value is recorded or a snapshot is taken, so when
+ * nothing is recorded for a while the last interval can be longer than {@code intervalNanos}.
+ */
+class IntervalLatencyReservoir implements Reservoir {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final long intervalNanos;
+    private final int stripeMask;
+
+    private volatile Interval current;
+    private volatile Interval previous;
+    private final AtomicBoolean switching = new AtomicBoolean();
+
+    IntervalLatencyReservoir(long interval, TimeUnit unit) {
+        this(interval, unit, Runtime.getRuntime().availableProcessors());
+    }
+
+    IntervalLatencyReservoir(long interval, TimeUnit unit, int stripes) {
+        this.intervalNanos = unit.toNanos(interval);
+        // Round to a power of two so that the stripe can be picked with a mask
+        int powerOfTwo = Integer.highestOneBit(Math.max(1, Math.min(stripes, MAX_STRIPES)) * 2 - 1);
+        this.stripeMask = powerOfTwo - 1;
+        long now = System.nanoTime();
+        this.current = new Interval(powerOfTwo, now);
+        this.previous = new Interval(powerOfTwo, now);
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        int stripe = (int)Thread.currentThread().getId() & stripeMask;
+        currentInterval().stripes[stripe].incrementAndGet(LatencyReservoir.bucket(value));
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        currentInterval();
+        AtomicLongArray[] stripes = previous.stripes;
+        long[] counts = new long[LatencyReservoir.BUCKET_COUNT];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < counts.length; i++)
+                counts[i] += stripe.get(i);
+        }
+        return new LatencyReservoir.BucketSnapshot(counts);
+    }
+
+    private Interval currentInterval() {
+        Interval interval = current;
+        long now = System.nanoTime();
+        if (now - interval.start < intervalNanos || !switching.compareAndSet(false, true))
+            return interval;
+
+        // Only one thread switches, the others keep recording in the old interval in the meantime. Those late
+        // updates still land in the interval that becomes the previous one, which is fine.
+        try {
+            interval = current;
+            if (now - interval.start < intervalNanos)
+                return interval;
+            Interval next = new Interval(stripeMask + 1, now);
+            previous = interval;
+            current = next;
+            return next;
+        } finally {
+            switching.set(false);
+        }
+    }
+
+    private static class Interval {
+        final long start;
+        final AtomicLongArray[] stripes;
+
+        Interval(int stripeCount, long start) {
+            this.start = start;
+            this.stripes = new AtomicLongArray[stripeCount];
+            for (int i = 0; i < stripeCount; i++)
+                stripes[i] = new AtomicLongArray(LatencyReservoir.BUCKET_COUNT);
+        }
+    }
+}
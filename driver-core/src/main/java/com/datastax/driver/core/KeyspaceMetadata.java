@@ -39,6 +39,13 @@ public class KeyspaceMetadata {
     private final Map<String, TableMetadata> tables = new ConcurrentHashMap<String, TableMetadata>();
     private final Map<String, UserType> userTypes = new ConcurrentHashMap<String, UserType>();
 
+    // Only set if table metadata is loaded on demand (see QueryOptions.TableMetadataLoading#LAZY)
+    private volatile Metadata lazyLoader;
+    private volatile boolean allTablesLoaded;
+    // The tables that were looked up lazily but don't exist, so that they're not fetched again until the next schema
+    // change in this keyspace
+    private final Set<String> missingTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     private KeyspaceMetadata(String name, boolean durableWrites, Map<String, String> replication) {
         this.name = name;
         this.durableWrites = durableWrites;
@@ -95,26 +102,59 @@ public class KeyspaceMetadata {
 
     /**
      * Returns the metadata for a table contained in this keyspace.
+     * <p>
+     * If table metadata is {@link QueryOptions.TableMetadataLoading#LAZY loaded on demand}, this
+     * fetches the metadata of the table from Cassandra the first time it is called for it, and
+     * blocks until it is fetched. If the table doesn't exist, it is not fetched again until the
+     * schema of this keyspace changes.
      *
      * @param name the name of table to retrieve
      * @return the metadata for table {@code name} if it exists in this keyspace,
      * {@code null} otherwise.
      */
     public TableMetadata getTable(String name) {
-        return tables.get(Metadata.handleId(name));
+        String id = Metadata.handleId(name);
+        TableMetadata table = tables.get(id);
+        if (table == null && lazyLoader != null && !allTablesLoaded && !missingTables.contains(id) && lazyLoader.loadTables(this, id)) {
+            table = tables.get(id);
+            if (table == null)
+                missingTables.add(id);
+        }
+        return table;
     }
 
     void removeTable(String table) {
         tables.remove(table);
     }
 
+    void setLazyLoader(Metadata lazyLoader) {
+        this.lazyLoader = lazyLoader;
+    }
+
+    // Called when a table changed and its metadata is loaded lazily
+    void invalidateTable(String table) {
+        allTablesLoaded = false;
+        missingTables.clear();
+        tables.remove(table);
+    }
+
+    private void maybeLoadAllTables() {
+        if (lazyLoader != null && !allTablesLoaded && lazyLoader.loadTables(this, null))
+            allTablesLoaded = true;
+    }
+
     /**
      * Returns the tables defined in this keyspace.
+     * <p>
+     * If table metadata is {@link QueryOptions.TableMetadataLoading#LAZY loaded on demand}, this
+     * fetches the metadata of all the tables of this keyspace the first time it is called, and
+     * blocks until it is fetched.
      *
      * @return a collection of the metadata for the tables defined in this
      * keyspace.
      */
     public Collection<TableMetadata> getTables() {
+        maybeLoadAllTables();
         return Collections.<TableMetadata>unmodifiableCollection(tables.values());
     }
 
@@ -172,6 +212,7 @@ public class KeyspaceMetadata {
         for (UserType udt : userTypes.values())
             sb.append('\n').append(udt.exportAsString()).append('\n');
 
+        maybeLoadAllTables();
         for (TableMetadata tm : tables.values())
             sb.append('\n').append(tm.exportAsString()).append('\n');
 
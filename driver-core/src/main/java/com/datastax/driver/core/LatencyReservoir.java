@@ -0,0 +1,212 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.google.common.base.Charsets;
+
+/**
+ * A {@link Reservoir} that counts values in fixed buckets, in the manner of HdrHistogram.
+ * <p>
+ * Buckets are laid out log-linearly: each power of two is split in {@code 2^SUB_BUCKET_BITS} buckets, so that the
+ * value reported for a percentile is within about 3% of the recorded one. Recording a value is a single atomic
+ * increment, without any lock or allocation, and the memory used is fixed (about 10KB) whatever the number of values
+ * recorded. Values are expected in nanoseconds, and are capped to {@link #MAX_VALUE} (about 18 minutes).
+ * <p>
+ * The histogram is cumulative: snapshots cover all the values recorded since the reservoir was created.
+ */
+class LatencyReservoir implements Reservoir {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    @Override
+    public int size() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += counts.get(i);
+        return (int)Math.min(total, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void update(long value) {
+        counts.incrementAndGet(bucket(value));
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            copy[i] = counts.get(i);
+        return new BucketSnapshot(copy);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return value < 0 ? 0 : (int)value;
+        if (value > MAX_VALUE)
+            value = MAX_VALUE;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT)
+            return bucket;
+        int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    // The value reported for the values counted in a bucket: the middle of the bucket
+    static long value(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT)
+            return bucket;
+        long lower = lowerBound(bucket);
+        long width = lowerBound(bucket + 1) - lower;
+        return lower + width / 2;
+    }
+
+    /**
+     * A snapshot computed from the bucket counts, without materializing the individual values.
+     */
+    static class BucketSnapshot extends Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        BucketSnapshot(long[] counts) {
+            super(new long[0]);
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts)
+                total += count;
+            this.total = total;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile))
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            if (total == 0)
+                return 0.0;
+
+            // The rank of the value, counting from 1
+            long rank = Math.max(1, (long)Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return value(i);
+            }
+            return getMax();
+        }
+
+        @Override
+        public int size() {
+            return (int)Math.min(total, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Returns the representative value of each bucket, as many times as values were counted in it. This
+         * materializes all the values and should be avoided for large histograms.
+         */
+        @Override
+        public long[] getValues() {
+            long[] values = new long[size()];
+            int v = 0;
+            for (int i = 0; i < counts.length && v < values.length; i++) {
+                for (long j = 0; j < counts[i] && v < values.length; j++)
+                    values[v++] = value(i);
+            }
+            return values;
+        }
+
+        @Override
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0)
+                    return value(i);
+            }
+            return 0;
+        }
+
+        @Override
+        public long getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0)
+                    return value(i);
+            }
+            return 0;
+        }
+
+        @Override
+        public double getMean() {
+            if (total == 0)
+                return 0.0;
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0)
+                    sum += (double)value(i) * counts[i];
+            }
+            return sum / total;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (total <= 1)
+                return 0.0;
+            double mean = getMean();
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    double diff = value(i) - mean;
+                    sum += diff * diff * counts[i];
+                }
+            }
+            return Math.sqrt(sum / (total - 1));
+        }
+
+        /**
+         * Writes the representative value and count of each non-empty bucket, one bucket per line.
+         */
+        @Override
+        public void dump(OutputStream output) {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(output, Charsets.UTF_8));
+            try {
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0)
+                        out.printf("%d\t%d%n", value(i), counts[i]);
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
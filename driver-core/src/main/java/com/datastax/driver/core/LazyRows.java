@@ -0,0 +1,171 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * The rows of a ROWS response, read on demand from the frame they were received in.
+ * <p>
+ * Decoding a response only records where the rows start. The position of each cell is computed when its row is
+ * first accessed (rows are indexed in order, since cells are length-prefixed), and values are only sliced from
+ * the frame when they are read. Offsets are kept in a single array for the whole page, so a row costs one small
+ * view object instead of a list and a {@code ByteBuffer} per cell.
+ * <p>
+ * Like {@link ResultSet}, this is not thread-safe. It is safely published to the consuming thread by the
+ * future or the queue it is handed through.
+ */
+class LazyRows extends AbstractQueue<List<ByteBuffer>> {
+
+    private final ByteBuffer page;
+    private final int rowCount;
+    private final int columnCount;
+
+    // Position in page of the length prefix of each cell, for rows [0, indexedRows)
+    private int[] cellOffsets;
+    private int indexedRows;
+    // Position in page of the first row that is not indexed yet
+    private int nextRowPosition;
+
+    // Index of the next row returned by poll()
+    private int head;
+
+    private LazyRows(ByteBuffer page, int rowCount, int columnCount) {
+        this.page = page;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.nextRowPosition = page.position();
+    }
+
+    /**
+     * Wraps the rows that start at the current reader index of {@code body}. This does not read the rows.
+     */
+    static LazyRows decode(ChannelBuffer body, int rowCount, int columnCount) {
+        return new LazyRows(body.toByteBuffer(), rowCount, columnCount);
+    }
+
+    /**
+     * Returns an independent view over the same rows, starting at the first row. The page itself is shared
+     * (rows are only ever read with absolute gets), so this does not copy any data.
+     */
+    LazyRows duplicate() {
+        return new LazyRows(page, rowCount, columnCount);
+    }
+
+    @Override
+    public boolean offer(List<ByteBuffer> row) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<ByteBuffer> poll() {
+        return head >= rowCount ? null : row(head++);
+    }
+
+    @Override
+    public List<ByteBuffer> peek() {
+        return head >= rowCount ? null : row(head);
+    }
+
+    @Override
+    public int size() {
+        return rowCount - head;
+    }
+
+    @Override
+    public Iterator<List<ByteBuffer>> iterator() {
+        return new Iterator<List<ByteBuffer>>() {
+            private int next = head;
+
+            @Override
+            public boolean hasNext() {
+                return next < rowCount;
+            }
+
+            @Override
+            public List<ByteBuffer> next() {
+                if (next >= rowCount)
+                    throw new NoSuchElementException();
+                return row(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private List<ByteBuffer> row(int row) {
+        indexUpTo(row);
+        return new RowView(row);
+    }
+
+    private void indexUpTo(int row) {
+        if (row < indexedRows)
+            return;
+
+        if (cellOffsets == null)
+            cellOffsets = new int[rowCount * columnCount];
+
+        int position = nextRowPosition;
+        while (indexedRows <= row) {
+            int base = indexedRows * columnCount;
+            for (int i = 0; i < columnCount; i++) {
+                cellOffsets[base + i] = position;
+                int length = page.getInt(position);
+                position += 4 + Math.max(length, 0);
+            }
+            indexedRows += 1;
+        }
+        nextRowPosition = position;
+    }
+
+    private ByteBuffer cell(int row, int column) {
+        int position = cellOffsets[row * columnCount + column];
+        int length = page.getInt(position);
+        if (length < 0)
+            return null;
+
+        ByteBuffer value = page.duplicate();
+        value.position(position + 4);
+        value.limit(position + 4 + length);
+        return value;
+    }
+
+    private class RowView extends AbstractList<ByteBuffer> implements RandomAccess {
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public ByteBuffer get(int column) {
+            if (column < 0 || column >= columnCount)
+                throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", column, columnCount));
+            return cell(row, column);
+        }
+
+        @Override
+        public int size() {
+            return columnCount;
+        }
+    }
+}
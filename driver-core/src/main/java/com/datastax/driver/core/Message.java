@@ -19,11 +19,8 @@ import java.util.EnumSet;
 import java.util.UUID;
 
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.oneone.OneToOneDecoder;
-import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,6 +80,10 @@ abstract class Message {
         public final Type type;
         protected boolean tracingRequested;
 
+        // The duration of the last encoding of this request, or -1 if it shouldn't be timed (see RequestPhase.ENCODE).
+        // This is reset by Connection before each write.
+        volatile long encodeNanos = -1;
+
         protected Request(Type type) {
             this.type = type;
         }
@@ -94,6 +95,22 @@ abstract class Message {
         public boolean isTracingRequested() {
             return tracingRequested;
         }
+
+        /**
+         * Returns a copy of this request. Writing a request sets its stream id (and its encoding
+         * time), so the same instance can't be written more than once at a time: concurrent
+         * writes, like speculative executions, must each use their own copy.
+         */
+        Request copy() {
+            Request copy = copyInternal();
+            copy.tracingRequested = tracingRequested;
+            return copy;
+        }
+
+        // Only the requests that can be sent by RequestHandler need to be copied
+        protected Request copyInternal() {
+            throw new UnsupportedOperationException(type + " requests can't be copied");
+        }
     }
 
     public static abstract class Response extends Message {
@@ -142,6 +159,11 @@ abstract class Message {
         public final Type type;
         protected UUID tracingId;
 
+        // When this response started being decoded, and when it was handed to its handler if the request phases
+        // are tracked (see RequestPhase.DECODE)
+        long receivedAt;
+        volatile long dispatchedAt;
+
         protected Response(Type type) {
             this.type = type;
         }
@@ -161,16 +183,24 @@ abstract class Message {
         public Object decode(ChannelHandlerContext ctx, Channel channel, Object msg) {
             assert msg instanceof Frame : "Expecting frame, got " + msg;
 
+            long receivedAt = System.nanoTime();
             Frame frame = (Frame)msg;
             boolean isTracing = frame.header.flags.contains(Frame.Header.Flag.TRACING);
             UUID tracingId = isTracing ? CBUtil.readUUID(frame.body) : null;
 
             Response response = Response.Type.fromOpcode(frame.header.opcode).decoder.decode(frame.body, frame.header.version);
+            response.receivedAt = receivedAt;
             return response.setTracingId(tracingId).setStreamId(frame.header.streamId);
         }
     }
 
-    public static class ProtocolEncoder extends OneToOneEncoder {
+    /**
+     * Encodes requests into frames.
+     * <p>
+     * The body is encoded in a single buffer obtained from {@link FrameBufferPool}, after some room left for the
+     * header (see {@link Frame#createWithHeaderRoom}). That buffer is given back to the pool once the write completes.
+     */
+    public static class ProtocolEncoder extends SimpleChannelDownstreamHandler {
 
         private final ProtocolVersion protocolVersion;
 
@@ -178,8 +208,10 @@ abstract class Message {
             this.protocolVersion = version;
         }
 
+        @Override
         @SuppressWarnings("unchecked")
-        public Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) {
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) {
+            Object msg = e.getMessage();
             assert msg instanceof Request : "Expecting request, got " + msg;
 
             Request request = (Request)msg;
@@ -188,11 +220,27 @@ abstract class Message {
             if (request.isTracingRequested())
                 flags.add(Frame.Header.Flag.TRACING);
 
+            boolean timed = request.encodeNanos >= 0;
+            long start = timed ? System.nanoTime() : 0;
+
             Coder<Request> coder = (Coder<Request>)request.type.coder;
-            ChannelBuffer body = ChannelBuffers.buffer(coder.encodedSize(request, protocolVersion));
-            coder.encode(request, body, protocolVersion);
+            int headerLength = Frame.Header.lengthFor(protocolVersion);
+            final ChannelBuffer buffer = FrameBufferPool.instance.acquire(headerLength + coder.encodedSize(request, protocolVersion));
+            // Registered first so that the buffer also gets released if encoding fails (Netty fails the future then)
+            e.getFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    FrameBufferPool.instance.release(buffer);
+                }
+            });
+
+            buffer.writerIndex(headerLength);
+            coder.encode(request, buffer, protocolVersion);
+            if (timed)
+                request.encodeNanos = System.nanoTime() - start;
 
-            return Frame.create(protocolVersion, request.type.opcode, request.getStreamId(), flags, body);
+            Frame frame = Frame.createWithHeaderRoom(protocolVersion, request.type.opcode, request.getStreamId(), flags, buffer);
+            Channels.write(ctx, e.getFuture(), frame, e.getRemoteAddress());
         }
     }
 }
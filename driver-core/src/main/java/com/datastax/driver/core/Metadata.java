@@ -110,6 +110,9 @@ public class Metadata {
             for (Row ksRow : ks) {
                 String ksName = ksRow.getString(KeyspaceMetadata.KS_NAME);
                 KeyspaceMetadata ksm = KeyspaceMetadata.build(ksRow, udtDefs.get(ksName));
+                QueryOptions queryOptions = cluster.configuration.getQueryOptions();
+                if (queryOptions.getTableMetadataLoading() == QueryOptions.TableMetadataLoading.LAZY && queryOptions.includesMetadataOf(ksName))
+                    ksm.setLazyLoader(this);
 
                 if (cfDefs.containsKey(ksName)) {
                     buildTableMetadata(ksm, cfDefs.get(ksName), colsDefs.get(ksName), cassandraVersion);
@@ -156,6 +159,32 @@ public class Metadata {
         }
     }
 
+    // Adds tables to a keyspace that is already known, when they are loaded lazily
+    void addTables(KeyspaceMetadata ksm, ResultSet cfs, ResultSet cols, VersionNumber cassandraVersion) {
+        Map<String, Map<String, ColumnMetadata.Raw>> colsByCf = new HashMap<String, Map<String, ColumnMetadata.Raw>>();
+        for (Row row : cols) {
+            String cfName = row.getString(TableMetadata.CF_NAME);
+            Map<String, ColumnMetadata.Raw> l = colsByCf.get(cfName);
+            if (l == null) {
+                l = new HashMap<String, ColumnMetadata.Raw>();
+                colsByCf.put(cfName, l);
+            }
+            ColumnMetadata.Raw c = ColumnMetadata.Raw.fromRow(row, cassandraVersion);
+            l.put(c.name, c);
+        }
+        buildTableMetadata(ksm, cfs.all(), colsByCf, cassandraVersion);
+    }
+
+    // Called by keyspaces whose table metadata is loaded lazily
+    boolean loadTables(KeyspaceMetadata ksm, String table) {
+        try {
+            return cluster.controlConnection.loadTables(ksm, table);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     private void buildTableMetadata(KeyspaceMetadata ksm, List<Row> cfRows, Map<String, Map<String, ColumnMetadata.Raw>> colsDefs, VersionNumber cassandraVersion) {
         for (Row cfRow : cfRows) {
             String cfName = cfRow.getString(TableMetadata.CF_NAME);
@@ -200,7 +229,8 @@ public class Metadata {
         if (factory == null)
             return;
 
-        this.tokenMap = TokenMap.build(factory, allTokens, keyspaces.values());
+        // Readers keep using the previous map until the new one is published, so this never blocks routing
+        this.tokenMap = TokenMap.build(factory, allTokens, keyspaces.values(), tokenMap);
     }
 
     Host add(InetSocketAddress address) {
@@ -228,13 +258,14 @@ public class Metadata {
         if (id == null)
             return null;
 
-        if (cqlId.matcher(id).matches())
-            return id.toLowerCase();
-
-        // Check if it's enclosed in quotes. If it is, remove them
+        // Check if it's enclosed in quotes. If it is, remove them. This is checked first since it is
+        // cheaper than matching the pattern, and is what we get on hot paths (see TokenAwarePolicy).
         if (id.charAt(0) == '"' && id.charAt(id.length() - 1) == '"')
             return id.substring(1, id.length() - 1);
 
+        if (cqlId.matcher(id).matches())
+            return id.toLowerCase();
+
         // otherwise, just return the id.
         return id;
     }
@@ -334,6 +365,58 @@ public class Metadata {
         }
     }
 
+    /**
+     * Returns the set of hosts that are replica for the partition targeted by a statement.
+     * <p>
+     * The partition is determined by {@link Statement#getRoutingToken()} if it is set, or by
+     * {@link Statement#getRoutingKey()} otherwise. Note that {@link BoundStatement}s remember the
+     * token computed from their routing key as long as the partition key values don't change,
+     * so calling this method repeatedly for the same statement does not hash the key every time.
+     * <p>
+     * Note that this information is refreshed asynchronously by the control
+     * connection, when schema or ring topology changes. It might occasionally
+     * be stale (or even empty).
+     *
+     * @param keyspace the name of the keyspace to get replicas for.
+     * @param statement the statement.
+     * @return the (immutable) set of replicas for {@code statement} as known by the driver,
+     * which is empty if the statement has neither a routing token nor a routing key.
+     */
+    public Set<Host> getReplicas(String keyspace, Statement statement) {
+        TokenMap current = tokenMap;
+        if (current == null)
+            return Collections.emptySet();
+
+        Token token = statement.routingToken(current.factory);
+        if (token == null)
+            return Collections.emptySet();
+
+        Set<Host> hosts = current.getReplicas(handleId(keyspace), token);
+        return hosts == null ? Collections.<Host>emptySet() : hosts;
+    }
+
+    /**
+     * Returns the set of hosts that are replica for a given token.
+     * <p>
+     * Note that this information is refreshed asynchronously by the control
+     * connection, when schema or ring topology changes. It might occasionally
+     * be stale (or even empty).
+     *
+     * @param keyspace the name of the keyspace to get replicas for.
+     * @param token the token.
+     * @return the (immutable) set of replicas for {@code token} as known by the driver.
+     */
+    public Set<Host> getReplicas(String keyspace, Token token) {
+        keyspace = handleId(keyspace);
+        TokenMap current = tokenMap;
+        if (current == null) {
+            return Collections.emptySet();
+        } else {
+            Set<Host> hosts = current.getReplicas(keyspace, token);
+            return hosts == null ? Collections.<Host>emptySet() : hosts;
+        }
+    }
+
     /**
      * Returns the set of hosts that are replica for a given token range.
      * <p>
@@ -405,8 +488,10 @@ public class Metadata {
 
     void removeKeyspace(String keyspace) {
         keyspaces.remove(keyspace);
-        if (tokenMap != null)
-            tokenMap.tokenToHosts.remove(keyspace);
+        synchronized (this) {
+            if (tokenMap != null)
+                tokenMap = tokenMap.withoutKeyspace(keyspace);
+        }
     }
 
     /**
@@ -484,76 +569,147 @@ public class Metadata {
         private final Set<TokenRange> tokenRanges;
         final Set<Host> hosts;
 
+        // What this map was built from, and intermediate results, so that the next build can reuse them.
+        private final Map<Host, Collection<String>> rawTokens;
+        private final Map<Token, Host> tokenToPrimary;
+        private final Map<Host, Set<Token>> primaryToTokens;
+        private final Map<Host, String> hostLocations;
+        // Replica and range maps per replication strategy, shared by all keyspaces that have the same replication
+        // settings. The null key is for keyspaces whose strategy is unknown.
+        private final Map<ReplicationStrategy, Map<Token, Set<Host>>> replicaMaps;
+        private final Map<ReplicationStrategy, Map<Host, Set<TokenRange>>> rangeMaps;
+
         private TokenMap(Token.Factory factory,
+                         Map<Host, Collection<String>> rawTokens,
+                         Map<Token, Host> tokenToPrimary,
                          Map<Host, Set<Token>> primaryToTokens,
+                         Map<Host, String> hostLocations,
+                         Map<ReplicationStrategy, Map<Token, Set<Host>>> replicaMaps,
+                         Map<ReplicationStrategy, Map<Host, Set<TokenRange>>> rangeMaps,
                          Map<String, Map<Token, Set<Host>>> tokenToHosts,
                          Map<String, Map<Host, Set<TokenRange>>> hostsToRanges,
                          List<Token> ring, Set<TokenRange> tokenRanges, Set<Host> hosts) {
             this.factory = factory;
+            this.rawTokens = rawTokens;
+            this.tokenToPrimary = tokenToPrimary;
+            this.primaryToTokens = primaryToTokens;
+            this.hostLocations = hostLocations;
+            this.replicaMaps = replicaMaps;
+            this.rangeMaps = rangeMaps;
             this.tokenToHosts = tokenToHosts;
             this.hostsToRanges = hostsToRanges;
             this.ring = ring;
             this.tokenRanges = tokenRanges;
             this.hosts = hosts;
-            for (Map.Entry<Host, Set<Token>> entry : primaryToTokens.entrySet()) {
-                Host host = entry.getKey();
-                host.setTokens(ImmutableSet.copyOf(entry.getValue()));
-            }
         }
 
-        public static TokenMap build(Token.Factory factory, Map<Host, Collection<String>> allTokens, Collection<KeyspaceMetadata> keyspaces) {
+        /**
+         * Builds a new token map. If {@code previous} is not {@code null}, the parts that don't depend on what changed
+         * since it was built are reused: the ring if the tokens are the same, and the replicas of each replication
+         * strategy if the ring and the hosts' locations are the same (which is the case on schema changes).
+         */
+        public static TokenMap build(Token.Factory factory, Map<Host, Collection<String>> allTokens, Collection<KeyspaceMetadata> keyspaces, TokenMap previous) {
 
             Set<Host> hosts = allTokens.keySet();
-            Map<Token, Host> tokenToPrimary = new HashMap<Token, Host>();
-            Map<Host, Set<Token>> primaryToTokens = new HashMap<Host, Set<Token>>();
-            Set<Token> allSorted = new TreeSet<Token>();
-
-            for (Map.Entry<Host, Collection<String>> entry : allTokens.entrySet()) {
-                Host host = entry.getKey();
-                for (String tokenStr : entry.getValue()) {
-                    try {
-                        Token t = factory.fromString(tokenStr);
-                        allSorted.add(t);
-                        tokenToPrimary.put(t, host);
-                        Set<Token> hostTokens = primaryToTokens.get(host);
-                        if (hostTokens == null) {
-                            hostTokens = new HashSet<Token>();
-                            primaryToTokens.put(host, hostTokens);
+            Map<Token, Host> tokenToPrimary;
+            Map<Host, Set<Token>> primaryToTokens;
+            List<Token> ring;
+            Set<TokenRange> tokenRanges;
+
+            boolean sameTokens = previous != null && previous.factory == factory && previous.rawTokens.equals(allTokens);
+            if (sameTokens) {
+                tokenToPrimary = previous.tokenToPrimary;
+                primaryToTokens = previous.primaryToTokens;
+                ring = previous.ring;
+                tokenRanges = previous.tokenRanges;
+            } else {
+                tokenToPrimary = new HashMap<Token, Host>();
+                primaryToTokens = new HashMap<Host, Set<Token>>();
+                Set<Token> allSorted = new TreeSet<Token>();
+
+                for (Map.Entry<Host, Collection<String>> entry : allTokens.entrySet()) {
+                    Host host = entry.getKey();
+                    for (String tokenStr : entry.getValue()) {
+                        try {
+                            Token t = factory.fromString(tokenStr);
+                            allSorted.add(t);
+                            tokenToPrimary.put(t, host);
+                            Set<Token> hostTokens = primaryToTokens.get(host);
+                            if (hostTokens == null) {
+                                hostTokens = new HashSet<Token>();
+                                primaryToTokens.put(host, hostTokens);
+                            }
+                            hostTokens.add(t);
+                        } catch (IllegalArgumentException e) {
+                            // If we failed parsing that token, skip it
                         }
-                        hostTokens.add(t);
-                    } catch (IllegalArgumentException e) {
-                        // If we failed parsing that token, skip it
                     }
                 }
+
+                ring = new ArrayList<Token>(allSorted);
+                tokenRanges = makeTokenRanges(ring, factory);
             }
+            for (Map.Entry<Host, Set<Token>> entry : primaryToTokens.entrySet())
+                entry.getKey().setTokens(ImmutableSet.copyOf(entry.getValue()));
 
-            List<Token> ring = new ArrayList<Token>(allSorted);
-            Set<TokenRange> tokenRanges = makeTokenRanges(ring, factory);
+            // NetworkTopologyStrategy depends on the data center and rack of each host
+            Map<Host, String> hostLocations = new HashMap<Host, String>(hosts.size());
+            for (Host host : hosts)
+                hostLocations.put(host, host.getDatacenter() + '/' + host.getRack());
+            boolean sameRing = sameTokens && previous.hostLocations.equals(hostLocations);
 
+            Map<ReplicationStrategy, Map<Token, Set<Host>>> replicaMaps = new HashMap<ReplicationStrategy, Map<Token, Set<Host>>>();
+            Map<ReplicationStrategy, Map<Host, Set<TokenRange>>> rangeMaps = new HashMap<ReplicationStrategy, Map<Host, Set<TokenRange>>>();
             Map<String, Map<Token, Set<Host>>> tokenToHosts = new HashMap<String, Map<Token, Set<Host>>>();
             Map<String, Map<Host, Set<TokenRange>>> hostsToRanges = new HashMap<String, Map<Host, Set<TokenRange>>>();
             for (KeyspaceMetadata keyspace : keyspaces)
             {
                 ReplicationStrategy strategy = keyspace.replicationStrategy();
-                Map<Token, Set<Host>> ksTokens = (strategy == null)
-                    ? makeNonReplicatedMap(tokenToPrimary)
-                    : strategy.computeTokenToReplicaMap(tokenToPrimary, ring);
+                Map<Token, Set<Host>> ksTokens = replicaMaps.get(strategy);
+                Map<Host, Set<TokenRange>> ksRanges = rangeMaps.get(strategy);
+                if (ksTokens == null) {
+                    if (sameRing && previous.replicaMaps.containsKey(strategy)) {
+                        ksTokens = previous.replicaMaps.get(strategy);
+                        ksRanges = previous.rangeMaps.get(strategy);
+                    } else {
+                        ksTokens = (strategy == null)
+                            ? makeNonReplicatedMap(tokenToPrimary)
+                            : strategy.computeTokenToReplicaMap(tokenToPrimary, ring);
+
+                        if (ring.size() == 1) {
+                            // We forced the single range to ]minToken,minToken], make sure to use that instead of relying on the host's token
+                            ImmutableMap.Builder<Host, Set<TokenRange>> builder = ImmutableMap.builder();
+                            for (Host host : allTokens.keySet())
+                                builder.put(host, tokenRanges);
+                            ksRanges = builder.build();
+                        } else {
+                            ksRanges = computeHostsToRangesMap(tokenRanges, ksTokens, hosts.size());
+                        }
+                    }
+                    replicaMaps.put(strategy, ksTokens);
+                    rangeMaps.put(strategy, ksRanges);
+                }
 
                 tokenToHosts.put(keyspace.getName(), ksTokens);
-
-                Map<Host, Set<TokenRange>> ksRanges;
-                if (ring.size() == 1) {
-                    // We forced the single range to ]minToken,minToken], make sure to use that instead of relying on the host's token
-                    ImmutableMap.Builder<Host, Set<TokenRange>> builder = ImmutableMap.builder();
-                    for (Host host : allTokens.keySet())
-                        builder.put(host, tokenRanges);
-                    ksRanges = builder.build();
-                } else {
-                    ksRanges = computeHostsToRangesMap(tokenRanges, ksTokens, hosts.size());
-                }
                 hostsToRanges.put(keyspace.getName(), ksRanges);
             }
-            return new TokenMap(factory, primaryToTokens, tokenToHosts, hostsToRanges, ring, tokenRanges, hosts);
+            return new TokenMap(factory, allTokens, tokenToPrimary, primaryToTokens, hostLocations, replicaMaps, rangeMaps,
+                                tokenToHosts, hostsToRanges, ring, tokenRanges, hosts);
+        }
+
+        /**
+         * Returns a copy of this map without the given keyspace (this map is never modified, since it is read concurrently).
+         */
+        TokenMap withoutKeyspace(String keyspace) {
+            if (!tokenToHosts.containsKey(keyspace))
+                return this;
+
+            Map<String, Map<Token, Set<Host>>> newTokenToHosts = new HashMap<String, Map<Token, Set<Host>>>(tokenToHosts);
+            newTokenToHosts.remove(keyspace);
+            Map<String, Map<Host, Set<TokenRange>>> newHostsToRanges = new HashMap<String, Map<Host, Set<TokenRange>>>(hostsToRanges);
+            newHostsToRanges.remove(keyspace);
+            return new TokenMap(factory, rawTokens, tokenToPrimary, primaryToTokens, hostLocations, replicaMaps, rangeMaps,
+                                newTokenToHosts, newHostsToRanges, ring, tokenRanges, hosts);
         }
 
         private Set<Host> getReplicas(String keyspace, Token token) {
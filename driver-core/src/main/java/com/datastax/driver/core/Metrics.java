@@ -15,13 +15,22 @@
  */
 package com.datastax.driver.core;
 
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistryListener;
 
 import com.codahale.metrics.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Metrics exposed by the driver.
@@ -37,12 +46,24 @@ import com.codahale.metrics.*;
  */
 public class Metrics {
 
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
     private final Cluster.Manager manager;
     private final MetricRegistry registry = new MetricRegistry();
     private final JmxReporter jmxReporter;
     private final Errors errors = new Errors();
 
-    private final Timer requests = registry.timer("requests");
+    private final Timer requests;
+
+    // The interval over which the per host and per statement timers report latencies
+    private static final int DEFAULT_KEYED_TIMERS_INTERVAL_SECONDS = 60;
+    private final int keyedTimersIntervalSeconds;
+    private final ConcurrentMap<Host, Timer> hostRequests = new ConcurrentHashMap<Host, Timer>();
+    private final ConcurrentMap<String, Timer> statementRequests = new ConcurrentHashMap<String, Timer>();
+    private final AtomicBoolean statementTimersCapReached = new AtomicBoolean();
+
+    // Empty if phase timers are disabled
+    private final Map<RequestPhase, Timer> requestPhases = new EnumMap<RequestPhase, Timer>(RequestPhase.class);
 
     private final Gauge<Integer> knownHosts = registry.register("known-hosts", new Gauge<Integer>() {
         @Override
@@ -100,6 +121,16 @@ public class Metrics {
 
     Metrics(Cluster.Manager manager) {
         this.manager = manager;
+        int interval = manager.configuration.getMetricsOptions().getRequestsTimerIntervalSeconds();
+        this.keyedTimersIntervalSeconds = interval == 0 ? DEFAULT_KEYED_TIMERS_INTERVAL_SECONDS : interval;
+        this.requests = interval == 0
+                      ? registry.timer("requests")
+                      : registry.register("requests", new Timer(new IntervalLatencyReservoir(interval, TimeUnit.SECONDS)));
+        if (manager.configuration.getMetricsOptions().isRequestPhaseTimersEnabled()) {
+            for (RequestPhase phase : RequestPhase.values())
+                requestPhases.put(phase, registry.register("request-phases." + phase.name().toLowerCase().replace('_', '-'),
+                                                           new Timer(new LatencyReservoir())));
+        }
         if (manager.configuration.getMetricsOptions().isJMXReportingEnabled()) {
             this.jmxReporter = JmxReporter.forRegistry(registry).inDomain(manager.clusterName + "-metrics").build();
             this.jmxReporter.start();
@@ -159,6 +190,9 @@ public class Metrics {
      *   <li>the requests rate (in requests per seconds), including 1, 5 and 15 minute rates.</li>
      *   <li>the mean, min and max latencies, as well as latency at a given percentile.</li>
      * </ul>
+     * <p>
+     * See {@link MetricsOptions#setRequestsTimerIntervalSeconds} for a lower overhead
+     * alternative to the default implementation of the latency statistics.
      *
      * @return a {@code Timer} metric object exposing the rate and latency for
      * user requests.
@@ -167,6 +201,67 @@ public class Metrics {
         return requests;
     }
 
+    /**
+     * Returns metrics on the requests sent to each host.
+     * <p>
+     * These timers are only maintained if {@link MetricsOptions#isPerHostTimersEnabled()}
+     * (this can be changed at runtime through {@code cluster.getConfiguration().getMetricsOptions()}).
+     * Each attempt to execute a request on a host is recorded in the timer of that host, so
+     * a request that is retried or speculatively executed is recorded once per host tried.
+     * <p>
+     * The timers are also registered in {@link #getRegistry()} as {@code requests-by-host.<address>},
+     * and the timer of a host is discarded when the host is removed from the cluster.
+     * <p>
+     * The latencies of these timers are not cumulative: their snapshots only contain the latencies
+     * recorded during the last complete interval, of {@link MetricsOptions#getRequestsTimerIntervalSeconds()}
+     * seconds if that is set, one minute otherwise. This way a host that becomes slow stands out
+     * quickly, whatever the uptime. Their counts and rates are cumulative as usual.
+     *
+     * @return an unmodifiable view of the timers of each host (empty if per host timers
+     * are disabled).
+     */
+    public Map<Host, Timer> getHostRequestsTimers() {
+        return Collections.unmodifiableMap(hostRequests);
+    }
+
+    /**
+     * Returns metrics on the requests executed for each prepared statement, keyed by query string.
+     * <p>
+     * These timers are only maintained if {@link MetricsOptions#getMaxStatementTimers()} is strictly
+     * positive (this can be changed at runtime through {@code cluster.getConfiguration().getMetricsOptions()}),
+     * and only for that many distinct statements: the statements executed once that many timers
+     * exist are not tracked.
+     * <p>
+     * The timers are also registered in {@link #getRegistry()} as {@code requests-by-statement.<id>},
+     * where {@code <id>} is the id of the prepared statement; the query string is available as a gauge
+     * named {@code requests-by-statement.<id>.query}.
+     * <p>
+     * Like those of {@link #getHostRequestsTimers()}, the latencies of these timers are only those
+     * of the last complete interval.
+     *
+     * @return an unmodifiable view of the timers of each prepared statement (empty if per statement
+     * timers are disabled).
+     */
+    public Map<String, Timer> getStatementRequestsTimers() {
+        return Collections.unmodifiableMap(statementRequests);
+    }
+
+    /**
+     * Returns metrics on the duration of each phase of the requests.
+     * <p>
+     * These timers are only maintained if {@link MetricsOptions#isRequestPhaseTimersEnabled()}
+     * was set when the {@code Cluster} was built. They are also registered in {@link #getRegistry()}
+     * as {@code request-phases.<phase>} (for example {@code request-phases.pool-borrow}).
+     *
+     * @return an unmodifiable view of the timers of each phase (empty if phase timers
+     * are disabled).
+     *
+     * @see RequestPhaseListener
+     */
+    public Map<RequestPhase, Timer> getRequestPhaseTimers() {
+        return Collections.unmodifiableMap(requestPhases);
+    }
+
     /**
      * Returns an object grouping metrics related to the errors encountered.
      *
@@ -235,6 +330,92 @@ public class Metrics {
         return taskSchedulerQueueSize;
     }
 
+    void recordHostLatency(Host host, long latencyNanos) {
+        if (!manager.configuration.getMetricsOptions().isPerHostTimersEnabled())
+            return;
+
+        Timer timer = hostRequests.get(host);
+        if (timer == null)
+            timer = registerHostTimer(host);
+        timer.update(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Only called for the first request to each host. The lock makes adding the timer to the map and to the registry
+    // atomic with regard to onRemove, otherwise the two could get out of sync and a later registration would fail.
+    private Timer registerHostTimer(Host host) {
+        synchronized (hostRequests) {
+            Timer timer = hostRequests.get(host);
+            if (timer == null) {
+                timer = newKeyedTimer();
+                registry.register(hostTimerName(host), timer);
+                hostRequests.put(host, timer);
+            }
+            return timer;
+        }
+    }
+
+    // There can be many of these timers, so they use a single stripe: that is still one atomic increment per update,
+    // and the updates are spread across timers anyway
+    private Timer newKeyedTimer() {
+        return new Timer(new IntervalLatencyReservoir(keyedTimersIntervalSeconds, TimeUnit.SECONDS, 1));
+    }
+
+    void recordStatementLatency(Statement statement, long latencyNanos) {
+        int max = manager.configuration.getMetricsOptions().getMaxStatementTimers();
+        if (max == 0 || !(statement instanceof BoundStatement))
+            return;
+
+        final PreparedStatement prepared = ((BoundStatement)statement).preparedStatement();
+        String query = prepared.getQueryString();
+        Timer timer = statementRequests.get(query);
+        if (timer == null) {
+            // This is racy, so the cap could be slightly exceeded, but that's not worth synchronizing for
+            if (statementRequests.size() >= max) {
+                if (statementTimersCapReached.compareAndSet(false, true))
+                    logger.info("Reached the maximum number of statement timers ({}), the latency of new statements won't be recorded", max);
+                return;
+            }
+            timer = newKeyedTimer();
+            Timer previous = statementRequests.putIfAbsent(query, timer);
+            if (previous == null) {
+                String name = "requests-by-statement." + prepared.getPreparedId().id;
+                registry.register(name, timer);
+                registry.register(name + ".query", new Gauge<String>() {
+                    @Override
+                    public String getValue() {
+                        return prepared.getQueryString();
+                    }
+                });
+            } else {
+                timer = previous;
+            }
+        }
+        timer.update(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    boolean tracksRequestPhases() {
+        return !requestPhases.isEmpty();
+    }
+
+    void recordRequestPhase(RequestPhase phase, long durationNanos) {
+        Timer timer = requestPhases.get(phase);
+        if (timer != null)
+            timer.update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void onRemove(Host host) {
+        // A request that got the timer before this will still update it, which is harmless
+        synchronized (hostRequests) {
+            hostRequests.remove(host);
+            registry.remove(hostTimerName(host));
+        }
+    }
+
+    // Colons are not allowed in JMX names, which rules out IPv6 addresses and ports
+    private static String hostTimerName(Host host) {
+        return "requests-by-host." + host.getAddress().getHostAddress().replace(':', '_');
+    }
+
     void shutdown() {
         if (jmxReporter != null)
             jmxReporter.stop();
@@ -262,6 +443,9 @@ public class Metrics {
         private final Counter ignoresOnReadTimeout = registry.counter("ignores-on-read-timeout");
         private final Counter ignoresOnUnavailable = registry.counter("ignores-on-unavailable");
 
+        private final Counter speculativeExecutions = registry.counter("speculative-executions");
+        private final Counter speculativeExecutionsWon = registry.counter("speculative-executions-won");
+
         /**
          * Returns the number of connection to Cassandra nodes errors.
          * <p>
@@ -421,5 +605,29 @@ public class Metrics {
         public Counter getIgnoresOnUnavailable() {
             return ignoresOnUnavailable;
         }
+
+        /**
+         * Returns the number of times a speculative execution was started
+         * because a previous execution did not complete within the delay
+         * specified by {@link com.datastax.driver.core.policies.SpeculativeExecutionPolicy}.
+         *
+         * @return the number of speculative executions.
+         */
+        public Counter getSpeculativeExecutions() {
+            return speculativeExecutions;
+        }
+
+        /**
+         * Returns the number of requests that were completed by a speculative
+         * execution rather than by the initial one.
+         * <p>
+         * Compared to {@link #getSpeculativeExecutions()}, this tells how often
+         * speculation actually improved the latency of requests.
+         *
+         * @return the number of requests completed by a speculative execution.
+         */
+        public Counter getSpeculativeExecutionsWon() {
+            return speculativeExecutionsWon;
+        }
     }
 }
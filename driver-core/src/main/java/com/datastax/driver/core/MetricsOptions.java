@@ -22,6 +22,11 @@ public class MetricsOptions {
 
     private final boolean jmxEnabled;
 
+    private volatile boolean perHostTimersEnabled;
+    private volatile int maxStatementTimers;
+    private volatile int requestsTimerIntervalSeconds;
+    private volatile boolean requestPhaseTimersEnabled;
+
     /**
      * Creates a new {@code MetricsOptions} object with default values.
      */
@@ -49,4 +54,133 @@ public class MetricsOptions {
     {
         return jmxEnabled;
     }
+
+    /**
+     * Sets whether the latency of requests should also be recorded per host.
+     * <p>
+     * When enabled, {@link Metrics} maintains one timer per host that the driver
+     * sent requests to (see {@link Metrics#getHostRequestsTimers()}). Each timer
+     * has a fixed size of about 20KB, and is discarded when its host is removed
+     * from the cluster. This is disabled by default.
+     *
+     * @param perHostTimersEnabled whether to record per host latencies.
+     * @return this {@code MetricsOptions}.
+     */
+    public MetricsOptions setPerHostTimersEnabled(boolean perHostTimersEnabled) {
+        this.perHostTimersEnabled = perHostTimersEnabled;
+        return this;
+    }
+
+    /**
+     * Returns whether the latency of requests is also recorded per host.
+     *
+     * @return whether per host latencies are recorded.
+     */
+    public boolean isPerHostTimersEnabled() {
+        return perHostTimersEnabled;
+    }
+
+    /**
+     * Sets the maximum number of prepared statements for which the latency of
+     * requests should also be recorded.
+     * <p>
+     * When this is strictly positive, {@link Metrics} maintains one timer per
+     * prepared statement executed (see {@link Metrics#getStatementRequestsTimers()}),
+     * for the first {@code maxStatementTimers} distinct statements. Each timer
+     * has a fixed size of about 20KB. The default is 0, which means that per
+     * statement latencies are not recorded.
+     *
+     * @param maxStatementTimers the maximum number of statements to record latencies for.
+     * @return this {@code MetricsOptions}.
+     *
+     * @throws IllegalArgumentException if {@code maxStatementTimers < 0}.
+     */
+    public MetricsOptions setMaxStatementTimers(int maxStatementTimers) {
+        if (maxStatementTimers < 0)
+            throw new IllegalArgumentException("Invalid maximum number of statement timers, should be >= 0, got " + maxStatementTimers);
+        this.maxStatementTimers = maxStatementTimers;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of prepared statements for which the latency
+     * of requests is also recorded.
+     *
+     * @return the maximum number of statements to record latencies for, 0 if
+     * per statement latencies are not recorded.
+     */
+    public int getMaxStatementTimers() {
+        return maxStatementTimers;
+    }
+
+    /**
+     * Sets the interval over which {@link Metrics#getRequestsTimer()} reports
+     * latencies, and switches it to a low-overhead implementation.
+     * <p>
+     * By default (0), the requests timer uses the exponentially decaying
+     * reservoir of the Metrics library, which takes a lock on every update.
+     * At very high request rates from many threads this lock can become a
+     * point of contention. When this is strictly positive, the timer instead
+     * records latencies in striped histograms, without locks, and its
+     * snapshots contain the latencies of the last complete interval of that
+     * many seconds (with a precision of about 3%).
+     * <p>
+     * This is also the interval of the {@link Metrics#getHostRequestsTimers() per host} and
+     * {@link Metrics#getStatementRequestsTimers() per statement} timers, which default to
+     * one minute.
+     * <p>
+     * This is read when the {@code Cluster} is created, so these options must
+     * be passed to {@link Cluster.Builder#withMetricsOptions}.
+     *
+     * @param requestsTimerIntervalSeconds the interval in seconds, or 0 to use
+     * the default reservoir.
+     * @return this {@code MetricsOptions}.
+     *
+     * @throws IllegalArgumentException if {@code requestsTimerIntervalSeconds < 0}.
+     */
+    public MetricsOptions setRequestsTimerIntervalSeconds(int requestsTimerIntervalSeconds) {
+        if (requestsTimerIntervalSeconds < 0)
+            throw new IllegalArgumentException("Invalid requests timer interval, should be >= 0, got " + requestsTimerIntervalSeconds);
+        this.requestsTimerIntervalSeconds = requestsTimerIntervalSeconds;
+        return this;
+    }
+
+    /**
+     * Returns the interval over which {@link Metrics#getRequestsTimer()} reports
+     * latencies.
+     *
+     * @return the interval in seconds, or 0 if the requests timer uses the
+     * default reservoir.
+     */
+    public int getRequestsTimerIntervalSeconds() {
+        return requestsTimerIntervalSeconds;
+    }
+
+    /**
+     * Sets whether the duration of each phase of the requests should be recorded.
+     * <p>
+     * When enabled, {@link Metrics} maintains one timer per {@link RequestPhase}
+     * (see {@link Metrics#getRequestPhaseTimers()}). This requires timestamping
+     * each phase of each request, so it has a small cost. This is disabled by
+     * default.
+     * <p>
+     * This is read when the {@code Cluster} is created, so these options must
+     * be passed to {@link Cluster.Builder#withMetricsOptions}.
+     *
+     * @param requestPhaseTimersEnabled whether to record the duration of request phases.
+     * @return this {@code MetricsOptions}.
+     */
+    public MetricsOptions setRequestPhaseTimersEnabled(boolean requestPhaseTimersEnabled) {
+        this.requestPhaseTimersEnabled = requestPhaseTimersEnabled;
+        return this;
+    }
+
+    /**
+     * Returns whether the duration of each phase of the requests is recorded.
+     *
+     * @return whether the duration of request phases is recorded.
+     */
+    public boolean isRequestPhaseTimersEnabled() {
+        return requestPhaseTimersEnabled;
+    }
 }
@@ -42,9 +42,21 @@ package com.datastax.driver.core;
  * The default values respect this (8 for local hosts, 2 for remote hosts).
  * <p>
  * <b>With {@code ProtocolVersion#V3} or above:</b>
- * the driver uses a single connection for each {@code LOCAL} or {@code REMOTE}
+ * by default, the driver uses a single connection for each {@code LOCAL} or {@code REMOTE}
  * host. This connection can handle a larger amount of simultaneous requests,
  * limited by {@link #getMaxSimultaneousRequestsPerHostThreshold(HostDistance)}.
+ * On clients with many cores, a single connection (and therefore a single I/O
+ * thread) per host might become a bottleneck. In that case, the pool can be
+ * allowed to grow up to {@link #getMaxConnectionsPerHostV3} connections:
+ * a new connection is opened when all connections handle more than
+ * {@link #getNewConnectionThreshold} requests, and connections in excess of
+ * {@link #getCoreConnectionsPerHostV3} are reclaimed when the load drops.
+ * Requests are sent on the least busy connection.
+ * Note that the total number of requests to a host is still capped by
+ * {@link #getMaxSimultaneousRequestsPerHostThreshold}, so the pool can only
+ * grow to {@code n} connections if {@code (n - 1) * newConnectionThreshold}
+ * does not exceed that cap (with the defaults, 1024 requests per host and a
+ * threshold of 800 only allow 2 connections to local hosts).
  * <p>
  * Each of these parameters can be separately set for {@code LOCAL} and
  * {@code REMOTE} hosts ({@link HostDistance}). For {@code IGNORED} hosts,
@@ -64,6 +76,14 @@ public class PoolingOptions {
     private static final int DEFAULT_MAX_REQUESTS_PER_HOST_LOCAL = 1024;
     private static final int DEFAULT_MAX_REQUESTS_PER_HOST_REMOTE = 256;
 
+    private static final int DEFAULT_MAX_QUEUE_SIZE = 0;
+
+    private static final int DEFAULT_CORE_POOL_V3 = 1;
+    private static final int DEFAULT_MAX_POOL_V3 = 1;
+
+    private static final int DEFAULT_NEW_CONNECTION_THRESHOLD_LOCAL = 800;
+    private static final int DEFAULT_NEW_CONNECTION_THRESHOLD_REMOTE = 200;
+
     private static final int DEFAULT_POOL_TIMEOUT_MILLIS = 5000;
     private static final int DEFAULT_HEARTBEAT_INTERVAL_SECONDS = 30;
 
@@ -78,8 +98,14 @@ public class PoolingOptions {
     private volatile int maxSimultaneousRequestsPerHostLocal = DEFAULT_MAX_REQUESTS_PER_HOST_LOCAL;
     private volatile int maxSimultaneousRequestsPerHostRemote = DEFAULT_MAX_REQUESTS_PER_HOST_REMOTE;
 
+    private final int[] coreConnectionsV3 = new int[] { DEFAULT_CORE_POOL_V3, DEFAULT_CORE_POOL_V3, 0 };
+    private final int[] maxConnectionsV3 = new int[] { DEFAULT_MAX_POOL_V3, DEFAULT_MAX_POOL_V3, 0 };
+    private final int[] newConnectionThreshold = new int[] { DEFAULT_NEW_CONNECTION_THRESHOLD_LOCAL, DEFAULT_NEW_CONNECTION_THRESHOLD_REMOTE, 0 };
+
 
     private volatile int poolTimeoutMillis = DEFAULT_POOL_TIMEOUT_MILLIS;
+    private volatile int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    private volatile boolean adaptiveConcurrencyLimitEnabled;
     private volatile int heartbeatIntervalSeconds = DEFAULT_HEARTBEAT_INTERVAL_SECONDS;
 
     public PoolingOptions() {}
@@ -295,6 +321,80 @@ public class PoolingOptions {
         return this;
     }
 
+    /**
+     * Returns the maximum number of requests that can wait for an available
+     * connection in each host's pool.
+     * <p>
+     * If this is zero (the default), a request that finds all connections of a
+     * host busy blocks the calling thread until one becomes available, for up to
+     * {@link #getPoolTimeoutMillis()}, and this even when executed with
+     * {@link Session#executeAsync(Statement)}.
+     * <p>
+     * Otherwise, such a request is parked in a per-host queue without blocking
+     * the caller, and sent by the I/O thread that frees up a stream. Requests
+     * still wait at most {@link #getPoolTimeoutMillis()}. If the queue is full,
+     * the request fails right away with that host and moves to the next host of
+     * the query plan.
+     *
+     * @return the maximum number of pending requests per host.
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Sets the maximum number of requests that can wait for an available
+     * connection in each host's pool.
+     *
+     * @param maxQueueSize the new value, or zero to block callers instead.
+     * @return this {@code PoolingOptions}
+     *
+     * @throws IllegalArgumentException if the value is negative.
+     *
+     * @see #getMaxQueueSize()
+     */
+    public PoolingOptions setMaxQueueSize(int maxQueueSize) {
+        if (maxQueueSize < 0)
+            throw new IllegalArgumentException("Max queue size must be positive");
+        this.maxQueueSize = maxQueueSize;
+        return this;
+    }
+
+    /**
+     * Returns whether the number of requests in flight to each host is limited adaptively.
+     *
+     * @return whether adaptive concurrency limits are enabled.
+     *
+     * @see #setAdaptiveConcurrencyLimitEnabled(boolean)
+     */
+    public boolean isAdaptiveConcurrencyLimitEnabled() {
+        return adaptiveConcurrencyLimitEnabled;
+    }
+
+    /**
+     * Sets whether the number of requests in flight to each host is limited adaptively.
+     * <p>
+     * When enabled, the driver adjusts the number of requests that each session can
+     * have in flight to a given host, based on the latencies it observes for that host:
+     * the limit shrinks when latencies rise above their long-term average, and grows
+     * back when they recover. When building the query plan of a request, the driver
+     * skips the hosts that have reached their limit, so that a degraded host is not
+     * buried under requests that would further amplify its slowdown. If all the hosts
+     * of the query plan have reached their limit, the request fails with a
+     * {@link com.datastax.driver.core.exceptions.NoHostAvailableException}.
+     * <p>
+     * The adaptive limit comes in addition to the static thresholds of this class,
+     * which still apply. This option is disabled by default, and is only taken
+     * into account when the {@link Cluster} is initialized.
+     *
+     * @param enabled whether to enable adaptive concurrency limits.
+     * @return this {@code PoolingOptions}.
+     */
+    public PoolingOptions setAdaptiveConcurrencyLimitEnabled(boolean enabled) {
+        this.adaptiveConcurrencyLimitEnabled = enabled;
+        return this;
+    }
+
     /**
      * Returns the heart beat interval, after which a message is sent on an idle connection to make sure it's still alive.
      * @return the interval.
@@ -378,6 +478,149 @@ public class PoolingOptions {
         return this;
     }
 
+    /**
+     * Returns the core number of connections per host.
+     * <p>
+     * This option is only used with {@code ProtocolVersion#V3} or above.
+     * <p>
+     * For the provided {@code distance}, this correspond to the number of
+     * connections initially created and kept open to each host of that
+     * distance.
+     * <p>
+     * The default value for this option is 1 for {@code LOCAL} and
+     * {@code REMOTE} hosts.
+     *
+     * @param distance the {@code HostDistance} for which to return this threshold.
+     * @return the core number of connections per host at distance {@code distance}.
+     */
+    public int getCoreConnectionsPerHostV3(HostDistance distance) {
+        return coreConnectionsV3[distance.ordinal()];
+    }
+
+    /**
+     * Sets the core number of connections per host.
+     * <p>
+     * This option is only used with {@code ProtocolVersion#V3} or above.
+     *
+     * @param distance the {@code HostDistance} for which to set this threshold.
+     * @param newCoreConnections the value to set
+     * @return this {@code PoolingOptions}.
+     *
+     * @throws IllegalArgumentException if {@code distance == HostDistance.IGNORED},
+     * or if {@code newCoreConnections} is greater than the maximum value for this distance.
+     */
+    public synchronized PoolingOptions setCoreConnectionsPerHostV3(HostDistance distance, int newCoreConnections) {
+        if (distance == HostDistance.IGNORED)
+            throw new IllegalArgumentException("Cannot set core connections per host for " + distance + " hosts");
+
+        checkConnectionsPerHostOrder(newCoreConnections, maxConnectionsV3[distance.ordinal()], distance);
+        int oldCore = coreConnectionsV3[distance.ordinal()];
+        coreConnectionsV3[distance.ordinal()] = newCoreConnections;
+        if (oldCore < newCoreConnections && manager != null)
+            manager.ensurePoolsSizing();
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of connections per host.
+     * <p>
+     * This option is only used with {@code ProtocolVersion#V3} or above.
+     * <p>
+     * The default value for this option is 1 for {@code LOCAL} and
+     * {@code REMOTE} hosts. Note that the value in effect when a host's pool
+     * is created determines whether that pool can ever grow past one
+     * connection.
+     * <p>
+     * Connections are only added once all connections handle
+     * {@link #getNewConnectionThreshold} requests, and the number of requests
+     * to a host never exceeds {@link #getMaxSimultaneousRequestsPerHostThreshold}.
+     * The pool therefore never grows past
+     * {@code maxSimultaneousRequestsPerHost / newConnectionThreshold + 1}
+     * connections, whatever this option is set to.
+     *
+     * @param distance the {@code HostDistance} for which to return this threshold.
+     * @return the maximum number of connections per host at distance {@code distance}.
+     */
+    public int getMaxConnectionsPerHostV3(HostDistance distance) {
+        return maxConnectionsV3[distance.ordinal()];
+    }
+
+    /**
+     * Sets the maximum number of connections per host.
+     * <p>
+     * This option is only used with {@code ProtocolVersion#V3} or above.
+     *
+     * @param distance the {@code HostDistance} for which to set this threshold.
+     * @param newMaxConnections the value to set
+     * @return this {@code PoolingOptions}.
+     *
+     * @throws IllegalArgumentException if {@code distance == HostDistance.IGNORED},
+     * or if {@code newMaxConnections} is less than the core value for this distance.
+     */
+    public synchronized PoolingOptions setMaxConnectionsPerHostV3(HostDistance distance, int newMaxConnections) {
+        if (distance == HostDistance.IGNORED)
+            throw new IllegalArgumentException("Cannot set max connections per host for " + distance + " hosts");
+
+        checkConnectionsPerHostOrder(coreConnectionsV3[distance.ordinal()], newMaxConnections, distance);
+        maxConnectionsV3[distance.ordinal()] = newMaxConnections;
+        return this;
+    }
+
+    /**
+     * Returns the number of simultaneous requests on all connections to an host after
+     * which more connections are created.
+     * <p>
+     * This option is only used with {@code ProtocolVersion#V3} or above, and only if
+     * {@link #getMaxConnectionsPerHostV3} is greater than 1.
+     * <p>
+     * If all the connections opened to an host at distance {@code distance}
+     * are handling more than this number of simultaneous requests and there
+     * is less than {@link #getMaxConnectionsPerHostV3} connections open to
+     * this host, a new connection is open. Conversely, connections in excess
+     * of {@link #getCoreConnectionsPerHostV3} are closed when they handle less
+     * than a quarter of this number of requests.
+     * <p>
+     * Since the total number of requests to a host is capped by
+     * {@link #getMaxSimultaneousRequestsPerHostThreshold}, this threshold must
+     * be lowered (or that cap raised) for the pool to grow to more than 2
+     * connections: {@code n} connections require {@code (n - 1) * threshold}
+     * to not exceed the cap.
+     * <p>
+     * The default value for this option is 800 for {@code LOCAL} and 200 for
+     * {@code REMOTE} hosts.
+     *
+     * @param distance the {@code HostDistance} for which to return this threshold.
+     * @return the configured threshold, or the default one if none have been set.
+     */
+    public int getNewConnectionThreshold(HostDistance distance) {
+        return newConnectionThreshold[distance.ordinal()];
+    }
+
+    /**
+     * Sets the number of simultaneous requests on all connections to an host after
+     * which more connections are created.
+     * <p>
+     * This option is only used with {@code ProtocolVersion#V3} or above.
+     *
+     * @param distance the {@code HostDistance} for which to configure this threshold.
+     * @param newValue the value to set (between 1 and 32768).
+     * @return this {@code PoolingOptions}.
+     *
+     * @throws IllegalArgumentException if {@code distance == HostDistance.IGNORED}, or if {@code newValue}
+     * is not in range.
+     */
+    public synchronized PoolingOptions setNewConnectionThreshold(HostDistance distance, int newValue) {
+        if (distance == HostDistance.IGNORED)
+            throw new IllegalArgumentException("Cannot set new connection threshold for " + distance + " hosts");
+
+        if (newValue <= 0 || newValue > StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V3)
+            throw new IllegalArgumentException(String.format("New connection threshold for %s hosts must be in the range (1, %d)",
+                                                             distance, StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V3));
+
+        newConnectionThreshold[distance.ordinal()] = newValue;
+        return this;
+    }
+
     /**
      * Requests the driver to re-evaluate the {@link HostDistance} (through the configured
      * {@link com.datastax.driver.core.policies.LoadBalancingPolicy#distance}) for every known
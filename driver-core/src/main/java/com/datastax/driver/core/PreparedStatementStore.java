@@ -0,0 +1,259 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the statements prepared by a cluster in a local file, so that they can be prepared
+ * again in bulk when the application restarts.
+ * <p>
+ * The file has one line per statement: its id, the keyspace it was prepared in (empty if none)
+ * and the query string, separated by tabs. New statements are appended as they are prepared, from
+ * a background task so that preparing doesn't wait for disk I/O; the file is rewritten without
+ * duplicates when it is opened.
+ *
+ * @see QueryOptions#setPreparedStatementsFile
+ */
+class PreparedStatementStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreparedStatementStore.class);
+
+    private final File file;
+    private final Executor flushExecutor;
+
+    // All guarded by this
+    private final Map<Key, String> ids = new LinkedHashMap<Key, String>();
+
+    // The lines of the statements added since the last flush
+    private final Queue<String> pendingLines = new ConcurrentLinkedQueue<String>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // Guarded by writerLock
+    private Writer writer;
+    private final Object writerLock = new Object();
+
+    private PreparedStatementStore(File file, Executor flushExecutor) {
+        this.file = file;
+        this.flushExecutor = flushExecutor;
+    }
+
+    /**
+     * Opens the store backed by {@code file}, loading the statements it already contains. I/O errors are logged,
+     * the store is then still usable but won't persist anything.
+     *
+     * @param flushExecutor where new statements are written to the file.
+     */
+    static PreparedStatementStore open(File file, Executor flushExecutor) {
+        PreparedStatementStore store = new PreparedStatementStore(file, flushExecutor);
+        synchronized (store) {
+            synchronized (store.writerLock) {
+                store.load();
+                store.rewrite();
+            }
+        }
+        return store;
+    }
+
+    private void load() {
+        if (!file.exists())
+            return;
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 3) {
+                    logger.warn("Ignoring malformed line in prepared statements file {}: {}", file, line);
+                    continue;
+                }
+                Key key = new Key(fields[1].isEmpty() ? null : fields[1], unescape(fields[2]));
+                // Remove first so that the last version of a statement goes last
+                ids.remove(key);
+                ids.put(key, fields[0]);
+            }
+            logger.debug("Loaded {} prepared statements from {}", ids.size(), file);
+        } catch (IOException e) {
+            logger.warn(String.format("Error reading prepared statements file %s, ignoring it", file), e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    // Rewrites the file without duplicates, and opens it for appending
+    private void rewrite() {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer out = null;
+        try {
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), Charsets.UTF_8));
+            for (Map.Entry<Key, String> entry : ids.entrySet())
+                out.write(line(entry.getKey(), entry.getValue()));
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file)))
+                throw new IOException("Could not rename " + tmp + " to " + file);
+
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), Charsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn(String.format("Error writing prepared statements file %s, prepared statements won't be persisted", file), e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Returns the query strings of the statements that were prepared with {@code keyspace} as the current keyspace.
+     */
+    synchronized List<String> queries(String keyspace) {
+        List<String> queries = new ArrayList<String>();
+        for (Key key : ids.keySet()) {
+            if (Objects.equal(key.keyspace, keyspace))
+                queries.add(key.query);
+        }
+        return queries;
+    }
+
+    /**
+     * Records a newly prepared statement.
+     */
+    void add(PreparedStatement statement) {
+        Key key = new Key(statement.getQueryKeyspace(), statement.getQueryString());
+        String id = statement.getPreparedId().id.toString();
+        synchronized (this) {
+            if (id.equals(ids.put(key, id)))
+                return;
+            // Still under the lock, so that the lines of a statement prepared twice are written in the same order
+            pendingLines.add(line(key, id));
+        }
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(flushTask);
+            } catch (RejectedExecutionException e) {
+                // The cluster is shutting down, close() will write the pending lines
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            // Reset first, so that the lines added while this runs schedule another flush
+            flushScheduled.set(false);
+            flush();
+        }
+    };
+
+    private void flush() {
+        synchronized (writerLock) {
+            if (writer == null) {
+                pendingLines.clear();
+                return;
+            }
+            try {
+                String line;
+                while ((line = pendingLines.poll()) != null)
+                    writer.write(line);
+                writer.flush();
+            } catch (IOException e) {
+                logger.warn(String.format("Error writing prepared statements file %s, prepared statements won't be persisted anymore", file), e);
+                closeQuietly(writer);
+                writer = null;
+            }
+        }
+    }
+
+    void close() {
+        synchronized (writerLock) {
+            flush();
+            closeQuietly(writer);
+            writer = null;
+        }
+    }
+
+    private static String line(Key key, String id) {
+        return id + '\t' + (key.keyspace == null ? "" : key.keyspace) + '\t' + escape(key.query) + '\n';
+    }
+
+    private static String escape(String query) {
+        return query.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c != '\\' || i == query.length() - 1) {
+                sb.append(c);
+                continue;
+            }
+            char next = query.charAt(++i);
+            switch (next) {
+                case 't': sb.append('\t'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                default: sb.append(next);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing we can do about it
+        }
+    }
+
+    private static class Key {
+        private final String keyspace;
+        private final String query;
+
+        Key(String keyspace, String query) {
+            this.keyspace = keyspace;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key that = (Key)o;
+            return Objects.equal(this.keyspace, that.keyspace) && this.query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(keyspace, query);
+        }
+    }
+}
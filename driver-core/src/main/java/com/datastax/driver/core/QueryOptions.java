@@ -15,6 +15,11 @@
  */
 package com.datastax.driver.core;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import com.datastax.driver.core.exceptions.UnsupportedFeatureException;
 
 /**
@@ -22,6 +27,21 @@ import com.datastax.driver.core.exceptions.UnsupportedFeatureException;
  */
 public class QueryOptions {
 
+    /**
+     * How the metadata of tables (see {@link KeyspaceMetadata#getTable}) is loaded.
+     */
+    public enum TableMetadataLoading {
+        /** Table metadata is loaded along with the rest of the schema metadata, and kept up to date. */
+        EAGER,
+        /**
+         * Table metadata is only loaded the first time it is requested (which blocks until it is
+         * loaded), then cached until the table changes.
+         */
+        LAZY,
+        /** Table metadata is never loaded: {@link KeyspaceMetadata#getTable} always returns {@code null}. */
+        NONE
+    }
+
     /**
      * The default consistency level for queries: {@code ConsistencyLevel.ONE}.
      */
@@ -37,9 +57,78 @@ public class QueryOptions {
      */
     public static final int DEFAULT_FETCH_SIZE = 5000;
 
+    /**
+     * The default prefetch threshold for paged result sets: 0 (next pages are only
+     * fetched once the current one is exhausted).
+     */
+    public static final int DEFAULT_PREFETCH_THRESHOLD = 0;
+
+    /**
+     * The default idempotence of queries: {@code false}.
+     */
+    public static final boolean DEFAULT_IDEMPOTENCE = false;
+
+    /**
+     * Whether identical in-flight reads are deduplicated by default: {@code false}.
+     */
+    public static final boolean DEFAULT_IN_FLIGHT_READ_DEDUPLICATION = false;
+
+    /**
+     * The default maximum number of entries of the per-session prepared statement cache: 0 (disabled).
+     */
+    public static final int DEFAULT_PREPARED_STATEMENT_CACHE_SIZE = 0;
+
+    /**
+     * The default maximum number of statements re-prepared concurrently on a node that comes up: 64.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REPREPARES = 64;
+
+    /**
+     * The default time budget for re-preparing statements on a node that comes up: 10000 milliseconds.
+     */
+    public static final int DEFAULT_REPREPARE_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The default table metadata loading mode: {@code TableMetadataLoading.EAGER}.
+     */
+    public static final TableMetadataLoading DEFAULT_TABLE_METADATA_LOADING = TableMetadataLoading.EAGER;
+
+    /**
+     * The default window during which schema refresh requests are coalesced: 1000 milliseconds.
+     */
+    public static final int DEFAULT_REFRESH_SCHEMA_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The default maximum number of coalesced schema refresh requests: 20.
+     */
+    public static final int DEFAULT_MAX_PENDING_REFRESH_SCHEMA_REQUESTS = 20;
+
+    /**
+     * The default window during which node list refresh requests are coalesced: 1000 milliseconds.
+     */
+    public static final int DEFAULT_REFRESH_NODE_LIST_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The default maximum number of coalesced node list refresh requests: 20.
+     */
+    public static final int DEFAULT_MAX_PENDING_REFRESH_NODE_LIST_REQUESTS = 20;
+
     private volatile ConsistencyLevel consistency = DEFAULT_CONSISTENCY_LEVEL;
     private volatile ConsistencyLevel serialConsistency = DEFAULT_SERIAL_CONSISTENCY_LEVEL;
     private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile int prefetchThreshold = DEFAULT_PREFETCH_THRESHOLD;
+    private volatile boolean defaultIdempotence = DEFAULT_IDEMPOTENCE;
+    private volatile boolean inFlightReadDeduplication = DEFAULT_IN_FLIGHT_READ_DEDUPLICATION;
+    private volatile int preparedStatementCacheSize = DEFAULT_PREPARED_STATEMENT_CACHE_SIZE;
+    private volatile File preparedStatementsFile;
+    private volatile int maxConcurrentReprepares = DEFAULT_MAX_CONCURRENT_REPREPARES;
+    private volatile int reprepareTimeoutMillis = DEFAULT_REPREPARE_TIMEOUT_MILLIS;
+    private volatile TableMetadataLoading tableMetadataLoading = DEFAULT_TABLE_METADATA_LOADING;
+    private volatile Set<String> metadataKeyspaces = Collections.emptySet();
+    private volatile int refreshSchemaIntervalMillis = DEFAULT_REFRESH_SCHEMA_INTERVAL_MILLIS;
+    private volatile int maxPendingRefreshSchemaRequests = DEFAULT_MAX_PENDING_REFRESH_SCHEMA_REQUESTS;
+    private volatile int refreshNodeListIntervalMillis = DEFAULT_REFRESH_NODE_LIST_INTERVAL_MILLIS;
+    private volatile int maxPendingRefreshNodeListRequests = DEFAULT_MAX_PENDING_REFRESH_NODE_LIST_REQUESTS;
     private volatile Cluster.Manager manager;
 
     /**
@@ -138,4 +227,406 @@ public class QueryOptions {
     public int getFetchSize() {
         return fetchSize;
     }
+
+    /**
+     * Sets the default prefetch threshold to use for paged result sets.
+     * <p>
+     * When iterating over a {@link ResultSet} that has more pages, the next page
+     * is fetched in the background as soon as fewer than this number of rows
+     * remain available without fetching. This allows consumers that read all
+     * pages to overlap network round trips with the processing of rows. The
+     * threshold set through this method will be used for queries that don't
+     * explicitly have one, i.e. when {@link Statement#getPrefetchThreshold} is
+     * negative.
+     * <p>
+     * A sensible value is a fraction of the fetch size. Setting it higher than
+     * the fetch size means that the driver will keep fetching pages ahead of
+     * the consumer until the result set is fully fetched.
+     *
+     * @param prefetchThreshold the new threshold to set as default. 0 disables
+     * prefetching.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code prefetchThreshold &lt; 0}.
+     */
+    public QueryOptions setPrefetchThreshold(int prefetchThreshold) {
+        if (prefetchThreshold < 0)
+            throw new IllegalArgumentException("Invalid prefetchThreshold, should be >= 0, got " + prefetchThreshold);
+
+        this.prefetchThreshold = prefetchThreshold;
+        return this;
+    }
+
+    /**
+     * The default prefetch threshold used for paged result sets.
+     *
+     * @return the default prefetch threshold used for paged result sets.
+     */
+    public int getPrefetchThreshold() {
+        return prefetchThreshold;
+    }
+
+    /**
+     * Sets the default idempotence for queries.
+     * <p>
+     * This will be used for statements for which {@link Statement#isIdempotent()}
+     * returns {@code null}.
+     *
+     * @param defaultIdempotence the new value to set as default idempotence.
+     * @return this {@code QueryOptions} instance.
+     */
+    public QueryOptions setDefaultIdempotence(boolean defaultIdempotence) {
+        this.defaultIdempotence = defaultIdempotence;
+        return this;
+    }
+
+    /**
+     * The default idempotence for queries.
+     *
+     * @return the default idempotence for queries.
+     */
+    public boolean getDefaultIdempotence() {
+        return defaultIdempotence;
+    }
+
+    /**
+     * Sets whether identical reads that are executed concurrently should share a single request.
+     * <p>
+     * When enabled, a {@link BoundStatement} that is idempotent (see {@link Statement#isIdempotent()})
+     * and returns rows is not sent if an identical statement (same prepared statement, same values
+     * and same consistency level) is already in flight on the same session: it completes with the
+     * result of the pending request instead. Results that span more than one page are not shared,
+     * the waiting statements are then executed individually.
+     * <p>
+     * Note that cancelling a future that shares another request's result does not cancel that request.
+     *
+     * @param enabled whether identical in-flight reads should be deduplicated.
+     * @return this {@code QueryOptions} instance.
+     */
+    public QueryOptions setInFlightReadDeduplicationEnabled(boolean enabled) {
+        this.inFlightReadDeduplication = enabled;
+        return this;
+    }
+
+    /**
+     * Whether identical in-flight reads are deduplicated.
+     *
+     * @return whether identical in-flight reads are deduplicated.
+     */
+    public boolean isInFlightReadDeduplicationEnabled() {
+        return inFlightReadDeduplication;
+    }
+
+    /**
+     * Sets the maximum number of entries of the per-session prepared statement cache.
+     * <p>
+     * When strictly positive, each {@link Session} caches the result of {@link Session#prepareAsync(String)}
+     * by query string and logged keyspace: preparing a query that was already prepared returns the cached
+     * statement without contacting Cassandra, and concurrent preparations of the same query share a single
+     * request. Failed preparations are not cached. When the cache is full, the least recently used entries
+     * are evicted.
+     * <p>
+     * This only applies to sessions created after this method is called.
+     *
+     * @param preparedStatementCacheSize the maximum number of cached prepared statements per session, or
+     * 0 to disable the cache.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code preparedStatementCacheSize < 0}.
+     */
+    public QueryOptions setPreparedStatementCacheSize(int preparedStatementCacheSize) {
+        if (preparedStatementCacheSize < 0)
+            throw new IllegalArgumentException("Invalid preparedStatementCacheSize, should be >= 0, got " + preparedStatementCacheSize);
+        this.preparedStatementCacheSize = preparedStatementCacheSize;
+        return this;
+    }
+
+    /**
+     * The maximum number of entries of the per-session prepared statement cache.
+     *
+     * @return the maximum number of cached prepared statements per session (0 if the cache is disabled).
+     */
+    public int getPreparedStatementCacheSize() {
+        return preparedStatementCacheSize;
+    }
+
+    /**
+     * Sets a local file in which the statements prepared by the cluster are persisted, so that they
+     * can be prepared ahead of time when the application restarts.
+     * <p>
+     * Each statement prepared by the cluster is recorded in this file, along with the keyspace it
+     * was prepared in. When the cluster initializes, it loads the statements from the file; then,
+     * each time a {@link Session} is initialized or its keyspace changes, the statements that were
+     * prepared in that keyspace are prepared again in the background, with at most
+     * {@link #setMaxConcurrentReprepares maxConcurrentReprepares} of them in flight. They are
+     * put in the session's {@link #setPreparedStatementCacheSize prepared statement cache} (which is
+     * enabled, without size limit, if it was not already), so that the application's calls to
+     * {@link Session#prepare(String)} find them there instead of contacting Cassandra.
+     * <p>
+     * Errors reading or writing the file are logged but otherwise ignored. This must be set before the
+     * cluster is initialized.
+     *
+     * @param preparedStatementsFile the file, or {@code null} to not persist prepared statements (the
+     * default).
+     * @return this {@code QueryOptions} instance.
+     */
+    public QueryOptions setPreparedStatementsFile(File preparedStatementsFile) {
+        this.preparedStatementsFile = preparedStatementsFile;
+        return this;
+    }
+
+    /**
+     * The local file in which prepared statements are persisted.
+     *
+     * @return the file, or {@code null} if prepared statements are not persisted.
+     */
+    public File getPreparedStatementsFile() {
+        return preparedStatementsFile;
+    }
+
+    /**
+     * Sets the maximum number of statements that are re-prepared concurrently on a node that
+     * comes up (or is added to the cluster).
+     * <p>
+     * When a node comes up, all the statements prepared so far are re-prepared on it before it
+     * is used for queries. This is done over a single connection, with at most this many
+     * requests in flight. Note that with version 2 or below of the native protocol, this
+     * is further capped at 128 (the number of streams per connection).
+     * <p>
+     * This also limits how many {@link #setPreparedStatementsFile persisted statements} are
+     * prepared concurrently when a session warms up.
+     *
+     * @param maxConcurrentReprepares the maximum number of concurrent re-preparations.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code maxConcurrentReprepares < 1}.
+     */
+    public QueryOptions setMaxConcurrentReprepares(int maxConcurrentReprepares) {
+        if (maxConcurrentReprepares < 1)
+            throw new IllegalArgumentException("Invalid maxConcurrentReprepares, should be >= 1, got " + maxConcurrentReprepares);
+        this.maxConcurrentReprepares = maxConcurrentReprepares;
+        return this;
+    }
+
+    /**
+     * The maximum number of statements that are re-prepared concurrently on a node that comes up.
+     *
+     * @return the maximum number of concurrent re-preparations.
+     */
+    public int getMaxConcurrentReprepares() {
+        return maxConcurrentReprepares;
+    }
+
+    /**
+     * Sets the time budget for re-preparing statements on a node that comes up (or is added to
+     * the cluster).
+     * <p>
+     * The node is not used for queries until its statements are re-prepared; once this budget is
+     * exhausted, the remaining statements are skipped and the node is used anyway (statements that
+     * were not re-prepared will be prepared on the fly the first time they are executed on it).
+     *
+     * @param reprepareTimeoutMillis the time budget in milliseconds.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code reprepareTimeoutMillis < 1}.
+     */
+    public QueryOptions setReprepareTimeoutMillis(int reprepareTimeoutMillis) {
+        if (reprepareTimeoutMillis < 1)
+            throw new IllegalArgumentException("Invalid reprepareTimeoutMillis, should be >= 1, got " + reprepareTimeoutMillis);
+        this.reprepareTimeoutMillis = reprepareTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * The time budget for re-preparing statements on a node that comes up.
+     *
+     * @return the time budget in milliseconds.
+     */
+    public int getReprepareTimeoutMillis() {
+        return reprepareTimeoutMillis;
+    }
+
+    /**
+     * Sets the window during which schema refresh requests are coalesced.
+     * <p>
+     * Schema change notifications from Cassandra are not processed right away: each one restarts
+     * this window, and when it ends (or when {@link #setMaxPendingRefreshSchemaRequests the maximum
+     * number of pending requests} is reached), all the pending requests are merged and processed at
+     * once. Requests for the same keyspace are merged into a single refresh of that keyspace. This
+     * avoids refreshing the schema many times during a migration that creates many tables.
+     * <p>
+     * Note that this doesn't apply to schema changes made through this driver: the future of a
+     * schema-altering query completes once the metadata has been refreshed.
+     *
+     * @param refreshSchemaIntervalMillis the window in milliseconds, or 0 to process requests right away.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code refreshSchemaIntervalMillis < 0}.
+     */
+    public QueryOptions setRefreshSchemaIntervalMillis(int refreshSchemaIntervalMillis) {
+        if (refreshSchemaIntervalMillis < 0)
+            throw new IllegalArgumentException("Invalid refreshSchemaIntervalMillis, should be >= 0, got " + refreshSchemaIntervalMillis);
+        this.refreshSchemaIntervalMillis = refreshSchemaIntervalMillis;
+        return this;
+    }
+
+    /**
+     * The window during which schema refresh requests are coalesced.
+     *
+     * @return the window in milliseconds.
+     */
+    public int getRefreshSchemaIntervalMillis() {
+        return refreshSchemaIntervalMillis;
+    }
+
+    /**
+     * Sets the maximum number of schema refresh requests that can be pending: once it is reached,
+     * the pending requests are processed without waiting for the end of the
+     * {@link #setRefreshSchemaIntervalMillis window}.
+     *
+     * @param maxPendingRefreshSchemaRequests the maximum number of pending requests.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code maxPendingRefreshSchemaRequests < 1}.
+     */
+    public QueryOptions setMaxPendingRefreshSchemaRequests(int maxPendingRefreshSchemaRequests) {
+        if (maxPendingRefreshSchemaRequests < 1)
+            throw new IllegalArgumentException("Invalid maxPendingRefreshSchemaRequests, should be >= 1, got " + maxPendingRefreshSchemaRequests);
+        this.maxPendingRefreshSchemaRequests = maxPendingRefreshSchemaRequests;
+        return this;
+    }
+
+    /**
+     * The maximum number of schema refresh requests that can be pending.
+     *
+     * @return the maximum number of pending requests.
+     */
+    public int getMaxPendingRefreshSchemaRequests() {
+        return maxPendingRefreshSchemaRequests;
+    }
+
+    /**
+     * Sets the window during which node list and token map refresh requests are coalesced.
+     * <p>
+     * This works like {@link #setRefreshSchemaIntervalMillis}, for the refreshes triggered by nodes
+     * being added, removed or moved, and by keyspace changes (which may change the replication
+     * of the token map): a burst of such events results in a single refresh.
+     *
+     * @param refreshNodeListIntervalMillis the window in milliseconds, or 0 to process requests right away.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code refreshNodeListIntervalMillis < 0}.
+     */
+    public QueryOptions setRefreshNodeListIntervalMillis(int refreshNodeListIntervalMillis) {
+        if (refreshNodeListIntervalMillis < 0)
+            throw new IllegalArgumentException("Invalid refreshNodeListIntervalMillis, should be >= 0, got " + refreshNodeListIntervalMillis);
+        this.refreshNodeListIntervalMillis = refreshNodeListIntervalMillis;
+        return this;
+    }
+
+    /**
+     * The window during which node list and token map refresh requests are coalesced.
+     *
+     * @return the window in milliseconds.
+     */
+    public int getRefreshNodeListIntervalMillis() {
+        return refreshNodeListIntervalMillis;
+    }
+
+    /**
+     * Sets the maximum number of node list and token map refresh requests that can be pending:
+     * once it is reached, a refresh is done without waiting for the end of the
+     * {@link #setRefreshNodeListIntervalMillis window}.
+     *
+     * @param maxPendingRefreshNodeListRequests the maximum number of pending requests.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @throws IllegalArgumentException if {@code maxPendingRefreshNodeListRequests < 1}.
+     */
+    public QueryOptions setMaxPendingRefreshNodeListRequests(int maxPendingRefreshNodeListRequests) {
+        if (maxPendingRefreshNodeListRequests < 1)
+            throw new IllegalArgumentException("Invalid maxPendingRefreshNodeListRequests, should be >= 1, got " + maxPendingRefreshNodeListRequests);
+        this.maxPendingRefreshNodeListRequests = maxPendingRefreshNodeListRequests;
+        return this;
+    }
+
+    /**
+     * The maximum number of node list and token map refresh requests that can be pending.
+     *
+     * @return the maximum number of pending requests.
+     */
+    public int getMaxPendingRefreshNodeListRequests() {
+        return maxPendingRefreshNodeListRequests;
+    }
+
+    /**
+     * Sets how the metadata of tables is loaded.
+     * <p>
+     * By default, the metadata of every table is loaded when the driver starts and kept up to date
+     * afterwards. With a large number of tables, this can noticeably slow down {@link Cluster#init}
+     * and use a lot of memory: {@code LAZY} only loads the metadata of a table the first time it is
+     * requested, and {@code NONE} never loads it. Note that:
+     * <ul>
+     *   <li>the metadata of keyspaces, including their replication settings, is always loaded, so
+     *   the {@link Metadata#getReplicas token map} is not affected;</li>
+     *   <li>prepared statements use the metadata of their table to find their routing key: in
+     *   {@code LAZY} mode it is loaded when preparing, but in {@code NONE} mode statements must
+     *   specify their routing key for token-aware routing to apply.</li>
+     * </ul>
+     * This setting is taken into account when the schema is next refreshed, so it should be set
+     * before the cluster is initialized.
+     *
+     * @param tableMetadataLoading the loading mode.
+     * @return this {@code QueryOptions} instance.
+     *
+     * @see #setMetadataKeyspaces
+     */
+    public QueryOptions setTableMetadataLoading(TableMetadataLoading tableMetadataLoading) {
+        if (tableMetadataLoading == null)
+            throw new NullPointerException("tableMetadataLoading cannot be null");
+        this.tableMetadataLoading = tableMetadataLoading;
+        return this;
+    }
+
+    /**
+     * How the metadata of tables is loaded.
+     *
+     * @return the loading mode.
+     */
+    public TableMetadataLoading getTableMetadataLoading() {
+        return tableMetadataLoading;
+    }
+
+    /**
+     * Restricts the loading of table metadata to the given keyspaces.
+     * <p>
+     * The tables of other keyspaces are never loaded (but the keyspaces themselves still are, see
+     * {@link #setTableMetadataLoading}). By default, or if no keyspace is given, the tables of every
+     * keyspace are loaded.
+     *
+     * @param keyspaces the keyspaces whose table metadata should be loaded. Names are handled as in
+     * {@link Metadata#getKeyspace}: they are case insensitive unless enclosed in double quotes.
+     * @return this {@code QueryOptions} instance.
+     */
+    public QueryOptions setMetadataKeyspaces(String... keyspaces) {
+        Set<String> names = new LinkedHashSet<String>();
+        for (String keyspace : keyspaces)
+            names.add(Metadata.handleId(keyspace));
+        this.metadataKeyspaces = Collections.unmodifiableSet(names);
+        return this;
+    }
+
+    /**
+     * The keyspaces whose table metadata is loaded.
+     *
+     * @return the keyspaces, or an empty set if the tables of every keyspace are loaded.
+     */
+    public Set<String> getMetadataKeyspaces() {
+        return metadataKeyspaces;
+    }
+
+    boolean includesMetadataOf(String keyspace) {
+        Set<String> keyspaces = metadataKeyspaces;
+        return keyspaces.isEmpty() || keyspaces.contains(keyspace);
+    }
 }
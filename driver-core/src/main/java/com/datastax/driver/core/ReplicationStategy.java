@@ -84,6 +84,16 @@ abstract class ReplicationStrategy {
             }
             return replicaMap;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SimpleStrategy && ((SimpleStrategy)o).replicationFactor == replicationFactor;
+        }
+
+        @Override
+        public int hashCode() {
+            return replicationFactor;
+        }
     }
 
     static class NetworkTopologyStrategy extends ReplicationStrategy {
@@ -171,5 +181,16 @@ abstract class ReplicationStrategy {
             }
             return result;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NetworkTopologyStrategy
+                && ((NetworkTopologyStrategy)o).replicationFactors.equals(replicationFactors);
+        }
+
+        @Override
+        public int hashCode() {
+            return replicationFactors.hashCode();
+        }
     }
 }
@@ -23,11 +23,17 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.codahale.metrics.Timer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,34 +49,35 @@ import com.datastax.driver.core.policies.RetryPolicy.RetryDecision.Type;
 /**
  * Handles a request to cassandra, dealing with host failover and retries on
  * unavailable/timeout.
+ * <p>
+ * A request is processed by one or more {@link SpeculativeExecution}s: the
+ * initial one, plus the ones started by the {@link SpeculativeExecutionPolicy}
+ * if the statement is idempotent. Executions share the query plan, and the
+ * first one to complete sets the result and cancels the others.
  */
-class RequestHandler implements Connection.ResponseCallback {
+class RequestHandler {
     private static final Logger logger = LoggerFactory.getLogger(RequestHandler.class);
 
     private final SessionManager manager;
     private final Callback callback;
 
-    private final Iterator<Host> queryPlan;
+    private final QueryPlan queryPlan;
     private final Statement statement;
-    private volatile Host current;
-    private volatile List<Host> triedHosts;
-    private volatile HostConnectionPool currentPool;
-    private final AtomicReference<QueryState> queryStateRef;
+    private final SpeculativeExecutionPolicy.SpeculativeExecutionPlan speculativeExecutionPlan;
 
-    // This represents the number of times a retry has been triggered by the RetryPolicy (this is different from
-    // queryStateRef.get().retryCount, because some retries don't involve the policy, for example after an
-    // OVERLOADED error).
-    // This is incremented by one writer at a time, so volatile is good enough.
-    private volatile int retriesByPolicy;
+    private final Set<SpeculativeExecution> runningExecutions = new CopyOnWriteArraySet<SpeculativeExecution>();
+    private final AtomicInteger executionCount = new AtomicInteger();
+    private final AtomicBoolean isDone = new AtomicBoolean();
+    private volatile Timeout scheduledExecution;
 
-    private volatile ConsistencyLevel retryConsistencyLevel;
-
-    private volatile Map<InetSocketAddress, Throwable> errors;
-
-    private volatile Connection.ResponseHandler connectionHandler;
+    // Both are shared by the executions, guarded by this
+    private List<Host> triedHosts;
+    private Map<InetSocketAddress, Throwable> errors;
 
     private final Timer.Context timerContext;
     private final long startTime;
+    // Whether the phases of this request are timed, see RequestPhase
+    private final boolean tracksPhases;
 
     public RequestHandler(SessionManager manager, Callback callback, Statement statement) {
         this.manager = manager;
@@ -78,9 +85,15 @@ class RequestHandler implements Connection.ResponseCallback {
 
         callback.register(this);
 
-        this.queryPlan = manager.loadBalancingPolicy().newQueryPlan(manager.poolsState.keyspace, statement);
+        this.tracksPhases = manager.cluster.manager.tracksRequestPhases();
+        long queryPlanStart = tracksPhases ? System.nanoTime() : 0;
+        this.queryPlan = new QueryPlan(manager.loadBalancingPolicy().newQueryPlan(manager.poolsState.keyspace, statement));
+        if (tracksPhases)
+            reportRequestPhase(null, RequestPhase.QUERY_PLAN, System.nanoTime() - queryPlanStart);
         this.statement = statement;
-        this.queryStateRef = new AtomicReference<QueryState>(QueryState.INITIAL);
+        this.speculativeExecutionPlan = isIdempotent(statement)
+                                      ? manager.cluster.manager.speculativeExecutionPolicy().newPlan(manager.poolsState.keyspace, statement)
+                                      : null;
 
         this.timerContext = metricsEnabled()
                           ? metrics().getRequestsTimer().time()
@@ -88,6 +101,13 @@ class RequestHandler implements Connection.ResponseCallback {
         this.startTime = System.nanoTime();
     }
 
+    private boolean isIdempotent(Statement statement) {
+        Boolean idempotent = statement.isIdempotent();
+        return idempotent == null
+             ? manager.configuration().getQueryOptions().getDefaultIdempotence()
+             : idempotent;
+    }
+
     private boolean metricsEnabled() {
         return manager.configuration().getMetricsOptions() != null;
     }
@@ -96,535 +116,778 @@ class RequestHandler implements Connection.ResponseCallback {
         return manager.cluster.manager.metrics;
     }
 
-    public void sendRequest() {
-        try {
-            while (queryPlan.hasNext() && !queryStateRef.get().isCancelled()) {
-                Host host = queryPlan.next();
-                logger.trace("Querying node {}", host);
-                if (query(host))
-                    return;
-            }
-            setFinalException(null, new NoHostAvailableException(errors == null ? Collections.<InetSocketAddress, Throwable>emptyMap() : errors));
-        } catch (Exception e) {
-            // Shouldn't happen really, but if ever the loadbalancing policy returned iterator throws, we don't want to block.
-            setFinalException(null, new DriverInternalError("An unexpected error happened while sending requests", e));
-        }
+    private void reportRequestPhase(Host host, RequestPhase phase, long durationNanos) {
+        manager.cluster.manager.reportRequestPhase(host, phase, durationNanos);
     }
 
-    private boolean query(Host host) {
-        currentPool = manager.pools.get(host);
-        if (currentPool == null || currentPool.isClosed())
-            return false;
-
-        PooledConnection connection = null;
-        try {
-            connection = currentPool.borrowConnection(manager.configuration().getPoolingOptions().getPoolTimeoutMillis(), TimeUnit.MILLISECONDS);
-            if (current != null) {
-                if (triedHosts == null)
-                    triedHosts = new ArrayList<Host>();
-                triedHosts.add(current);
-            }
-            current = host;
-            write(connection, this);
-            return true;
-        } catch (ConnectionException e) {
-            // If we have any problem with the connection, move to the next node.
-            if (metricsEnabled())
-                metrics().getErrorMetrics().getConnectionErrors().inc();
-            if (connection != null)
-                connection.release();
-            logError(host.getSocketAddress(), e);
-            return false;
-        } catch (BusyConnectionException e) {
-            // The pool shouldn't have give us a busy connection unless we've maxed up the pool, so move on to the next host.
-            connection.release();
-            logError(host.getSocketAddress(), e);
-            return false;
-        } catch (TimeoutException e) {
-            // We timeout, log it but move to the next node.
-            logError(host.getSocketAddress(), new DriverException("Timeout while trying to acquire available connection (you may want to increase the driver number of per-host connections)"));
-            return false;
-        } catch (RuntimeException e) {
-            if (connection != null)
-                connection.release();
-            logger.error("Unexpected error while querying " + host.getAddress(), e);
-            logError(host.getSocketAddress(), e);
-            return false;
-        }
+    private void reportLatency(Host host, long latencyNanos) {
+        manager.cluster.manager.reportLatency(host, latencyNanos);
+        if (metricsEnabled())
+            metrics().recordHostLatency(host, latencyNanos);
     }
 
-    private void write(Connection connection, Connection.ResponseCallback responseCallback) throws ConnectionException, BusyConnectionException {
-        // Make sure cancel() does not see a stale connectionHandler if it sees the new query state
-        // before connection.write has completed
-        connectionHandler = null;
-
-        // Ensure query state is "in progress" (can be already if connection.write failed on a previous node and we're retrying)
-        while (true) {
-            QueryState previous = queryStateRef.get();
-            if (previous.isCancelled()) {
-                if (connection instanceof PooledConnection)
-                    ((PooledConnection)connection).release();
-                return;
-            }
-            if (previous.inProgress || queryStateRef.compareAndSet(previous, previous.startNext()))
-                break;
-        }
-
-        connectionHandler = connection.write(responseCallback, false);
-        // Only start the timeout when we're sure connectionHandler is set. This avoids an edge case where onTimeout() was triggered
-        // *before* the call to connection.write had returned.
-        connectionHandler.startTimeout();
+    public void sendRequest() {
+        startNewExecution();
+    }
 
-        // Note that we could have already received the response here (so onSet() / onException() would have been called). This is
-        // why we only test for CANCELLED_WHILE_IN_PROGRESS below.
+    private void startNewExecution() {
+        if (isDone.get())
+            return;
 
-        // If cancel() was called after we set the state to "in progress", but before connection.write had completed, it might have
-        // missed the new value of connectionHandler. So make sure that cancelHandler() gets called here (we might call it twice,
-        // but it knows how to deal with it).
-        if (queryStateRef.get() == QueryState.CANCELLED_WHILE_IN_PROGRESS)
-            connectionHandler.cancelHandler();
-    }
+        int position = executionCount.getAndIncrement();
+        if (position > 0 && metricsEnabled())
+            metrics().getErrorMetrics().getSpeculativeExecutions().inc();
 
-    private void logError(InetSocketAddress address, Throwable exception) {
-        logger.debug("Error querying {}, trying next host (error is: {})", address, exception.toString());
-        if (errors == null)
-            errors = new HashMap<InetSocketAddress, Throwable>();
-        errors.put(address, exception);
+        SpeculativeExecution execution = new SpeculativeExecution(position);
+        runningExecutions.add(execution);
+        execution.sendRequest();
     }
 
-    private void retry(final boolean retryCurrent, ConsistencyLevel newConsistencyLevel) {
-        final Host h = current;
-        this.retryConsistencyLevel = newConsistencyLevel;
+    private void scheduleExecution(long delayMillis) {
+        if (delayMillis <= 0 || isDone.get())
+            return;
 
-        // We should not retry on the current thread as this will be an IO thread.
-        manager.executor().execute(new Runnable() {
+        logger.trace("Scheduling speculative execution in {} ms", delayMillis);
+        scheduledExecution = manager.connectionFactory().timer.newTimeout(new TimerTask() {
             @Override
-            public void run() {
-                if (queryStateRef.get().isCancelled())
+            public void run(Timeout timeout) {
+                scheduledExecution = null;
+                if (isDone.get())
                     return;
-                try {
-                    if (retryCurrent) {
-                        if (query(h))
-                            return;
+                // Don't block the timer thread, borrowing a connection might wait
+                manager.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        startNewExecution();
                     }
-                    sendRequest();
-                } catch (Exception e) {
-                    setFinalException(null, new DriverInternalError("Unexpected exception while retrying query", e));
-                }
+                });
             }
-        });
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // This is a soft limit: concurrent requests may all pass the check, which is fine since the limit is an estimate anyway
+    private boolean isOverLimit(Host host, HostConnectionPool pool) {
+        AdaptiveConcurrencyLimiter limiter = manager.cluster.manager.concurrencyLimiter;
+        return limiter != null && limiter.isOverLimit(host, pool.inFlightQueriesCount());
+    }
+
+    private void cancelPendingExecutions(SpeculativeExecution ignore) {
+        for (SpeculativeExecution execution : runningExecutions)
+            if (execution != ignore)
+                execution.cancel();
+
+        Timeout timeout = scheduledExecution;
+        if (timeout != null)
+            timeout.cancel();
     }
 
     public void cancel() {
-        // Atomically set a special QueryState, that will cause any further operation to abort.
-        // We want to remember whether a request was in progress when we did this, so there are two cancel states.
-        while (true) {
-            QueryState previous = queryStateRef.get();
-            if (previous.isCancelled()) {
-                return;
-            } else if (previous.inProgress && queryStateRef.compareAndSet(previous, QueryState.CANCELLED_WHILE_IN_PROGRESS)) {
-                // The connectionHandler should be non-null, but we might miss the update if we're racing with write().
-                // If it's still null, this will be handled by re-checking queryStateRef at the end of write().
-                if (connectionHandler != null)
-                    connectionHandler.cancelHandler();
-                return;
-            } else if (!previous.inProgress && queryStateRef.compareAndSet(previous, QueryState.CANCELLED_WHILE_COMPLETE)) {
-                return;
-            }
-        }
+        if (!isDone.compareAndSet(false, true))
+            return;
+        cancelPendingExecutions(null);
     }
 
-    @Override
-    public Message.Request request() {
+    private void reportNoMoreHosts(SpeculativeExecution execution) {
+        runningExecutions.remove(execution);
+        // Other executions might still get a response, only fail once they've given up as well
+        if (runningExecutions.isEmpty())
+            setFinalException(execution, null, new NoHostAvailableException(errorsSnapshot()));
+    }
 
-        Message.Request request = callback.request();
-        if (retryConsistencyLevel != null && retryConsistencyLevel != consistencyOf(request))
-            request = manager.makeRequestMessage(statement, retryConsistencyLevel, serialConsistencyOf(request), pagingStateOf(request), defaultTimestampOf(request));
-        return request;
+    private synchronized void logError(InetSocketAddress address, Throwable exception) {
+        logger.debug("Error querying {}, trying next host (error is: {})", address, exception.toString());
+        if (errors == null)
+            errors = new HashMap<InetSocketAddress, Throwable>();
+        errors.put(address, exception);
     }
 
-    private ConsistencyLevel consistencyOf(Message.Request request) {
-        switch (request.type) {
-            case QUERY:   return ((Requests.Query)request).options.consistency;
-            case EXECUTE: return ((Requests.Execute)request).options.consistency;
-            case BATCH:   return ((Requests.Batch)request).options.consistency;
-            default:      return null;
-        }
+    private synchronized Map<InetSocketAddress, Throwable> errorsSnapshot() {
+        return errors == null
+             ? Collections.<InetSocketAddress, Throwable>emptyMap()
+             : new HashMap<InetSocketAddress, Throwable>(errors);
     }
 
-    private ConsistencyLevel serialConsistencyOf(Message.Request request) {
-        switch (request.type) {
-            case QUERY:   return ((Requests.Query)request).options.serialConsistency;
-            case EXECUTE: return ((Requests.Execute)request).options.serialConsistency;
-            case BATCH:   return ((Requests.Batch)request).options.serialConsistency;
-            default:      return null;
-        }
+    private synchronized void addTriedHost(Host host) {
+        if (triedHosts == null)
+            triedHosts = new ArrayList<Host>();
+        triedHosts.add(host);
     }
 
-    private long defaultTimestampOf(Message.Request request) {
-        switch (request.type) {
-            case QUERY:   return ((Requests.Query)request).options.defaultTimestamp;
-            case EXECUTE: return ((Requests.Execute)request).options.defaultTimestamp;
-            case BATCH:   return ((Requests.Batch)request).options.defaultTimestamp;
-            default:      return 0;
-        }
+    private synchronized ExecutionInfo executionInfo(Host current) {
+        if (triedHosts == null)
+            return current.defaultExecutionInfo;
+        List<Host> hosts = new ArrayList<Host>(triedHosts);
+        hosts.add(current);
+        return new ExecutionInfo(hosts);
     }
 
-    private ByteBuffer pagingStateOf(Message.Request request) {
-        switch (request.type) {
-            case QUERY:   return ((Requests.Query)request).options.pagingState;
-            case EXECUTE: return ((Requests.Execute)request).options.pagingState;
-            default:      return null;
+    private void setFinalResult(SpeculativeExecution execution, Connection connection, Message.Response response) {
+        if (!isDone.compareAndSet(false, true)) {
+            logger.trace("Got beaten to setting the result by another execution");
+            return;
         }
-    }
+        cancelPendingExecutions(execution);
 
-    private void setFinalResult(Connection connection, Message.Response response) {
         try {
             if (timerContext != null)
-                timerContext.stop();
+                metrics().recordStatementLatency(statement, timerContext.stop());
+            if (execution.position > 0 && metricsEnabled())
+                metrics().getErrorMetrics().getSpeculativeExecutionsWon().inc();
 
-            ExecutionInfo info = current.defaultExecutionInfo;
-            if (triedHosts != null) {
-                triedHosts.add(current);
-                info = new ExecutionInfo(triedHosts);
-            }
-            if (retryConsistencyLevel != null)
-                info = info.withAchievedConsistency(retryConsistencyLevel);
+            ExecutionInfo info = executionInfo(execution.current);
+            if (execution.retryConsistencyLevel != null)
+                info = info.withAchievedConsistency(execution.retryConsistencyLevel);
             callback.onSet(connection, response, info, statement, System.nanoTime() - startTime);
+            if (tracksPhases && response.dispatchedAt != 0)
+                reportRequestPhase(execution.current, RequestPhase.COMPLETION, System.nanoTime() - response.dispatchedAt);
         } catch (Exception e) {
-            callback.onException(connection, new DriverInternalError("Unexpected exception while setting final result from " + response, e), System.nanoTime() - startTime, retryCount());
+            callback.onException(connection, new DriverInternalError("Unexpected exception while setting final result from " + response, e), System.nanoTime() - startTime, execution.retryCount());
         }
     }
 
-    private void setFinalException(Connection connection, Exception exception) {
+    private void setFinalException(SpeculativeExecution execution, Connection connection, Exception exception) {
+        if (!isDone.compareAndSet(false, true)) {
+            logger.trace("Got beaten to setting the result by another execution");
+            return;
+        }
+        cancelPendingExecutions(execution);
+
         try {
             if (timerContext != null)
-                timerContext.stop();
+                metrics().recordStatementLatency(statement, timerContext.stop());
         } finally {
-            callback.onException(connection, exception, System.nanoTime() - startTime, retryCount());
+            callback.onException(connection, exception, System.nanoTime() - startTime, execution.retryCount());
         }
     }
 
-    @Override
-    public void onSet(Connection connection, Message.Response response, long latency, int retryCount) {
-        QueryState queryState = queryStateRef.get();
-        if (!queryState.isInProgressAt(retryCount) ||
-            !queryStateRef.compareAndSet(queryState, queryState.complete())) {
-            logger.debug("onSet triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
-                         retryCount, queryState, queryStateRef.get());
-            return;
+    /**
+     * An execution of the request, on the successive hosts of the query plan. Retries
+     * decided by the {@link RetryPolicy} happen within an execution.
+     */
+    class SpeculativeExecution implements Connection.ResponseCallback {
+        final int position;
+        private final AtomicReference<QueryState> queryStateRef;
+        private volatile Host current;
+        private volatile HostConnectionPool currentPool;
+        private volatile boolean nextExecutionScheduled;
+
+        // This represents the number of times a retry has been triggered by the RetryPolicy (this is different from
+        // queryStateRef.get().retryCount, because some retries don't involve the policy, for example after an
+        // OVERLOADED error).
+        // This is incremented by one writer at a time, so volatile is good enough.
+        private volatile int retriesByPolicy;
+
+        private volatile ConsistencyLevel retryConsistencyLevel;
+
+        private volatile Connection.ResponseHandler connectionHandler;
+
+        // Executions may be written at the same time, and writing a request sets its stream id, so each one needs its own
+        private final Message.Request request;
+
+        SpeculativeExecution(int position) {
+            this.position = position;
+            this.queryStateRef = new AtomicReference<QueryState>(QueryState.INITIAL);
+            this.request = position == 0 ? callback.request() : callback.request().copy();
         }
 
-        Host queriedHost = current;
-        boolean releaseConnection = true;
-        try {
-            switch (response.type) {
-                case RESULT:
-                    setFinalResult(connection, response);
-                    break;
-                case ERROR:
-                    Responses.Error err = (Responses.Error)response;
-                    RetryPolicy.RetryDecision retry = null;
-                    RetryPolicy retryPolicy = statement.getRetryPolicy() == null
-                                            ? manager.configuration().getPolicies().getRetryPolicy()
-                                            : statement.getRetryPolicy();
-                    switch (err.code) {
-                        case READ_TIMEOUT:
-                            assert err.infos instanceof ReadTimeoutException;
-                            if (metricsEnabled())
-                                metrics().getErrorMetrics().getReadTimeouts().inc();
-
-                            ReadTimeoutException rte = (ReadTimeoutException)err.infos;
-                            retry = retryPolicy.onReadTimeout(statement,
-                                                              rte.getConsistencyLevel(),
-                                                              rte.getRequiredAcknowledgements(),
-                                                              rte.getReceivedAcknowledgements(),
-                                                              rte.wasDataRetrieved(),
-                                                              retriesByPolicy);
-
-                            if (metricsEnabled()) {
-                                if (retry.getType() == Type.RETRY)
-                                    metrics().getErrorMetrics().getRetriesOnReadTimeout().inc();
-                                if (retry.getType() == Type.IGNORE)
-                                    metrics().getErrorMetrics().getIgnoresOnReadTimeout().inc();
-                            }
-                            break;
-                        case WRITE_TIMEOUT:
-                            assert err.infos instanceof WriteTimeoutException;
-                            if (metricsEnabled())
-                                metrics().getErrorMetrics().getWriteTimeouts().inc();
-
-                            WriteTimeoutException wte = (WriteTimeoutException)err.infos;
-                            retry = retryPolicy.onWriteTimeout(statement,
-                                                               wte.getConsistencyLevel(),
-                                                               wte.getWriteType(),
-                                                               wte.getRequiredAcknowledgements(),
-                                                               wte.getReceivedAcknowledgements(),
-                                                               retriesByPolicy);
-
-                            if (metricsEnabled()) {
-                                if (retry.getType() == Type.RETRY)
-                                    metrics().getErrorMetrics().getRetriesOnWriteTimeout().inc();
-                                if (retry.getType() == Type.IGNORE)
-                                    metrics().getErrorMetrics().getIgnoresOnWriteTimeout().inc();
-                            }
-                            break;
-                        case UNAVAILABLE:
-                            assert err.infos instanceof UnavailableException;
-                            if (metricsEnabled())
-                                metrics().getErrorMetrics().getUnavailables().inc();
-
-                            UnavailableException ue = (UnavailableException)err.infos;
-                            retry = retryPolicy.onUnavailable(statement,
-                                                              ue.getConsistencyLevel(),
-                                                              ue.getRequiredReplicas(),
-                                                              ue.getAliveReplicas(),
-                                                              retriesByPolicy);
-
-                            if (metricsEnabled()) {
-                                if (retry.getType() == Type.RETRY)
-                                    metrics().getErrorMetrics().getRetriesOnUnavailable().inc();
-                                if (retry.getType() == Type.IGNORE)
-                                    metrics().getErrorMetrics().getIgnoresOnUnavailable().inc();
-                            }
-                            break;
-                        case OVERLOADED:
-                            // Try another node
-                            logger.warn("Host {} is overloaded, trying next host.", connection.address);
-                            logError(connection.address, new DriverException("Host overloaded"));
-                            if (metricsEnabled())
-                                metrics().getErrorMetrics().getOthers().inc();
-                            retry(false, null);
-                            return;
-                        case SERVER_ERROR:
-                            // Defunct connection and try another node
-                            logger.warn("{} replied with server error ({}), trying next host.", connection.address, err.message);
-                            DriverException exception = new DriverException("Host replied with server error: " + err.message);
-                            logError(connection.address, exception);
-                            connection.defunct(exception);
-                            if (metricsEnabled())
-                                metrics().getErrorMetrics().getOthers().inc();
-                            retry(false, null);
-                            return;
-                        case IS_BOOTSTRAPPING:
-                            // Try another node
-                            logger.error("Query sent to {} but it is bootstrapping. This shouldn't happen but trying next host.", connection.address);
-                            logError(connection.address, new DriverException("Host is bootstrapping"));
-                            if (metricsEnabled())
-                                metrics().getErrorMetrics().getOthers().inc();
-                            retry(false, null);
-                            return;
-                        case UNPREPARED:
-                            assert err.infos instanceof MD5Digest;
-                            MD5Digest id = (MD5Digest)err.infos;
-                            PreparedStatement toPrepare = manager.cluster.manager.preparedQueries.get(id);
-                            if (toPrepare == null) {
-                                // This shouldn't happen
-                                String msg = String.format("Tried to execute unknown prepared query %s", id);
-                                logger.error(msg);
-                                setFinalException(connection, new DriverInternalError(msg));
-                                return;
-                            }
-
-                            String currentKeyspace = connection.keyspace();
-                            String prepareKeyspace = toPrepare.getQueryKeyspace();
-                            if (prepareKeyspace != null && (currentKeyspace == null || !currentKeyspace.equals(prepareKeyspace))) {
-                                // This shouldn't happen in normal use, because a user shouldn't try to execute
-                                // a prepared statement with the wrong keyspace set.
-                                // Fail fast (we can't change the keyspace to reprepare, because we're using a pooled connection
-                                // that's shared with other requests).
-                                throw new IllegalStateException(String.format("Statement was prepared on keyspace %s, can't execute it on %s (%s)",
-                                    toPrepare.getQueryKeyspace(), connection.keyspace(), toPrepare.getQueryString()));
-                            }
+        void sendRequest() {
+            try {
+                Host host;
+                while (!isDone.get() && !queryStateRef.get().isCancelled() && (host = queryPlan.next()) != null) {
+                    logger.trace("Querying node {} (execution {})", host, position);
+                    if (query(host))
+                        return;
+                }
+                reportNoMoreHosts(this);
+            } catch (Exception e) {
+                // Shouldn't happen really, but if ever the loadbalancing policy returned iterator throws, we don't want to block.
+                setFinalException(null, new DriverInternalError("An unexpected error happened while sending requests", e));
+            }
+        }
 
-                            logger.info("Query {} is not prepared on {}, preparing before retrying executing. "
-                                      + "Seeing this message a few times is fine, but seeing it a lot may be source of performance problems",
-                                        toPrepare.getQueryString(), connection.address);
+        private boolean query(Host host) {
+            currentPool = manager.pools.get(host);
+            if (currentPool == null || currentPool.isClosed())
+                return false;
 
-                            releaseConnection = false; // we're reusing it for the prepare call
-                            write(connection, prepareAndRetry(toPrepare.getQueryString()));
-                            // we're done for now, the prepareAndRetry callback will handle the rest
-                            return;
-                        default:
-                            if (metricsEnabled())
-                                metrics().getErrorMetrics().getOthers().inc();
-                            break;
-                    }
+            if (isOverLimit(host, currentPool)) {
+                logError(host.getSocketAddress(), new DriverException("Host has reached its adaptive concurrency limit"));
+                return false;
+            }
 
-                    if (retry == null)
-                        setFinalResult(connection, response);
-                    else {
-                        switch (retry.getType()) {
-                            case RETRY:
-                                ++retriesByPolicy;
-                                if (logger.isDebugEnabled())
-                                    logger.debug("Doing retry {} for query {} at consistency {}", retriesByPolicy, statement, retry.getRetryConsistencyLevel());
-                                if (metricsEnabled())
-                                    metrics().getErrorMetrics().getRetries().inc();
-                                retry(true, retry.getRetryConsistencyLevel());
-                                break;
-                            case RETHROW:
-                                setFinalResult(connection, response);
-                                break;
-                            case IGNORE:
-                                if (metricsEnabled())
-                                    metrics().getErrorMetrics().getIgnores().inc();
-                                setFinalResult(connection, new Responses.Result.Void());
-                                break;
-                        }
+            PoolingOptions poolingOptions = manager.configuration().getPoolingOptions();
+            int poolTimeoutMillis = poolingOptions.getPoolTimeoutMillis();
+            int maxQueueSize = poolingOptions.getMaxQueueSize();
+
+            long borrowStart = tracksPhases ? System.nanoTime() : 0;
+            PooledConnection connection;
+            try {
+                if (maxQueueSize == 0 || poolTimeoutMillis == 0) {
+                    connection = currentPool.borrowConnection(poolTimeoutMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    try {
+                        connection = currentPool.borrowConnection(0, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        // The pool is saturated, park the request rather than blocking the caller
+                        if (currentPool.enqueue(new PendingQuery(host, borrowStart), maxQueueSize, poolTimeoutMillis, TimeUnit.MILLISECONDS))
+                            return true;
+                        logError(host.getSocketAddress(), new DriverException("Too many requests waiting for an available connection (you may want to increase the driver max queue size)"));
+                        return false;
                     }
-                    break;
-                default:
-                    setFinalResult(connection, response);
-                    break;
+                }
+            } catch (ConnectionException e) {
+                // If we have any problem with the connection, move to the next node.
+                if (metricsEnabled())
+                    metrics().getErrorMetrics().getConnectionErrors().inc();
+                logError(host.getSocketAddress(), e);
+                return false;
+            } catch (TimeoutException e) {
+                // We timeout, log it but move to the next node.
+                logError(host.getSocketAddress(), new DriverException("Timeout while trying to acquire available connection (you may want to increase the driver number of per-host connections)"));
+                return false;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error while querying " + host.getAddress(), e);
+                logError(host.getSocketAddress(), e);
+                return false;
             }
-        } catch (Exception e) {
-            setFinalException(connection, e);
-        } finally {
-            if (releaseConnection && connection instanceof PooledConnection)
-                ((PooledConnection)connection).release();
+            if (tracksPhases)
+                reportRequestPhase(host, RequestPhase.POOL_BORROW, System.nanoTime() - borrowStart);
+            return query(host, connection);
+        }
 
-            if (queriedHost != null)
-                manager.cluster.manager.reportLatency(queriedHost, latency);
+        private boolean query(Host host, PooledConnection connection) {
+            try {
+                if (current != null)
+                    addTriedHost(current);
+                current = host;
+                write(connection, this);
+
+                // The request is on its way, give it some time before starting another execution
+                if (speculativeExecutionPlan != null && !nextExecutionScheduled) {
+                    nextExecutionScheduled = true;
+                    scheduleExecution(speculativeExecutionPlan.nextExecution(host));
+                }
+                return true;
+            } catch (ConnectionException e) {
+                // If we have any problem with the connection, move to the next node.
+                if (metricsEnabled())
+                    metrics().getErrorMetrics().getConnectionErrors().inc();
+                connection.release();
+                logError(host.getSocketAddress(), e);
+                return false;
+            } catch (BusyConnectionException e) {
+                // The pool shouldn't have give us a busy connection unless we've maxed up the pool, so move on to the next host.
+                connection.release();
+                logError(host.getSocketAddress(), e);
+                return false;
+            } catch (RuntimeException e) {
+                connection.release();
+                logger.error("Unexpected error while querying " + host.getAddress(), e);
+                logError(host.getSocketAddress(), e);
+                return false;
+            }
         }
-    }
 
-    private Connection.ResponseCallback prepareAndRetry(final String toPrepare) {
-        return new Connection.ResponseCallback() {
+        // A request parked in a saturated pool
+        private class PendingQuery implements HostConnectionPool.PendingBorrow {
+            private final Host host;
+            private final long borrowStart;
 
-            @Override
-            public Message.Request request() {
-                return new Requests.Prepare(toPrepare);
+            PendingQuery(Host host, long borrowStart) {
+                this.host = host;
+                this.borrowStart = borrowStart;
             }
 
             @Override
-            public int retryCount() {
-                return RequestHandler.this.retryCount();
+            public void onConnection(PooledConnection connection) {
+                if (tracksPhases)
+                    reportRequestPhase(host, RequestPhase.POOL_BORROW, System.nanoTime() - borrowStart);
+                if (!query(host, connection))
+                    queryNextHost();
             }
 
             @Override
-            public void onSet(Connection connection, Message.Response response, long latency, int retryCount) {
-                QueryState queryState = queryStateRef.get();
-                if (!queryState.isInProgressAt(retryCount) ||
-                    !queryStateRef.compareAndSet(queryState, queryState.complete())) {
-                    logger.debug("onSet triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
-                                 retryCount, queryState, queryStateRef.get());
+            public void onFailure(Exception exception) {
+                if (exception instanceof ConnectionException && metricsEnabled())
+                    metrics().getErrorMetrics().getConnectionErrors().inc();
+                logError(host.getSocketAddress(), exception);
+                queryNextHost();
+            }
+        }
+
+        private void queryNextHost() {
+            // We might be on an IO thread, and sendRequest can block when queueing is not possible
+            manager.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (queryStateRef.get().isCancelled())
+                        return;
+                    sendRequest();
+                }
+            });
+        }
+
+        private void write(Connection connection, Connection.ResponseCallback responseCallback) throws ConnectionException, BusyConnectionException {
+            // Make sure cancel() does not see a stale connectionHandler if it sees the new query state
+            // before connection.write has completed
+            connectionHandler = null;
+
+            // Ensure query state is "in progress" (can be already if connection.write failed on a previous node and we're retrying)
+            while (true) {
+                QueryState previous = queryStateRef.get();
+                if (previous.isCancelled()) {
+                    if (connection instanceof PooledConnection)
+                        ((PooledConnection)connection).release();
                     return;
                 }
+                if (previous.inProgress || queryStateRef.compareAndSet(previous, previous.startNext()))
+                    break;
+            }
 
-                if (connection instanceof PooledConnection)
-                    ((PooledConnection)connection).release();
+            connectionHandler = connection.write(responseCallback, false, tracksPhases);
+            // Only start the timeout when we're sure connectionHandler is set. This avoids an edge case where onTimeout() was triggered
+            // *before* the call to connection.write had returned.
+            connectionHandler.startTimeout();
+
+            // Note that we could have already received the response here (so onSet() / onException() would have been called). This is
+            // why we only test for CANCELLED_WHILE_IN_PROGRESS below.
+
+            // If cancel() was called after we set the state to "in progress", but before connection.write had completed, it might have
+            // missed the new value of connectionHandler. So make sure that cancelHandler() gets called here (we might call it twice,
+            // but it knows how to deal with it).
+            if (queryStateRef.get() == QueryState.CANCELLED_WHILE_IN_PROGRESS)
+                connectionHandler.cancelHandler();
+        }
 
-                // TODO should we check the response ?
+        private void retry(final boolean retryCurrent, ConsistencyLevel newConsistencyLevel) {
+            final Host h = current;
+            this.retryConsistencyLevel = newConsistencyLevel;
+
+            // We should not retry on the current thread as this will be an IO thread.
+            manager.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (queryStateRef.get().isCancelled())
+                        return;
+                    try {
+                        if (retryCurrent) {
+                            if (query(h))
+                                return;
+                        }
+                        sendRequest();
+                    } catch (Exception e) {
+                        setFinalException(null, new DriverInternalError("Unexpected exception while retrying query", e));
+                    }
+                }
+            });
+        }
+
+        void cancel() {
+            // Atomically set a special QueryState, that will cause any further operation to abort.
+            // We want to remember whether a request was in progress when we did this, so there are two cancel states.
+            // Cancelling the handler releases the stream ID of the request on its connection.
+            while (true) {
+                QueryState previous = queryStateRef.get();
+                if (previous.isCancelled()) {
+                    return;
+                } else if (previous.inProgress && queryStateRef.compareAndSet(previous, QueryState.CANCELLED_WHILE_IN_PROGRESS)) {
+                    // The connectionHandler should be non-null, but we might miss the update if we're racing with write().
+                    // If it's still null, this will be handled by re-checking queryStateRef at the end of write().
+                    if (connectionHandler != null)
+                        connectionHandler.cancelHandler();
+                    return;
+                } else if (!previous.inProgress && queryStateRef.compareAndSet(previous, QueryState.CANCELLED_WHILE_COMPLETE)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public Message.Request request() {
+
+            Message.Request request = this.request;
+            if (retryConsistencyLevel != null && retryConsistencyLevel != consistencyOf(request))
+                request = manager.makeRequestMessage(statement, retryConsistencyLevel, serialConsistencyOf(request), pagingStateOf(request), defaultTimestampOf(request));
+            return request;
+        }
+
+        private void setFinalResult(Connection connection, Message.Response response) {
+            RequestHandler.this.setFinalResult(this, connection, response);
+        }
+
+        private void setFinalException(Connection connection, Exception exception) {
+            RequestHandler.this.setFinalException(this, connection, exception);
+        }
+
+        @Override
+        public void onSet(Connection connection, Message.Response response, long latency, int retryCount) {
+            QueryState queryState = queryStateRef.get();
+            if (!queryState.isInProgressAt(retryCount) ||
+                !queryStateRef.compareAndSet(queryState, queryState.complete())) {
+                logger.debug("onSet triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
+                             retryCount, queryState, queryStateRef.get());
+                return;
+            }
+
+            Host queriedHost = current;
+            boolean releaseConnection = true;
+            try {
                 switch (response.type) {
                     case RESULT:
-                        if (((Responses.Result)response).kind == Responses.Result.Kind.PREPARED) {
-                            logger.debug("Scheduling retry now that query is prepared");
-                            retry(true, null);
-                        } else {
-                            logError(connection.address, new DriverException("Got unexpected response to prepare message: " + response));
-                            retry(false, null);
-                        }
+                        setFinalResult(connection, response);
                         break;
                     case ERROR:
-                        logError(connection.address, new DriverException("Error preparing query, got " + response));
-                        if (metricsEnabled())
-                            metrics().getErrorMetrics().getOthers().inc();
-                        retry(false, null);
+                        Responses.Error err = (Responses.Error)response;
+                        RetryPolicy.RetryDecision retry = null;
+                        RetryPolicy retryPolicy = statement.getRetryPolicy() == null
+                                                ? manager.configuration().getPolicies().getRetryPolicy()
+                                                : statement.getRetryPolicy();
+                        switch (err.code) {
+                            case READ_TIMEOUT:
+                                assert err.infos instanceof ReadTimeoutException;
+                                if (metricsEnabled())
+                                    metrics().getErrorMetrics().getReadTimeouts().inc();
+
+                                ReadTimeoutException rte = (ReadTimeoutException)err.infos;
+                                retry = retryPolicy.onReadTimeout(statement,
+                                                                  rte.getConsistencyLevel(),
+                                                                  rte.getRequiredAcknowledgements(),
+                                                                  rte.getReceivedAcknowledgements(),
+                                                                  rte.wasDataRetrieved(),
+                                                                  retriesByPolicy);
+
+                                if (metricsEnabled()) {
+                                    if (retry.getType() == Type.RETRY)
+                                        metrics().getErrorMetrics().getRetriesOnReadTimeout().inc();
+                                    if (retry.getType() == Type.IGNORE)
+                                        metrics().getErrorMetrics().getIgnoresOnReadTimeout().inc();
+                                }
+                                break;
+                            case WRITE_TIMEOUT:
+                                assert err.infos instanceof WriteTimeoutException;
+                                if (metricsEnabled())
+                                    metrics().getErrorMetrics().getWriteTimeouts().inc();
+
+                                WriteTimeoutException wte = (WriteTimeoutException)err.infos;
+                                retry = retryPolicy.onWriteTimeout(statement,
+                                                                   wte.getConsistencyLevel(),
+                                                                   wte.getWriteType(),
+                                                                   wte.getRequiredAcknowledgements(),
+                                                                   wte.getReceivedAcknowledgements(),
+                                                                   retriesByPolicy);
+
+                                if (metricsEnabled()) {
+                                    if (retry.getType() == Type.RETRY)
+                                        metrics().getErrorMetrics().getRetriesOnWriteTimeout().inc();
+                                    if (retry.getType() == Type.IGNORE)
+                                        metrics().getErrorMetrics().getIgnoresOnWriteTimeout().inc();
+                                }
+                                break;
+                            case UNAVAILABLE:
+                                assert err.infos instanceof UnavailableException;
+                                if (metricsEnabled())
+                                    metrics().getErrorMetrics().getUnavailables().inc();
+
+                                UnavailableException ue = (UnavailableException)err.infos;
+                                retry = retryPolicy.onUnavailable(statement,
+                                                                  ue.getConsistencyLevel(),
+                                                                  ue.getRequiredReplicas(),
+                                                                  ue.getAliveReplicas(),
+                                                                  retriesByPolicy);
+
+                                if (metricsEnabled()) {
+                                    if (retry.getType() == Type.RETRY)
+                                        metrics().getErrorMetrics().getRetriesOnUnavailable().inc();
+                                    if (retry.getType() == Type.IGNORE)
+                                        metrics().getErrorMetrics().getIgnoresOnUnavailable().inc();
+                                }
+                                break;
+                            case OVERLOADED:
+                                // Try another node
+                                logger.warn("Host {} is overloaded, trying next host.", connection.address);
+                                logError(connection.address, new DriverException("Host overloaded"));
+                                if (metricsEnabled())
+                                    metrics().getErrorMetrics().getOthers().inc();
+                                retry(false, null);
+                                return;
+                            case SERVER_ERROR:
+                                // Defunct connection and try another node
+                                logger.warn("{} replied with server error ({}), trying next host.", connection.address, err.message);
+                                DriverException exception = new DriverException("Host replied with server error: " + err.message);
+                                logError(connection.address, exception);
+                                connection.defunct(exception);
+                                if (metricsEnabled())
+                                    metrics().getErrorMetrics().getOthers().inc();
+                                retry(false, null);
+                                return;
+                            case IS_BOOTSTRAPPING:
+                                // Try another node
+                                logger.error("Query sent to {} but it is bootstrapping. This shouldn't happen but trying next host.", connection.address);
+                                logError(connection.address, new DriverException("Host is bootstrapping"));
+                                if (metricsEnabled())
+                                    metrics().getErrorMetrics().getOthers().inc();
+                                retry(false, null);
+                                return;
+                            case UNPREPARED:
+                                assert err.infos instanceof MD5Digest;
+                                MD5Digest id = (MD5Digest)err.infos;
+                                PreparedStatement toPrepare = manager.cluster.manager.preparedQueries.get(id);
+                                if (toPrepare == null) {
+                                    // This shouldn't happen
+                                    String msg = String.format("Tried to execute unknown prepared query %s", id);
+                                    logger.error(msg);
+                                    setFinalException(connection, new DriverInternalError(msg));
+                                    return;
+                                }
+
+                                String currentKeyspace = connection.keyspace();
+                                String prepareKeyspace = toPrepare.getQueryKeyspace();
+                                if (prepareKeyspace != null && (currentKeyspace == null || !currentKeyspace.equals(prepareKeyspace))) {
+                                    // This shouldn't happen in normal use, because a user shouldn't try to execute
+                                    // a prepared statement with the wrong keyspace set.
+                                    // Fail fast (we can't change the keyspace to reprepare, because we're using a pooled connection
+                                    // that's shared with other requests).
+                                    throw new IllegalStateException(String.format("Statement was prepared on keyspace %s, can't execute it on %s (%s)",
+                                        toPrepare.getQueryKeyspace(), connection.keyspace(), toPrepare.getQueryString()));
+                                }
+
+                                logger.info("Query {} is not prepared on {}, preparing before retrying executing. "
+                                          + "Seeing this message a few times is fine, but seeing it a lot may be source of performance problems",
+                                            toPrepare.getQueryString(), connection.address);
+
+                                releaseConnection = false; // we're reusing it for the prepare call
+                                write(connection, prepareAndRetry(toPrepare.getQueryString()));
+                                // we're done for now, the prepareAndRetry callback will handle the rest
+                                return;
+                            default:
+                                if (metricsEnabled())
+                                    metrics().getErrorMetrics().getOthers().inc();
+                                break;
+                        }
+
+                        if (retry == null)
+                            setFinalResult(connection, response);
+                        else {
+                            switch (retry.getType()) {
+                                case RETRY:
+                                    ++retriesByPolicy;
+                                    if (logger.isDebugEnabled())
+                                        logger.debug("Doing retry {} for query {} at consistency {}", retriesByPolicy, statement, retry.getRetryConsistencyLevel());
+                                    if (metricsEnabled())
+                                        metrics().getErrorMetrics().getRetries().inc();
+                                    retry(true, retry.getRetryConsistencyLevel());
+                                    break;
+                                case RETHROW:
+                                    setFinalResult(connection, response);
+                                    break;
+                                case IGNORE:
+                                    if (metricsEnabled())
+                                        metrics().getErrorMetrics().getIgnores().inc();
+                                    setFinalResult(connection, new Responses.Result.Void());
+                                    break;
+                            }
+                        }
                         break;
                     default:
-                        // Something's wrong, so we return but we let setFinalResult propagate the exception
-                        RequestHandler.this.setFinalResult(connection, response);
+                        setFinalResult(connection, response);
                         break;
                 }
-            }
+            } catch (Exception e) {
+                setFinalException(connection, e);
+            } finally {
+                if (releaseConnection && connection instanceof PooledConnection)
+                    ((PooledConnection)connection).release();
 
-            @Override
-            public void onException(Connection connection, Exception exception, long latency, int retryCount) {
-                RequestHandler.this.onException(connection, exception, latency, retryCount);
+                if (queriedHost != null)
+                    reportLatency(queriedHost, latency);
             }
+        }
 
-            @Override
-            public boolean onTimeout(Connection connection, long latency, int retryCount) {
-                QueryState queryState = queryStateRef.get();
-                if (!queryState.isInProgressAt(retryCount) ||
-                    !queryStateRef.compareAndSet(queryState, queryState.complete())) {
-                    logger.debug("onTimeout triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
-                                 retryCount, queryState, queryStateRef.get());
-                    return false;
+        private Connection.ResponseCallback prepareAndRetry(final String toPrepare) {
+            return new Connection.ResponseCallback() {
+
+                @Override
+                public Message.Request request() {
+                    return new Requests.Prepare(toPrepare);
                 }
-                logError(connection.address, new DriverException("Timeout waiting for response to prepare message"));
-                retry(false, null);
-                return true;
+
+                @Override
+                public int retryCount() {
+                    return SpeculativeExecution.this.retryCount();
+                }
+
+                @Override
+                public void onSet(Connection connection, Message.Response response, long latency, int retryCount) {
+                    QueryState queryState = queryStateRef.get();
+                    if (!queryState.isInProgressAt(retryCount) ||
+                        !queryStateRef.compareAndSet(queryState, queryState.complete())) {
+                        logger.debug("onSet triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
+                                     retryCount, queryState, queryStateRef.get());
+                        return;
+                    }
+
+                    if (connection instanceof PooledConnection)
+                        ((PooledConnection)connection).release();
+
+                    // TODO should we check the response ?
+                    switch (response.type) {
+                        case RESULT:
+                            if (((Responses.Result)response).kind == Responses.Result.Kind.PREPARED) {
+                                logger.debug("Scheduling retry now that query is prepared");
+                                retry(true, null);
+                            } else {
+                                logError(connection.address, new DriverException("Got unexpected response to prepare message: " + response));
+                                retry(false, null);
+                            }
+                            break;
+                        case ERROR:
+                            logError(connection.address, new DriverException("Error preparing query, got " + response));
+                            if (metricsEnabled())
+                                metrics().getErrorMetrics().getOthers().inc();
+                            retry(false, null);
+                            break;
+                        default:
+                            // Something's wrong, so we return but we let setFinalResult propagate the exception
+                            SpeculativeExecution.this.setFinalResult(connection, response);
+                            break;
+                    }
+                }
+
+                @Override
+                public void onException(Connection connection, Exception exception, long latency, int retryCount) {
+                    SpeculativeExecution.this.onException(connection, exception, latency, retryCount);
+                }
+
+                @Override
+                public boolean onTimeout(Connection connection, long latency, int retryCount) {
+                    QueryState queryState = queryStateRef.get();
+                    if (!queryState.isInProgressAt(retryCount) ||
+                        !queryStateRef.compareAndSet(queryState, queryState.complete())) {
+                        logger.debug("onTimeout triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
+                                     retryCount, queryState, queryStateRef.get());
+                        return false;
+                    }
+                    logError(connection.address, new DriverException("Timeout waiting for response to prepare message"));
+                    retry(false, null);
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public void onException(Connection connection, Exception exception, long latency, int retryCount) {
+            QueryState queryState = queryStateRef.get();
+            if (!queryState.isInProgressAt(retryCount) ||
+                !queryStateRef.compareAndSet(queryState, queryState.complete())) {
+                logger.debug("onException triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
+                             retryCount, queryState, queryStateRef.get());
+                return;
             }
-        };
-    }
 
-    @Override
-    public void onException(Connection connection, Exception exception, long latency, int retryCount) {
-        QueryState queryState = queryStateRef.get();
-        if (!queryState.isInProgressAt(retryCount) ||
-            !queryStateRef.compareAndSet(queryState, queryState.complete())) {
-            logger.debug("onException triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
-                         retryCount, queryState, queryStateRef.get());
-            return;
+            Host queriedHost = current;
+            try {
+                if (connection instanceof PooledConnection)
+                    ((PooledConnection)connection).release();
+
+                if (exception instanceof ConnectionException) {
+                    if (metricsEnabled())
+                        metrics().getErrorMetrics().getConnectionErrors().inc();
+                    ConnectionException ce = (ConnectionException)exception;
+                    logError(ce.address, ce);
+                    retry(false, null);
+                    return;
+                }
+                setFinalException(connection, exception);
+            } catch (Exception e) {
+                // This shouldn't happen, but if it does, we want to signal the callback, not let him hang indefinitively
+                setFinalException(null, new DriverInternalError("An unexpected error happened while handling exception " + exception, e));
+            } finally {
+                if (queriedHost != null)
+                    reportLatency(queriedHost, latency);
+            }
         }
 
-        Host queriedHost = current;
-        try {
-            if (connection instanceof PooledConnection)
-                ((PooledConnection)connection).release();
+        @Override
+        public boolean onTimeout(Connection connection, long latency, int retryCount) {
+            QueryState queryState = queryStateRef.get();
+            if (!queryState.isInProgressAt(retryCount) ||
+                !queryStateRef.compareAndSet(queryState, queryState.complete())) {
+                logger.debug("onTimeout triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
+                             retryCount, queryState, queryStateRef.get());
+                return false;
+            }
 
-            if (exception instanceof ConnectionException) {
-                if (metricsEnabled())
-                    metrics().getErrorMetrics().getConnectionErrors().inc();
-                ConnectionException ce = (ConnectionException)exception;
-                logError(ce.address, ce);
+            Host queriedHost = current;
+            try {
+                // If a query times out, we consider that the host is unstable, so we defunct
+                // the connection to mark it down.
+                DriverException timeoutException = new DriverException("Timed out waiting for server response");
+                connection.defunct(timeoutException);
+
+                logError(connection.address, timeoutException);
                 retry(false, null);
-                return;
+            } catch (Exception e) {
+                // This shouldn't happen, but if it does, we want to signal the callback, not let him hang indefinitively
+                setFinalException(null, new DriverInternalError("An unexpected error happened while handling timeout", e));
+            } finally {
+                if (queriedHost != null)
+                    reportLatency(queriedHost, latency);
             }
-            setFinalException(connection, exception);
-        } catch (Exception e) {
-            // This shouldn't happen, but if it does, we want to signal the callback, not let him hang indefinitively
-            setFinalException(null, new DriverInternalError("An unexpected error happened while handling exception " + exception, e));
-        } finally {
-            if (queriedHost != null)
-                manager.cluster.manager.reportLatency(queriedHost, latency);
+            return true;
+        }
+
+        @Override
+        public int retryCount() {
+            return queryStateRef.get().retryCount;
         }
     }
 
-    @Override
-    public boolean onTimeout(Connection connection, long latency, int retryCount) {
-        QueryState queryState = queryStateRef.get();
-        if (!queryState.isInProgressAt(retryCount) ||
-            !queryStateRef.compareAndSet(queryState, queryState.complete())) {
-            logger.debug("onTimeout triggered but the response was completed by another thread, cancelling (retryCount = {}, queryState = {}, queryStateRef = {})",
-                         retryCount, queryState, queryStateRef.get());
-            return false;
+    // Wraps the load balancing policy's plan, since it is shared by all the executions of a request
+    private static class QueryPlan {
+        private final Iterator<Host> iterator;
+
+        QueryPlan(Iterator<Host> iterator) {
+            this.iterator = iterator;
         }
 
-        Host queriedHost = current;
-        try {
-            // If a query times out, we consider that the host is unstable, so we defunct
-            // the connection to mark it down.
-            DriverException timeoutException = new DriverException("Timed out waiting for server response");
-            connection.defunct(timeoutException);
+        synchronized Host next() {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
 
-            logError(connection.address, timeoutException);
-            retry(false, null);
-        } catch (Exception e) {
-            // This shouldn't happen, but if it does, we want to signal the callback, not let him hang indefinitively
-            setFinalException(null, new DriverInternalError("An unexpected error happened while handling timeout", e));
-        } finally {
-            if (queriedHost != null)
-                manager.cluster.manager.reportLatency(queriedHost, latency);
+    private ConsistencyLevel consistencyOf(Message.Request request) {
+        switch (request.type) {
+            case QUERY:   return ((Requests.Query)request).options.consistency;
+            case EXECUTE: return ((Requests.Execute)request).options.consistency;
+            case BATCH:   return ((Requests.Batch)request).options.consistency;
+            default:      return null;
+        }
+    }
+
+    private ConsistencyLevel serialConsistencyOf(Message.Request request) {
+        switch (request.type) {
+            case QUERY:   return ((Requests.Query)request).options.serialConsistency;
+            case EXECUTE: return ((Requests.Execute)request).options.serialConsistency;
+            case BATCH:   return ((Requests.Batch)request).options.serialConsistency;
+            default:      return null;
+        }
+    }
+
+    private long defaultTimestampOf(Message.Request request) {
+        switch (request.type) {
+            case QUERY:   return ((Requests.Query)request).options.defaultTimestamp;
+            case EXECUTE: return ((Requests.Execute)request).options.defaultTimestamp;
+            case BATCH:   return ((Requests.Batch)request).options.defaultTimestamp;
+            default:      return 0;
         }
-        return true;
     }
 
-    @Override
-    public int retryCount() {
-        return queryStateRef.get().retryCount;
+    private ByteBuffer pagingStateOf(Message.Request request) {
+        switch (request.type) {
+            case QUERY:   return ((Requests.Query)request).options.pagingState;
+            case EXECUTE: return ((Requests.Execute)request).options.pagingState;
+            default:      return null;
+        }
     }
 
     interface Callback extends Connection.ResponseCallback {
@@ -0,0 +1,70 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+/**
+ * The phases of the execution of a request by the driver, as reported to
+ * {@link RequestPhaseListener}s.
+ * <p>
+ * Phases are reported for each attempt to execute the request on a host,
+ * except for {@link #QUERY_PLAN} and {@link #COMPLETION} that are reported
+ * once per request.
+ */
+public enum RequestPhase {
+
+    /**
+     * The computation of the query plan by the load balancing policy. This
+     * is reported without a host.
+     */
+    QUERY_PLAN,
+
+    /**
+     * Borrowing a connection from the pool of the host, including the time
+     * spent waiting for a connection (or a stream id) to be available.
+     */
+    POOL_BORROW,
+
+    /**
+     * Encoding the request message.
+     */
+    ENCODE,
+
+    /**
+     * Writing the request to the socket, from the time the connection is
+     * handed the request (excluding {@link #ENCODE}) to the completion of
+     * the write. This includes the time queued behind other writes.
+     */
+    WRITE,
+
+    /**
+     * From the completion of the write to the arrival of the response on
+     * the I/O thread: the network round trip and the processing time on the
+     * Cassandra host.
+     */
+    SERVER,
+
+    /**
+     * Decoding the response message.
+     */
+    DECODE,
+
+    /**
+     * From the response being decoded to the future returned to the client
+     * being completed, including the handling of the response by the driver
+     * and the listeners that run in the completing thread.
+     */
+    COMPLETION
+}
@@ -0,0 +1,49 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+/**
+ * Interface for objects that are interested in tracking how long each phase
+ * of the driver requests takes.
+ * <p>
+ * An implementation of this interface can be registered against a Cluster
+ * object through the {@link Cluster#register(RequestPhaseListener)} method,
+ * after which {@code onPhase} will be called at the end of each phase of
+ * each request executed by a {@link Session}.
+ * <p>
+ * Phases are only timestamped while at least one listener is registered (or
+ * {@link MetricsOptions#setRequestPhaseTimersEnabled} is set), so that requests
+ * don't pay for this instrumentation otherwise.
+ *
+ * @see LatencyTracker
+ */
+public interface RequestPhaseListener {
+
+    /**
+     * A method that is called at the end of each phase of a request.
+     * <p>
+     * This is called on the driver's internal threads, including the I/O
+     * threads, so implementations must be fast and non-blocking. There is
+     * no guarantee that this method won't be called concurrently by multiple
+     * threads, so implementations should synchronize internally if need be.
+     *
+     * @param host the Cassandra host the phase relates to, or {@code null} for
+     * phases that don't relate to a particular host (see {@link RequestPhase}).
+     * @param phase the phase that ended.
+     * @param durationNanos the duration of the phase in nanoseconds.
+     */
+    public void onPhase(Host host, RequestPhase phase, long durationNanos);
+}
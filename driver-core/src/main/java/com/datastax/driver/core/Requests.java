@@ -134,6 +134,11 @@ class Requests {
             this.options = options;
         }
 
+        @Override
+        protected Message.Request copyInternal() {
+            return new Query(query, options);
+        }
+
         @Override
         public String toString() {
             return "QUERY " + query + '(' + options + ')';
@@ -163,6 +168,11 @@ class Requests {
             this.options = options;
         }
 
+        @Override
+        protected Message.Request copyInternal() {
+            return new Execute(statementId, options);
+        }
+
         @Override
         public String toString() {
             return "EXECUTE " + statementId + " (" + options + ')';
@@ -368,6 +378,11 @@ class Requests {
             this.options = options;
         }
 
+        @Override
+        protected Message.Request copyInternal() {
+            return new Batch(type, queryOrIdList, values, options);
+        }
+
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
@@ -461,6 +476,11 @@ class Requests {
             this.query = query;
         }
 
+        @Override
+        protected Message.Request copyInternal() {
+            return new Prepare(query);
+        }
+
         @Override
         public String toString() {
             return "PREPARE " + query;
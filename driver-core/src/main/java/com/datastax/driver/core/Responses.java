@@ -385,15 +385,8 @@ class Responses {
                     int rowCount = body.readInt();
                     int columnCount = metadata.columnCount;
 
-                    Queue<List<ByteBuffer>> data = new ArrayDeque<List<ByteBuffer>>(rowCount);
-                    for (int i = 0; i < rowCount; i++) {
-                        List<ByteBuffer> row = new ArrayList<ByteBuffer>(columnCount);
-                        for (int j = 0; j < columnCount; j++)
-                            row.add(CBUtil.readValue(body));
-                        data.add(row);
-                    }
-
-                    return new Rows(metadata, data);
+                    // Rows are read on demand by the consumer, see LazyRows
+                    return new Rows(metadata, LazyRows.decode(body, rowCount, columnCount));
                 }
             };
 
@@ -406,6 +399,17 @@ class Responses {
                 this.data = data;
             }
 
+            /**
+             * Returns a copy of this response whose rows can be consumed independently of this one's.
+             * This must be called before any row of this response has been consumed.
+             */
+            Rows copy() {
+                Queue<List<ByteBuffer>> dataCopy = data instanceof LazyRows
+                                                 ? ((LazyRows)data).duplicate()
+                                                 : new ArrayDeque<List<ByteBuffer>>(data);
+                return new Rows(metadata, dataCopy);
+            }
+
             @Override
             public String toString() {
                 StringBuilder sb = new StringBuilder();
@@ -30,7 +30,9 @@ import com.google.common.util.concurrent.ListenableFuture;
  * either globally through {@link QueryOptions#setFetchSize} or per-statement
  * with {@link Statement#setFetchSize}. Though new pages are automatically (and
  * transparently) fetched when needed, it is possible to force the retrieval
- * of the next page early through {@link #fetchMoreResults}. Please note however
+ * of the next page early through {@link #fetchMoreResults}, or to have it
+ * fetched in the background when few rows remain (see
+ * {@link QueryOptions#setPrefetchThreshold}). Please note however
  * that this ResultSet paging is not available with the version 1 of the native
  * protocol (i.e. with Cassandra 1.2 or if version 1 has been explicitly requested
  * through {@link Cluster.Builder#withProtocolVersion}). If the protocol version 1
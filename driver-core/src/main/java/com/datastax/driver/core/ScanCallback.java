@@ -0,0 +1,36 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+/**
+ * Receives the rows read by a table scan.
+ *
+ * @see Session#scanAsync
+ */
+public interface ScanCallback {
+
+    /**
+     * Called for each row read by the scan.
+     * <p>
+     * Note that this method is called concurrently by multiple threads (one for
+     * each sub-range being read), so implementations should synchronize
+     * internally if need be. It should also not block, since it is called from
+     * the driver's internal threads.
+     *
+     * @param row the row.
+     */
+    public void onRow(Row row);
+}
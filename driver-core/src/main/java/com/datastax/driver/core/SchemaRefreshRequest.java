@@ -0,0 +1,86 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.*;
+
+import com.google.common.base.Objects;
+
+/**
+ * A request to refresh the schema metadata: everything if {@code keyspace} is null, a whole keyspace if both
+ * {@code table} and {@code udt} are null, a single table or user type otherwise.
+ */
+class SchemaRefreshRequest {
+
+    final String keyspace;
+    final String table;
+    final String udt;
+
+    SchemaRefreshRequest(String keyspace, String table, String udt) {
+        this.keyspace = keyspace;
+        this.table = table;
+        this.udt = udt;
+    }
+
+    /**
+     * Whether this request covers whole keyspaces, in which case the replication settings may have changed.
+     */
+    boolean isKeyspaceLevel() {
+        return table == null && udt == null;
+    }
+
+    /**
+     * Merges requests into the smallest set of refreshes that covers all of them: duplicates are removed, several
+     * requests for the same keyspace become a refresh of the keyspace, and any request for everything makes it the
+     * only one.
+     */
+    static List<SchemaRefreshRequest> coalesce(List<SchemaRefreshRequest> requests) {
+        Map<String, SchemaRefreshRequest> perKeyspace = new LinkedHashMap<String, SchemaRefreshRequest>();
+        for (SchemaRefreshRequest request : requests) {
+            if (request.keyspace == null)
+                return Collections.singletonList(request);
+
+            SchemaRefreshRequest previous = perKeyspace.get(request.keyspace);
+            if (previous == null)
+                perKeyspace.put(request.keyspace, request);
+            else if (!previous.equals(request))
+                perKeyspace.put(request.keyspace, new SchemaRefreshRequest(request.keyspace, null, null));
+        }
+        return new ArrayList<SchemaRefreshRequest>(perKeyspace.values());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SchemaRefreshRequest))
+            return false;
+        SchemaRefreshRequest that = (SchemaRefreshRequest)o;
+        return Objects.equal(this.keyspace, that.keyspace)
+            && Objects.equal(this.table, that.table)
+            && Objects.equal(this.udt, that.udt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(keyspace, table, udt);
+    }
+
+    @Override
+    public String toString() {
+        if (keyspace == null)
+            return "everything";
+        return keyspace + (table == null ? (udt == null ? "" : '.' + udt + " (UDT)") : '.' + table + " (table)");
+    }
+}
@@ -205,6 +205,32 @@ public interface Session extends Closeable {
      */
     public ResultSetFuture executeAsync(Statement statement);
 
+    /**
+     * Reads all the rows of a table by querying its token ranges in parallel.
+     * <p>
+     * Each range of {@link Metadata#getTokenRanges()} is split in {@code splitsPerRange}
+     * sub-ranges (see {@link TokenRange#splitEvenly}), and each sub-range is read with a
+     * {@code token(pk) > ? AND token(pk) <= ?} query that is routed to one of its replicas
+     * (provided a token-aware load balancing policy is used). At most {@code maxConcurrentSplits}
+     * sub-ranges are read at the same time.
+     * <p>
+     * Rows are passed to {@code callback} as they arrive, in no particular order. Note that the
+     * callback is invoked concurrently from multiple threads, and should not block.
+     *
+     * @param keyspace the keyspace of the table to scan.
+     * @param table the table to scan.
+     * @param splitsPerRange the number of sub-ranges to split each token range in.
+     * @param maxConcurrentSplits the maximum number of sub-ranges read at the same time.
+     * @param callback the callback to pass the rows of the table to.
+     * @return a future that completes once all rows have been passed to {@code callback}, or
+     * that fails with the first error encountered (in which case the scan is stopped). Cancelling
+     * it stops the scan.
+     *
+     * @throws IllegalArgumentException if the table does not exist in the cluster metadata, or
+     * if {@code splitsPerRange < 1} or {@code maxConcurrentSplits < 1}.
+     */
+    public ListenableFuture<Void> scanAsync(String keyspace, String table, int splitsPerRange, int maxConcurrentSplits, ScanCallback callback);
+
     /**
      * Prepares the provided query string.
      *
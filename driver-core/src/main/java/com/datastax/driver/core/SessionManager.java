@@ -23,7 +23,10 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,10 +44,21 @@ class SessionManager extends AbstractSession {
 
     private static final Logger logger = LoggerFactory.getLogger(Session.class);
 
+    // The maximum number of pools created at the same time when the first session initializes
+    private static final int MAX_PARALLEL_POOL_CREATIONS = SystemProperties.getInt("com.datastax.driver.MAX_PARALLEL_POOL_CREATIONS", 64);
+
     final Cluster cluster;
     final ConcurrentMap<Host, HostConnectionPool> pools;
     final HostConnectionPool.PoolState poolsState;
     final AtomicReference<CloseFuture> closeFuture = new AtomicReference<CloseFuture>();
+    final SingleFlightReads singleFlightReads = new SingleFlightReads(this);
+    // null if the cache is disabled
+    private final ConcurrentMap<PreparedKey, ListenableFuture<PreparedStatement>> preparedCache;
+
+    // The keyspaces for which persisted prepared statements have been prepared again
+    private final Set<String> warmedUpKeyspaces = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // The keyspaces for which this is in progress, so that concurrent USE queries don't start it more than once
+    private final ConcurrentMap<String, Boolean> warmingUpKeyspaces = new ConcurrentHashMap<String, Boolean>();
 
     private final Striped<Lock> poolCreationLocks = Striped.lazyWeakLock(5);
 
@@ -56,6 +70,16 @@ class SessionManager extends AbstractSession {
         this.cluster = cluster;
         this.pools = new ConcurrentHashMap<Host, HostConnectionPool>();
         this.poolsState = new HostConnectionPool.PoolState();
+
+        QueryOptions queryOptions = cluster.manager.configuration.getQueryOptions();
+        int preparedCacheSize = queryOptions.getPreparedStatementCacheSize();
+        if (preparedCacheSize > 0)
+            this.preparedCache = CacheBuilder.newBuilder().maximumSize(preparedCacheSize).<PreparedKey, ListenableFuture<PreparedStatement>>build().asMap();
+        else if (queryOptions.getPreparedStatementsFile() != null)
+            // Warmed up statements are put in the cache, see warmUpPreparedStatements
+            this.preparedCache = new ConcurrentHashMap<PreparedKey, ListenableFuture<PreparedStatement>>();
+        else
+            this.preparedCache = null;
     }
 
     public synchronized Session init() {
@@ -78,22 +102,97 @@ class SessionManager extends AbstractSession {
 
         isInit = true;
         updateCreatedPools(executor());
+        warmUpPreparedStatements(poolsState.keyspace);
         return this;
     }
 
+    /**
+     * Prepares again, in the background, the persisted statements that were prepared in {@code keyspace}, if this
+     * was not done yet. This must be called once the session's current keyspace is {@code keyspace}.
+     *
+     * @see QueryOptions#setPreparedStatementsFile
+     */
+    void warmUpPreparedStatements(final String keyspace) {
+        final PreparedStatementStore store = cluster.manager.preparedStatementStore;
+        // The empty string is not a valid keyspace name, we use it for "no keyspace"
+        final String keyspaceKey = keyspace == null ? "" : keyspace;
+        if (store == null || warmedUpKeyspaces.contains(keyspaceKey)
+            || warmingUpKeyspaces.putIfAbsent(keyspaceKey, Boolean.TRUE) != null)
+            return;
+
+        // Waiting for the preparations blocks, so don't use executor()
+        try {
+            blockingExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        warmUp(store, keyspace, keyspaceKey);
+                    } finally {
+                        warmingUpKeyspaces.remove(keyspaceKey);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The cluster is shutting down
+            warmingUpKeyspaces.remove(keyspaceKey);
+        }
+    }
+
+    private void warmUp(PreparedStatementStore store, String keyspace, String keyspaceKey) {
+        List<String> queries = store.queries(keyspace);
+        logger.debug("Preparing {} persisted statements for keyspace {}", queries.size(), keyspace);
+        // Like re-preparations on a node that comes up, limit how many are in flight so as not to flood the cluster
+        final Semaphore inFlight = new Semaphore(configuration().getQueryOptions().getMaxConcurrentReprepares());
+        for (final String query : queries) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // The keyspace could have changed in the meantime, the statements would then be cached under the wrong
+            // one. The keyspace is not marked as warmed up, so this will be done again if we switch back to it.
+            if (!Objects.equal(keyspace, poolsState.keyspace) || isClosing)
+                return;
+            Futures.addCallback(prepareAsync(query), new FutureCallback<PreparedStatement>() {
+                @Override
+                public void onSuccess(PreparedStatement result) {
+                    inFlight.release();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    inFlight.release();
+                    // The table was probably dropped
+                    logger.debug(String.format("Could not prepare persisted statement %s", query), t);
+                }
+            });
+        }
+        warmedUpKeyspaces.add(keyspaceKey);
+    }
+
     private void createPoolsInParallel(Collection<Host> hosts) {
-        List<ListenableFuture<Boolean>> futures = new ArrayList<ListenableFuture<Boolean>>(hosts.size());
-        for (Host host : hosts)
-            if (host.state != Host.State.DOWN)
-                futures.add(maybeAddPool(host, executor()));
-        ListenableFuture<List<Boolean>> f = Futures.allAsList(futures);
+        // Opening connections blocks, so executor() (which is sized for non-blocking tasks) would only create a handful
+        // of pools at a time. Use dedicated threads so that all pools are created at once.
+        int threads = Math.max(1, Math.min(hosts.size(), MAX_PARALLEL_POOL_CREATIONS));
+        ListeningExecutorService poolCreationExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threads,
+            new ThreadFactoryBuilder().setNameFormat("Cassandra Java Driver pool creation-%d").setDaemon(true).build()));
         try {
-            f.get();
-        } catch (ExecutionException e) {
-            // This is not supposed to happen
-            throw new DriverInternalError(e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            List<ListenableFuture<Boolean>> futures = new ArrayList<ListenableFuture<Boolean>>(hosts.size());
+            for (Host host : hosts)
+                if (host.state != Host.State.DOWN)
+                    futures.add(maybeAddPool(host, poolCreationExecutor));
+            ListenableFuture<List<Boolean>> f = Futures.allAsList(futures);
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                // This is not supposed to happen
+                throw new DriverInternalError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            poolCreationExecutor.shutdown();
         }
     }
 
@@ -116,10 +215,63 @@ class SessionManager extends AbstractSession {
     }
 
     public ResultSetFuture executeAsync(Statement statement) {
+        if (configuration().getQueryOptions().isInFlightReadDeduplicationEnabled()) {
+            ResultSetFuture future = singleFlightReads.maybeExecute(statement);
+            if (future != null)
+                return future;
+        }
         return executeQuery(makeRequestMessage(statement, null), statement);
     }
 
     public ListenableFuture<PreparedStatement> prepareAsync(String query) {
+        if (preparedCache == null)
+            return prepareUncached(query);
+
+        final PreparedKey key = new PreparedKey(poolsState.keyspace, query);
+        ListenableFuture<PreparedStatement> cached = preparedCache.get(key);
+        if (cached != null)
+            return forCaller(cached);
+
+        final SettableFuture<PreparedStatement> future = SettableFuture.create();
+        cached = preparedCache.putIfAbsent(key, future);
+        if (cached != null)
+            return forCaller(cached);
+
+        Futures.addCallback(prepareUncached(query), new FutureCallback<PreparedStatement>() {
+            @Override
+            public void onSuccess(PreparedStatement stmt) {
+                future.set(stmt);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // Don't cache failures, the next call will retry
+                preparedCache.remove(key, future);
+                future.setException(t);
+            }
+        });
+        return forCaller(future);
+    }
+
+    // The cached future is shared by all callers, give each one its own so that cancelling it doesn't affect the others.
+    // Futures.transform would not do, since it propagates cancellation to its input.
+    private static ListenableFuture<PreparedStatement> forCaller(ListenableFuture<PreparedStatement> cached) {
+        final SettableFuture<PreparedStatement> future = SettableFuture.create();
+        Futures.addCallback(cached, new FutureCallback<PreparedStatement>() {
+            @Override
+            public void onSuccess(PreparedStatement stmt) {
+                future.set(stmt);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.setException(t);
+            }
+        });
+        return future;
+    }
+
+    private ListenableFuture<PreparedStatement> prepareUncached(String query) {
         Connection.Future future = new Connection.Future(new Requests.Prepare(query));
         execute(future, Statement.DEFAULT);
         return toPreparedStatement(query, future);
@@ -539,6 +691,10 @@ class SessionManager extends AbstractSession {
     }
 
     private void prepare(String query, InetSocketAddress toExclude) throws InterruptedException {
+        // Send the query to all hosts first, then wait for the responses, so that this takes as long as the
+        // slowest host rather than the sum of all of them.
+        Map<Host, PooledConnection> connections = new HashMap<Host, PooledConnection>(pools.size());
+        Map<Host, Connection.Future> futures = new HashMap<Host, Connection.Future>(pools.size());
         for (Map.Entry<Host, HostConnectionPool> entry : pools.entrySet()) {
             if (entry.getKey().getSocketAddress().equals(toExclude))
                 continue;
@@ -546,27 +702,44 @@ class SessionManager extends AbstractSession {
             // Let's not wait too long if we can't get a connection. Things
             // will fix themselves once the user tries a query anyway.
             PooledConnection c = null;
-            boolean timedOut = false;
             try {
                 c = entry.getValue().borrowConnection(200, TimeUnit.MILLISECONDS);
-                c.write(new Requests.Prepare(query)).get();
+                futures.put(entry.getKey(), c.write(new Requests.Prepare(query)));
+                connections.put(entry.getKey(), c);
             } catch (ConnectionException e) {
                 // Again, not being able to prepare the query right now is no big deal, so just ignore
+                if (c != null)
+                    c.release();
             } catch (BusyConnectionException e) {
                 // Same as above
+                c.release();
             } catch (TimeoutException e) {
                 // Same as above
-            } catch (ExecutionException e) {
-                // We shouldn't really get exception while preparing a
-                // query, so log this (but ignore otherwise as it's not a big deal)
-                logger.error(String.format("Unexpected error while preparing query (%s) on %s", query, entry.getKey()), e);
-                // If the query timed out, that already released the connection
-                timedOut = e.getCause() instanceof OperationTimedOutException;
-            } finally {
-                if (c != null && !timedOut)
-                    c.release();
             }
         }
+
+        try {
+            for (Map.Entry<Host, Connection.Future> entry : futures.entrySet()) {
+                PooledConnection c = connections.remove(entry.getKey());
+                boolean timedOut = false;
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    // We shouldn't really get exception while preparing a
+                    // query, so log this (but ignore otherwise as it's not a big deal)
+                    logger.error(String.format("Unexpected error while preparing query (%s) on %s", query, entry.getKey()), e);
+                    // If the query timed out, that already released the connection
+                    timedOut = e.getCause() instanceof OperationTimedOutException;
+                } finally {
+                    if (!timedOut)
+                        c.release();
+                }
+            }
+        } finally {
+            // Only non-empty if we got interrupted
+            for (PooledConnection c : connections.values())
+                c.release();
+        }
     }
 
     ResultSetFuture executeQuery(Message.Request msg, Statement statement) {
@@ -578,6 +751,29 @@ class SessionManager extends AbstractSession {
         return future;
     }
 
+    private static class PreparedKey {
+        private final String keyspace;
+        private final String query;
+
+        PreparedKey(String keyspace, String query) {
+            this.keyspace = keyspace;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PreparedKey))
+                return false;
+            PreparedKey that = (PreparedKey)o;
+            return Objects.equal(this.keyspace, that.keyspace) && this.query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(keyspace, query);
+        }
+    }
+
     private static class State implements Session.State {
 
         private final SessionManager session;
@@ -130,6 +130,8 @@ class SingleConnectionPool extends HostConnectionPool {
     }
 
     private void signalAvailableConnection() {
+        dequeuePending();
+
         // Quick check if it's worth signaling to avoid locking
         if (waiter == 0)
             return;
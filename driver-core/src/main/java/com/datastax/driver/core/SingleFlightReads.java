@@ -0,0 +1,293 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Makes identical reads that are in flight at the same time share a single request.
+ * <p>
+ * Only idempotent bound statements that return rows are eligible; two statements are identical if they
+ * have the same prepared id, the same values and the same consistency level.
+ * See {@link QueryOptions#setInFlightReadDeduplicationEnabled(boolean)}.
+ */
+class SingleFlightReads {
+
+    private final SessionManager session;
+    private final ConcurrentMap<Key, SharedRead> inFlight = new ConcurrentHashMap<Key, SharedRead>();
+
+    SingleFlightReads(SessionManager session) {
+        this.session = session;
+    }
+
+    /**
+     * Executes {@code statement}, joining an identical in-flight read if there is one.
+     *
+     * @return the future for the statement, or {@code null} if the statement is not eligible, in which case
+     * the caller should execute it normally.
+     */
+    ResultSetFuture maybeExecute(Statement statement) {
+        Key key = keyFor(statement);
+        if (key == null)
+            return null;
+
+        ProtocolVersion protocolVersion = session.configuration().getProtocolOptions().getProtocolVersionEnum();
+        while (true) {
+            SharedRead existing = inFlight.get(key);
+            if (existing != null) {
+                DefaultResultSetFuture future = new DefaultResultSetFuture(session, protocolVersion, existing.request);
+                if (existing.join(future, statement))
+                    return future;
+                // It completed concurrently, make sure it's not in the map anymore and start over
+                inFlight.remove(key, existing);
+                continue;
+            }
+
+            SharedRead read = new SharedRead(key, session.makeRequestMessage(statement, null));
+            DefaultResultSetFuture future = new DefaultResultSetFuture(session, protocolVersion, read.request);
+            read.join(future, statement);
+            if (inFlight.putIfAbsent(key, read) == null) {
+                session.execute(read, statement);
+                return future;
+            }
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private Key keyFor(Statement statement) {
+        if (!(statement instanceof BoundStatement) || statement.isTracing())
+            return null;
+
+        QueryOptions queryOptions = session.configuration().getQueryOptions();
+        Boolean idempotent = statement.isIdempotent();
+        if (!(idempotent == null ? queryOptions.getDefaultIdempotence() : idempotent))
+            return null;
+
+        BoundStatement bs = (BoundStatement)statement;
+        PreparedId preparedId = bs.preparedStatement().getPreparedId();
+        // Statements that don't return rows are writes
+        if (preparedId.resultSetMetadata == null || preparedId.resultSetMetadata.size() == 0)
+            return null;
+
+        for (int i = 0; i < bs.wrapper.values.length; i++) {
+            if (!bs.isSet(i))
+                return null;
+        }
+
+        ConsistencyLevel consistency = statement.getConsistencyLevel();
+        if (consistency == null)
+            consistency = queryOptions.getConsistencyLevel();
+
+        // Copy the values since the statement may be rebound while the request is in flight
+        return new Key(preparedId.id, bs.wrapper.values.clone(), consistency);
+    }
+
+    private static class Key {
+        private final MD5Digest id;
+        private final ByteBuffer[] values;
+        private final ConsistencyLevel consistency;
+        private final int hashCode;
+
+        Key(MD5Digest id, ByteBuffer[] values, ConsistencyLevel consistency) {
+            this.id = id;
+            this.values = values;
+            this.consistency = consistency;
+            this.hashCode = 31 * (31 * id.hashCode() + Arrays.hashCode(values)) + consistency.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key that = (Key)o;
+            return this.id.equals(that.id)
+                && this.consistency == that.consistency
+                && Arrays.equals(this.values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The callback of the one request that is actually sent, which completes the future of every statement
+     * that joined it.
+     */
+    private class SharedRead implements RequestHandler.Callback {
+        private final Key key;
+        private final Message.Request request;
+
+        // All guarded by this
+        private final List<DefaultResultSetFuture> futures = new ArrayList<DefaultResultSetFuture>(2);
+        private final List<Statement> statements = new ArrayList<Statement>(2);
+        private boolean completed;
+
+        SharedRead(Key key, Message.Request request) {
+            this.key = key;
+            this.request = request;
+        }
+
+        synchronized boolean join(DefaultResultSetFuture future, Statement statement) {
+            if (completed)
+                return false;
+            futures.add(future);
+            statements.add(statement);
+            return true;
+        }
+
+        // Once this returns, no other statement can join
+        private synchronized void complete() {
+            completed = true;
+            inFlight.remove(key, this);
+        }
+
+        @Override
+        public Message.Request request() {
+            return request;
+        }
+
+        @Override
+        public void register(RequestHandler handler) {
+            // Cancelling one of the futures should not cancel the request for the others, so we don't keep it
+        }
+
+        @Override
+        public int retryCount() {
+            return 0;
+        }
+
+        @Override
+        public void onSet(Connection connection, Message.Response response, ExecutionInfo info, Statement statement, long latency) {
+            complete();
+
+            // A result with more pages can't be shared, since each result set fetches its next pages
+            // on its own. Let the first statement have it and execute the other ones individually.
+            boolean shareable = !(response instanceof Responses.Result.Rows)
+                             || ((Responses.Result.Rows)response).metadata.pagingState == null;
+
+            if (!shareable) {
+                futures.get(0).onSet(connection, response, info, statements.get(0), latency);
+                if (futures.size() > 1)
+                    executeFollowers();
+                return;
+            }
+
+            // Copy the rows before the first future gets a chance to consume them
+            Message.Response[] responses = new Message.Response[futures.size()];
+            responses[0] = response;
+            for (int i = 1; i < responses.length; i++) {
+                responses[i] = response instanceof Responses.Result.Rows
+                             ? ((Responses.Result.Rows)response).copy()
+                             : response;
+            }
+            for (int i = 0; i < responses.length; i++)
+                futures.get(i).onSet(connection, responses[i], info, statements.get(i), latency);
+        }
+
+        // We're on an I/O thread, and sending a request may block (to borrow a connection, or to initialize the session)
+        private void executeFollowers() {
+            session.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 1; i < futures.size(); i++) {
+                        Statement statement = statements.get(i);
+                        session.execute(new Follower(futures.get(i), session.makeRequestMessage(statement, null)), statement);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onSet(Connection connection, Message.Response response, long latency, int retryCount) {
+            onSet(connection, response, null, null, latency);
+        }
+
+        @Override
+        public void onException(Connection connection, Exception exception, long latency, int retryCount) {
+            complete();
+            for (DefaultResultSetFuture future : futures)
+                future.onException(connection, exception, latency, retryCount);
+        }
+
+        @Override
+        public boolean onTimeout(Connection connection, long latency, int retryCount) {
+            complete();
+            for (DefaultResultSetFuture future : futures)
+                future.onTimeout(connection, latency, retryCount);
+            return true;
+        }
+    }
+
+    /**
+     * Executes a statement that joined a shared read on its own. Its future was created with the shared request,
+     * which can't be sent concurrently by several handlers (writing a request sets its stream id), so this sends a
+     * request of its own.
+     */
+    private static class Follower implements RequestHandler.Callback {
+        private final DefaultResultSetFuture future;
+        private final Message.Request request;
+
+        Follower(DefaultResultSetFuture future, Message.Request request) {
+            this.future = future;
+            this.request = request;
+        }
+
+        @Override
+        public Message.Request request() {
+            return request;
+        }
+
+        @Override
+        public void register(RequestHandler handler) {
+            future.register(handler);
+        }
+
+        @Override
+        public int retryCount() {
+            return future.retryCount();
+        }
+
+        @Override
+        public void onSet(Connection connection, Message.Response response, ExecutionInfo info, Statement statement, long latency) {
+            future.onSet(connection, response, info, statement, latency);
+        }
+
+        @Override
+        public void onSet(Connection connection, Message.Response response, long latency, int retryCount) {
+            future.onSet(connection, response, latency, retryCount);
+        }
+
+        @Override
+        public void onException(Connection connection, Exception exception, long latency, int retryCount) {
+            future.onException(connection, exception, latency, retryCount);
+        }
+
+        @Override
+        public boolean onTimeout(Connection connection, long latency, int retryCount) {
+            return future.onTimeout(connection, latency, retryCount);
+        }
+    }
+}
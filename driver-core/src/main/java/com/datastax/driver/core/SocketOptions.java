@@ -40,8 +40,28 @@ public class SocketOptions {
      */
     public static final int DEFAULT_READ_TIMEOUT_MILLIS = 12000;
 
+    /**
+     * The default maximum number of bytes gathered in a single socket write
+     * when write coalescing is enabled, if none is set explicitly using
+     * {@link #setMaxCoalescedWriteBytes}.
+     * <p>
+     * That default is of 64 kilobytes, which is the size of the direct buffers
+     * Netty uses to send data on the socket.
+     */
+    public static final int DEFAULT_MAX_COALESCED_WRITE_BYTES = 64 * 1024;
+
+    /**
+     * The default maximum number of requests written during a single flush
+     * cycle when write coalescing is enabled, if none is set explicitly using
+     * {@link #setMaxCoalescedRequests}.
+     */
+    public static final int DEFAULT_MAX_COALESCED_REQUESTS = 256;
+
     private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
     private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    private volatile boolean writeCoalescingEnabled;
+    private volatile int maxCoalescedWriteBytes = DEFAULT_MAX_COALESCED_WRITE_BYTES;
+    private volatile int maxCoalescedRequests = DEFAULT_MAX_COALESCED_REQUESTS;
     private volatile Boolean keepAlive;
     private volatile Boolean reuseAddress;
     private volatile Integer soLinger;
@@ -131,6 +151,103 @@ public class SocketOptions {
         return this;
     }
 
+    /**
+     * Whether outbound requests are coalesced into batched socket writes.
+     * <p>
+     * When enabled, requests written on a connection by client threads are
+     * queued and drained by the connection's I/O thread, which encodes all the
+     * requests accumulated since its last run and sends them to the socket in
+     * a single write. This saves system calls and pipeline traversals when
+     * many requests are sent concurrently, at the price of a thread hand-off
+     * for every request. No artificial delay is introduced: a flush cycle
+     * starts as soon as the I/O thread is available.
+     * <p>
+     * This is disabled by default.
+     *
+     * @return whether write coalescing is enabled.
+     */
+    public boolean isWriteCoalescingEnabled() {
+        return writeCoalescingEnabled;
+    }
+
+    /**
+     * Sets whether outbound requests are coalesced into batched socket writes.
+     * <p>
+     * Note that this only applies to connections opened after this method is
+     * called.
+     *
+     * @param writeCoalescingEnabled whether to enable write coalescing.
+     * @return this {@code SocketOptions}.
+     *
+     * @see #isWriteCoalescingEnabled()
+     */
+    public SocketOptions setWriteCoalescingEnabled(boolean writeCoalescingEnabled) {
+        this.writeCoalescingEnabled = writeCoalescingEnabled;
+        return this;
+    }
+
+    /**
+     * The maximum number of bytes gathered in a single socket write when
+     * write coalescing is enabled.
+     * <p>
+     * Once the frames buffered during a flush cycle reach that size, they are
+     * written right away and a new batch is started.
+     *
+     * @return the maximum size of a coalesced write, in bytes.
+     */
+    public int getMaxCoalescedWriteBytes() {
+        return maxCoalescedWriteBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes gathered in a single socket write when
+     * write coalescing is enabled.
+     *
+     * @param maxCoalescedWriteBytes the value to set.
+     * @return this {@code SocketOptions}.
+     *
+     * @throws IllegalArgumentException if {@code maxCoalescedWriteBytes} is
+     * not strictly positive.
+     */
+    public SocketOptions setMaxCoalescedWriteBytes(int maxCoalescedWriteBytes) {
+        if (maxCoalescedWriteBytes <= 0)
+            throw new IllegalArgumentException("Max coalesced write bytes must be strictly positive");
+        this.maxCoalescedWriteBytes = maxCoalescedWriteBytes;
+        return this;
+    }
+
+    /**
+     * The maximum number of requests written during a single flush cycle
+     * when write coalescing is enabled.
+     * <p>
+     * This bounds the time the I/O thread spends draining a given connection
+     * before handing back control to the other connections it serves, and
+     * therefore how long the first request of a batch may wait before it
+     * reaches the socket.
+     *
+     * @return the maximum number of requests per flush cycle.
+     */
+    public int getMaxCoalescedRequests() {
+        return maxCoalescedRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests written during a single flush cycle
+     * when write coalescing is enabled.
+     *
+     * @param maxCoalescedRequests the value to set.
+     * @return this {@code SocketOptions}.
+     *
+     * @throws IllegalArgumentException if {@code maxCoalescedRequests} is
+     * not strictly positive.
+     */
+    public SocketOptions setMaxCoalescedRequests(int maxCoalescedRequests) {
+        if (maxCoalescedRequests <= 0)
+            throw new IllegalArgumentException("Max coalesced requests must be strictly positive");
+        this.maxCoalescedRequests = maxCoalescedRequests;
+        return this;
+    }
+
     public Boolean getKeepAlive() {
         return keepAlive;
     }
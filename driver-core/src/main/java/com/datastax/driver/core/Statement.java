@@ -42,7 +42,10 @@ public abstract class Statement {
     private volatile ConsistencyLevel serialConsistency;
     private volatile boolean traceQuery;
     private volatile int fetchSize;
+    private volatile int prefetchThreshold = -1;
     private volatile long defaultTimestamp = Long.MIN_VALUE;
+    private volatile Boolean idempotent;
+    private volatile Token routingToken;
 
     private volatile RetryPolicy retryPolicy;
 
@@ -166,6 +169,46 @@ public abstract class Statement {
      */
     public abstract ByteBuffer getRoutingKey();
 
+    /**
+     * Sets the token to use for token aware routing of this query.
+     * <p>
+     * This is an alternative to the routing key for queries that don't target a
+     * single partition, like token range queries, or when the token of the partition
+     * is already known (for instance from {@code token(pk)} in a previous result):
+     * the routing key then doesn't need to be serialized nor hashed. When set, it
+     * takes precedence over {@link #getRoutingKey()} for token-aware routing.
+     *
+     * @param routingToken the token to route this query with, or {@code null}
+     * to route it with its routing key.
+     * @return this {@code Statement} object.
+     */
+    public Statement setRoutingToken(Token routingToken) {
+        this.routingToken = routingToken;
+        return this;
+    }
+
+    /**
+     * Returns the token to use for token aware routing of this query.
+     *
+     * @return the routing token for this query or {@code null} if none has
+     * been set.
+     */
+    public Token getRoutingToken() {
+        return routingToken;
+    }
+
+    /**
+     * Returns the token this statement should be routed with: its routing token if it has one,
+     * the hash of its routing key otherwise (or {@code null} if it has neither).
+     */
+    Token routingToken(Token.Factory factory) {
+        Token token = routingToken;
+        if (token != null)
+            return token;
+        ByteBuffer routingKey = getRoutingKey();
+        return routingKey == null ? null : factory.hash(routingKey);
+    }
+
     /**
      * Returns the keyspace this query operates on.
      * <p>
@@ -254,6 +297,33 @@ public abstract class Statement {
         return fetchSize;
     }
 
+    /**
+     * Sets the prefetch threshold for this query.
+     * <p>
+     * When iterating over the {@link ResultSet} of this query, the next page
+     * is fetched in the background as soon as fewer than this number of rows
+     * remain available without fetching (see {@link QueryOptions#setPrefetchThreshold}).
+     *
+     * @param prefetchThreshold the threshold to use. If negative, the default
+     * threshold will be used. 0 disables prefetching for this query.
+     * @return this {@code Statement} object.
+     */
+    public Statement setPrefetchThreshold(int prefetchThreshold) {
+        this.prefetchThreshold = prefetchThreshold;
+        return this;
+    }
+
+    /**
+     * The prefetch threshold for this query.
+     *
+     * @return the prefetch threshold for this query. If that value is negative
+     * (the default unless {@link #setPrefetchThreshold} is used), the default
+     * threshold will be used.
+     */
+    public int getPrefetchThreshold() {
+        return prefetchThreshold;
+    }
+
     /**
      * Sets the default timestamp for this query (in microseconds since the epoch).
      * <p>
@@ -293,4 +363,35 @@ public abstract class Statement {
     public long getDefaultTimestamp() {
         return defaultTimestamp;
     }
+
+    /**
+     * Sets whether this statement is idempotent, i.e. whether it can be applied
+     * multiple times without changing the result beyond the initial application.
+     * <p>
+     * Idempotence is used to decide whether the statement can be executed
+     * speculatively (see {@link com.datastax.driver.core.policies.SpeculativeExecutionPolicy}).
+     * For example, an {@code INSERT} or a read is idempotent, but a counter
+     * increment or an append to a list is not.
+     * <p>
+     * The driver does not infer idempotence from the query string, this is the
+     * responsibility of the caller.
+     *
+     * @param idempotent the new value.
+     * @return this {@code Statement} object.
+     */
+    public Statement setIdempotent(boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
+
+    /**
+     * Whether this statement is idempotent.
+     *
+     * @return whether this statement is idempotent, or {@code null} to use
+     * {@link QueryOptions#getDefaultIdempotence()} (the default unless
+     * {@link #setIdempotent} is used).
+     */
+    public Boolean isIdempotent() {
+        return idempotent;
+    }
 }
@@ -0,0 +1,174 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Reads a whole table by querying sub-ranges of the ring in parallel.
+ *
+ * @see Session#scanAsync
+ */
+class TableScanner {
+
+    private final Session session;
+    private final int maxConcurrentSplits;
+    private final ScanCallback callback;
+    private final Executor executor;
+
+    private final List<Statement> splits;
+    private final AtomicInteger nextSplit = new AtomicInteger();
+    private final AtomicInteger remainingSplits;
+    private final SettableFuture<Void> result = SettableFuture.create();
+
+    TableScanner(Session session, String keyspace, String table, int splitsPerRange, int maxConcurrentSplits, ScanCallback callback) {
+        if (splitsPerRange < 1)
+            throw new IllegalArgumentException("Invalid number of splits per range, should be >= 1, got " + splitsPerRange);
+        if (maxConcurrentSplits < 1)
+            throw new IllegalArgumentException("Invalid number of concurrent splits, should be >= 1, got " + maxConcurrentSplits);
+
+        Cluster cluster = session.getCluster();
+        KeyspaceMetadata keyspaceMetadata = cluster.getMetadata().getKeyspace(keyspace);
+        TableMetadata tableMetadata = keyspaceMetadata == null ? null : keyspaceMetadata.getTable(table);
+        if (tableMetadata == null)
+            throw new IllegalArgumentException(String.format("Unknown table %s.%s", keyspace, table));
+
+        this.session = session;
+        this.maxConcurrentSplits = maxConcurrentSplits;
+        this.callback = callback;
+        this.executor = cluster.manager.executor;
+        this.splits = makeSplits(cluster.getMetadata(), tableMetadata, splitsPerRange);
+        this.remainingSplits = new AtomicInteger(splits.size());
+    }
+
+    private static List<Statement> makeSplits(Metadata metadata, TableMetadata table, int splitsPerRange) {
+        StringBuilder token = new StringBuilder("token(");
+        List<ColumnMetadata> partitionKey = table.getPartitionKey();
+        for (int i = 0; i < partitionKey.size(); i++) {
+            if (i > 0)
+                token.append(", ");
+            token.append(Metadata.quote(partitionKey.get(i).getName()));
+        }
+        token.append(')');
+
+        String keyspace = table.getKeyspace().getName();
+        String select = String.format("SELECT * FROM %s.%s WHERE %s > ?", Metadata.quote(keyspace), Metadata.quote(table.getName()), token);
+        String selectBounded = select + " AND " + token + " <= ?";
+
+        List<Statement> splits = new ArrayList<Statement>();
+        Token.Factory factory = metadata.tokenFactory();
+        if (factory == null) {
+            // The ring is not known (token metadata is not available), fall back to a single query
+            splits.add(new SimpleStatement(String.format("SELECT * FROM %s.%s", Metadata.quote(keyspace), Metadata.quote(table.getName())))
+                       .setKeyspace(keyspace));
+            return splits;
+        }
+
+        Token minToken = factory.minToken();
+        for (TokenRange range : metadata.getTokenRanges()) {
+            if (range.isEmpty())
+                continue;
+            for (TokenRange split : range.splitEvenly(splitsPerRange)) {
+                for (TokenRange subRange : split.unwrap()) {
+                    if (subRange.isEmpty())
+                        continue;
+                    Token start = subRange.getStart(), end = subRange.getEnd();
+                    // A range that ends with the minimum token goes up to the end of the ring
+                    SimpleStatement statement = end.equals(minToken)
+                                              ? new SimpleStatement(select, start.getValue())
+                                              : new SimpleStatement(selectBounded, start.getValue(), end.getValue());
+                    statement.setKeyspace(keyspace);
+                    statement.setRoutingToken(end);
+                    splits.add(statement);
+                }
+            }
+        }
+        return splits;
+    }
+
+    ListenableFuture<Void> start() {
+        if (splits.isEmpty()) {
+            result.set(null);
+            return result;
+        }
+        for (int i = 0; i < Math.min(maxConcurrentSplits, splits.size()); i++)
+            startNextSplit();
+        return result;
+    }
+
+    private void startNextSplit() {
+        // The scan stops as soon as it fails or is cancelled
+        if (result.isDone())
+            return;
+
+        int i = nextSplit.getAndIncrement();
+        if (i >= splits.size())
+            return;
+
+        Futures.addCallback(session.executeAsync(splits.get(i)), new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet rs) {
+                consume(rs);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.setException(t);
+            }
+        }, executor);
+    }
+
+    private void consume(final ResultSet rs) {
+        try {
+            for (int i = rs.getAvailableWithoutFetching(); i > 0; i--) {
+                if (result.isDone())
+                    return;
+                callback.onRow(rs.one());
+            }
+        } catch (RuntimeException e) {
+            result.setException(e);
+            return;
+        }
+
+        if (!rs.isFullyFetched()) {
+            Futures.addCallback(rs.fetchMoreResults(), new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(Void v) {
+                    consume(rs);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    result.setException(t);
+                }
+            }, executor);
+            return;
+        }
+
+        if (remainingSplits.decrementAndGet() == 0)
+            result.set(null);
+        else
+            startNextSplit();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Statement;
+
+/**
+ * A {@link SpeculativeExecutionPolicy} that schedules speculative executions once the host currently queried has taken
+ * longer than a given percentile of its recent latencies.
+ * <p>
+ * Latencies are tracked per host, with an exponentially decaying reservoir that favors the last five minutes. Since
+ * computing a percentile has a cost, the threshold of each host is only recomputed once per second. No speculative
+ * execution is scheduled for a host until enough latencies have been recorded for it.
+ */
+public class PercentileSpeculativeExecutionPolicy implements SpeculativeExecutionPolicy, LatencyTracker {
+
+    private static final long MIN_RECORDED_VALUES = 100;
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double percentile;
+    private final int maxSpeculativeExecutions;
+    private final ConcurrentMap<Host, HostLatencies> latencies = new ConcurrentHashMap<Host, HostLatencies>();
+
+    private volatile Cluster cluster;
+
+    /**
+     * Builds a new instance.
+     *
+     * @param percentile the percentile that a request's latency must fall into to be considered slow (ex: {@code 99.0}).
+     * @param maxSpeculativeExecutions the maximum number of speculative executions that will be triggered for a given request.
+     *
+     * @throws IllegalArgumentException if one of the arguments is out of range.
+     */
+    public PercentileSpeculativeExecutionPolicy(double percentile, int maxSpeculativeExecutions) {
+        if (percentile <= 0.0 || percentile >= 100.0)
+            throw new IllegalArgumentException(String.format("Invalid percentile, must be in the range (0, 100) (got %f)", percentile));
+        if (maxSpeculativeExecutions <= 0)
+            throw new IllegalArgumentException(String.format("Invalid number of speculative executions, must be strictly positive (got %d)", maxSpeculativeExecutions));
+        this.percentile = percentile;
+        this.maxSpeculativeExecutions = maxSpeculativeExecutions;
+    }
+
+    @Override
+    public void init(Cluster cluster) {
+        this.cluster = cluster;
+        cluster.register(this);
+    }
+
+    @Override
+    public SpeculativeExecutionPlan newPlan(String loggedKeyspace, Statement statement) {
+        return new SpeculativeExecutionPlan() {
+            private final AtomicInteger remaining = new AtomicInteger(maxSpeculativeExecutions);
+
+            @Override
+            public long nextExecution(Host lastQueried) {
+                if (remaining.getAndDecrement() <= 0)
+                    return -1;
+                HostLatencies hostLatencies = latencies.get(lastQueried);
+                return hostLatencies == null ? -1 : hostLatencies.thresholdMillis(percentile);
+            }
+        };
+    }
+
+    @Override
+    public void update(Host host, long newLatencyNanos) {
+        HostLatencies hostLatencies = latencies.get(host);
+        if (hostLatencies == null) {
+            HostLatencies newLatencies = new HostLatencies();
+            hostLatencies = latencies.putIfAbsent(host, newLatencies);
+            if (hostLatencies == null)
+                hostLatencies = newLatencies;
+        }
+        hostLatencies.histogram.update(newLatencyNanos);
+    }
+
+    @Override
+    public void close() {
+        Cluster cluster = this.cluster;
+        if (cluster != null)
+            cluster.unregister(this);
+        latencies.clear();
+    }
+
+    private static class HostLatencies {
+        final Histogram histogram = new Histogram(new ExponentiallyDecayingReservoir());
+        private volatile long thresholdMillis = -1;
+        private volatile long nextRefreshNanos = System.nanoTime();
+
+        long thresholdMillis(double percentile) {
+            long now = System.nanoTime();
+            // Racy, but recomputing more than once in an interval is harmless
+            if (now - nextRefreshNanos >= 0) {
+                nextRefreshNanos = now + REFRESH_INTERVAL_NANOS;
+                thresholdMillis = (histogram.getCount() < MIN_RECORDED_VALUES)
+                                ? -1
+                                : Math.max(1, TimeUnit.NANOSECONDS.toMillis((long)histogram.getSnapshot().getValue(percentile / 100)));
+            }
+            return thresholdMillis;
+        }
+    }
+}
@@ -26,15 +26,17 @@ public class Policies {
     private static final ReconnectionPolicy DEFAULT_RECONNECTION_POLICY = new ExponentialReconnectionPolicy(1000, 10 * 60 * 1000);
     private static final RetryPolicy DEFAULT_RETRY_POLICY = DefaultRetryPolicy.INSTANCE;
     private static final AddressTranslater DEFAULT_ADDRESS_TRANSLATER = new IdentityTranslater();
+    private static final SpeculativeExecutionPolicy DEFAULT_SPECULATIVE_EXECUTION_POLICY = NoSpeculativeExecutionPolicy.INSTANCE;
 
     private final LoadBalancingPolicy loadBalancingPolicy;
     private final ReconnectionPolicy reconnectionPolicy;
     private final RetryPolicy retryPolicy;
     private final AddressTranslater addressTranslater;
     private final TimestampGenerator timestampGenerator;
+    private final SpeculativeExecutionPolicy speculativeExecutionPolicy;
 
     public Policies() {
-        this(defaultLoadBalancingPolicy(), defaultReconnectionPolicy(), defaultRetryPolicy(), defaultAddressTranslater(), defaultTimestampGenerator());
+        this(defaultLoadBalancingPolicy(), defaultReconnectionPolicy(), defaultRetryPolicy(), defaultAddressTranslater(), defaultTimestampGenerator(), defaultSpeculativeExecutionPolicy());
     }
 
     /**
@@ -70,6 +72,7 @@ public class Policies {
         this.retryPolicy = retryPolicy;
         this.addressTranslater = addressTranslater;
         this.timestampGenerator = defaultTimestampGenerator();
+        this.speculativeExecutionPolicy = defaultSpeculativeExecutionPolicy();
     }
 
     /**
@@ -86,11 +89,31 @@ public class Policies {
                     RetryPolicy retryPolicy,
                     AddressTranslater addressTranslater,
                     TimestampGenerator timestampGenerator) {
+        this(loadBalancingPolicy, reconnectionPolicy, retryPolicy, addressTranslater, timestampGenerator, defaultSpeculativeExecutionPolicy());
+    }
+
+    /**
+     * Creates a new {@code Policies} object using the provided policies.
+     *
+     * @param loadBalancingPolicy the load balancing policy to use.
+     * @param reconnectionPolicy the reconnection policy to use.
+     * @param retryPolicy the retry policy to use.
+     * @param addressTranslater the address translater to use.
+     * @param timestampGenerator the timestamp generator to use.
+     * @param speculativeExecutionPolicy the speculative execution policy to use.
+     */
+    public Policies(LoadBalancingPolicy loadBalancingPolicy,
+                    ReconnectionPolicy reconnectionPolicy,
+                    RetryPolicy retryPolicy,
+                    AddressTranslater addressTranslater,
+                    TimestampGenerator timestampGenerator,
+                    SpeculativeExecutionPolicy speculativeExecutionPolicy) {
         this.loadBalancingPolicy = loadBalancingPolicy;
         this.reconnectionPolicy = reconnectionPolicy;
         this.retryPolicy = retryPolicy;
         this.addressTranslater = addressTranslater;
         this.timestampGenerator = timestampGenerator;
+        this.speculativeExecutionPolicy = speculativeExecutionPolicy;
     }
 
     /**
@@ -156,6 +179,17 @@ public class Policies {
         return ServerSideTimestampGenerator.INSTANCE;
     }
 
+    /**
+     * The default speculative execution policy.
+     * <p>
+     * This is {@link NoSpeculativeExecutionPolicy}: no speculative executions are sent.
+     *
+     * @return the default speculative execution policy.
+     */
+    public static SpeculativeExecutionPolicy defaultSpeculativeExecutionPolicy() {
+        return DEFAULT_SPECULATIVE_EXECUTION_POLICY;
+    }
+
     /**
      * The load balancing policy in use.
      * <p>
@@ -207,4 +241,16 @@ public class Policies {
     public TimestampGenerator getTimestampGenerator() {
         return timestampGenerator;
     }
+
+    /**
+     * The speculative execution policy in use.
+     * <p>
+     * The speculative execution policy defines whether and when the driver sends
+     * a query to additional hosts while the current one is still responding.
+     *
+     * @return the speculative execution policy in use.
+     */
+    public SpeculativeExecutionPolicy getSpeculativeExecutionPolicy() {
+        return speculativeExecutionPolicy;
+    }
 }
@@ -15,12 +15,13 @@
  */
 package com.datastax.driver.core.policies;
 
-import java.nio.ByteBuffer;
 import java.util.*;
-
-import com.google.common.collect.Lists;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import com.datastax.driver.core.*;
 
@@ -48,9 +49,13 @@ import com.datastax.driver.core.*;
  */
 public class TokenAwarePolicy implements ChainableLoadBalancingPolicy, CloseableLoadBalancingPolicy {
 
+    private static final Random RANDOM = new Random();
+
     private final LoadBalancingPolicy childPolicy;
     private final boolean shuffleReplicas;
     private Metadata clusterMetadata;
+    // Avoids quoting the keyspace on each query
+    private final ConcurrentMap<String, String> quotedKeyspaces = new ConcurrentHashMap<String, String>();
 
     /**
      * Creates a new {@code TokenAware} policy.
@@ -109,7 +114,8 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy, Closeable
      * <p>
      * The returned plan will first return replicas (whose {@code HostDistance}
      * for the child policy is {@code LOCAL}) for the query if it can determine
-     * them (i.e. mainly if {@code statement.getRoutingKey()} is not {@code null}).
+     * them (i.e. mainly if {@code statement.getRoutingToken()} or
+     * {@code statement.getRoutingKey()} is not {@code null}).
      * Following what it will return the plan of the child policy.
      *
      * @param statement the query for which to build the plan.
@@ -118,51 +124,70 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy, Closeable
     @Override
     public Iterator<Host> newQueryPlan(final String loggedKeyspace, final Statement statement) {
 
-        ByteBuffer partitionKey = statement.getRoutingKey();
         String keyspace = statement.getKeyspace();
         if (keyspace == null)
             keyspace = loggedKeyspace;
 
-        if (partitionKey == null || keyspace == null)
+        if (keyspace == null)
             return childPolicy.newQueryPlan(keyspace, statement);
 
-        final Set<Host> replicas = clusterMetadata.getReplicas(Metadata.quote(keyspace), partitionKey);
+        String quotedKeyspace = quotedKeyspaces.get(keyspace);
+        if (quotedKeyspace == null) {
+            quotedKeyspace = Metadata.quote(keyspace);
+            quotedKeyspaces.putIfAbsent(keyspace, quotedKeyspace);
+        }
+
+        // This uses the statement's routing token, or its routing key if it has none
+        Set<Host> replicas = clusterMetadata.getReplicas(quotedKeyspace, statement);
         if (replicas.isEmpty())
             return childPolicy.newQueryPlan(loggedKeyspace, statement);
 
-        final Iterator<Host> iter;
-        if (shuffleReplicas) {
-            List<Host> l = Lists.newArrayList(replicas);
-            Collections.shuffle(l);
-            iter = l.iterator();
-        } else {
-            iter = replicas.iterator();
-        }
+        // Replica sets are immutable sets shared by all queries, so this is only a view and does not copy anything
+        ImmutableList<Host> replicaList = replicas instanceof ImmutableSet
+                                        ? ((ImmutableSet<Host>)replicas).asList()
+                                        : ImmutableList.copyOf(replicas);
 
-        return new AbstractIterator<Host>() {
+        // Rather than shuffling a copy of the replicas, start at a random one and wrap around
+        int start = shuffleReplicas && replicaList.size() > 1 ? RANDOM.nextInt(replicaList.size()) : 0;
+        return new ReplicasFirstPlan(replicaList, start, loggedKeyspace, statement);
+    }
+
+    private class ReplicasFirstPlan extends AbstractIterator<Host> {
+        private final ImmutableList<Host> replicas;
+        private final int start;
+        private final String loggedKeyspace;
+        private final Statement statement;
+
+        private int index;
+        private Iterator<Host> childIterator;
 
-            private Iterator<Host> childIterator;
+        ReplicasFirstPlan(ImmutableList<Host> replicas, int start, String loggedKeyspace, Statement statement) {
+            this.replicas = replicas;
+            this.start = start;
+            this.loggedKeyspace = loggedKeyspace;
+            this.statement = statement;
+        }
 
-            @Override
-            protected Host computeNext() {
-                while (iter.hasNext()) {
-                    Host host = iter.next();
-                    if (host.isUp() && childPolicy.distance(host) == HostDistance.LOCAL)
-                        return host;
-                }
+        @Override
+        protected Host computeNext() {
+            int size = replicas.size();
+            while (index < size) {
+                Host host = replicas.get((start + index++) % size);
+                if (host.isUp() && childPolicy.distance(host) == HostDistance.LOCAL)
+                    return host;
+            }
 
-                if (childIterator == null)
-                    childIterator = childPolicy.newQueryPlan(loggedKeyspace, statement);
+            if (childIterator == null)
+                childIterator = childPolicy.newQueryPlan(loggedKeyspace, statement);
 
-                while (childIterator.hasNext()) {
-                    Host host = childIterator.next();
-                    // Skip it if it was already a local replica
-                    if (!replicas.contains(host) || childPolicy.distance(host) != HostDistance.LOCAL)
-                        return host;
-                }
-                return endOfData();
+            while (childIterator.hasNext()) {
+                Host host = childIterator.next();
+                // Skip it if it was already a local replica
+                if (!replicas.contains(host) || childPolicy.distance(host) != HostDistance.LOCAL)
+                    return host;
             }
-        };
+            return endOfData();
+        }
     }
 
     @Override
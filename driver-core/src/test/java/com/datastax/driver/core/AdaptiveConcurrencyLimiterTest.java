@@ -0,0 +1,53 @@
+package com.datastax.driver.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long BASE_LATENCY = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test(groups = "unit")
+    public void should_grow_limit_while_latency_is_stable() {
+        AdaptiveConcurrencyLimiter.Limit limit = new AdaptiveConcurrencyLimiter.Limit();
+        assertThat(limit.value).isEqualTo(AdaptiveConcurrencyLimiter.INITIAL_LIMIT);
+        limit.inFlight = AdaptiveConcurrencyLimiter.MAX_LIMIT;
+
+        for (int i = 0; i < 1000; i++)
+            limit.update(BASE_LATENCY);
+
+        assertThat(limit.value).isEqualTo(AdaptiveConcurrencyLimiter.MAX_LIMIT);
+    }
+
+    @Test(groups = "unit")
+    public void should_not_grow_limit_while_host_uses_less_than_half_of_it() {
+        AdaptiveConcurrencyLimiter.Limit limit = new AdaptiveConcurrencyLimiter.Limit();
+        limit.inFlight = AdaptiveConcurrencyLimiter.INITIAL_LIMIT / 2 - 1;
+
+        for (int i = 0; i < 1000; i++)
+            limit.update(BASE_LATENCY);
+
+        assertThat(limit.value).isEqualTo(AdaptiveConcurrencyLimiter.INITIAL_LIMIT);
+    }
+
+    @Test(groups = "unit")
+    public void should_shrink_limit_when_latency_degrades_and_recover_afterwards() {
+        AdaptiveConcurrencyLimiter.Limit limit = new AdaptiveConcurrencyLimiter.Limit();
+        limit.inFlight = AdaptiveConcurrencyLimiter.MAX_LIMIT;
+        for (int i = 0; i < 1000; i++)
+            limit.update(BASE_LATENCY);
+
+        for (int i = 0; i < 50; i++)
+            limit.update(20 * BASE_LATENCY);
+        int degraded = limit.value;
+        assertThat(degraded).isLessThan(AdaptiveConcurrencyLimiter.MAX_LIMIT / 2);
+        assertThat(degraded).isGreaterThanOrEqualTo(AdaptiveConcurrencyLimiter.MIN_LIMIT);
+
+        for (int i = 0; i < 100; i++)
+            limit.update(BASE_LATENCY);
+        assertThat(limit.value).isGreaterThan(degraded);
+    }
+}
@@ -0,0 +1,87 @@
+package com.datastax.driver.core;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.utils.CassandraVersion;
+
+@CassandraVersion(major=2.0)
+public class BatchingSessionTest extends CCMBridge.PerClassSingleNodeCluster {
+
+    @Override
+    protected Collection<String> getTableDefinitions() {
+        return Lists.newArrayList(
+            "CREATE TABLE test (k int PRIMARY KEY, v int)",
+            "CREATE TABLE counters (k int PRIMARY KEY, c counter)"
+        );
+    }
+
+    @Test(groups = "short")
+    public void should_batch_writes_and_complete_every_future() {
+        BatchingSession batching = new BatchingSession(session, 10000, 50);
+        PreparedStatement insert = batching.prepare("INSERT INTO test (k, v) VALUES (?, ?)");
+        long before = cluster.getMetrics().getRequestsTimer().getCount();
+
+        int writes = 200;
+        List<ResultSetFuture> futures = Lists.newArrayList();
+        for (int i = 0; i < writes; i++)
+            futures.add(batching.executeAsync(insert.bind(i, i)));
+        for (ResultSetFuture future : futures)
+            future.getUninterruptibly();
+
+        assertThat(cluster.getMetrics().getRequestsTimer().getCount() - before).isLessThan(writes);
+        assertThat(session.execute("SELECT count(*) FROM test").one().getLong(0)).isEqualTo(writes);
+    }
+
+    @Test(groups = "short")
+    public void should_batch_counter_updates_separately() {
+        BatchingSession batching = new BatchingSession(session, 10000, 50);
+        PreparedStatement increment = batching.prepare("UPDATE counters SET c = c + ? WHERE k = ?");
+
+        List<ResultSetFuture> futures = Lists.newArrayList();
+        for (int i = 0; i < 10; i++)
+            futures.add(batching.executeAsync(increment.bind(1L, i)));
+        for (ResultSetFuture future : futures)
+            future.getUninterruptibly();
+
+        for (int i = 0; i < 10; i++)
+            assertThat(session.execute("SELECT c FROM counters WHERE k = " + i).one().getLong("c")).isEqualTo(1L);
+    }
+
+    @Test(groups = "short")
+    public void should_not_mix_literal_counter_updates_with_other_writes() {
+        BatchingSession batching = new BatchingSession(session, 10000, 50);
+        PreparedStatement increment = batching.prepare("UPDATE counters SET c = c + 1 WHERE k = ?");
+        PreparedStatement insert = batching.prepare("INSERT INTO test (k, v) VALUES (?, ?)");
+
+        List<ResultSetFuture> futures = Lists.newArrayList();
+        for (int i = 100; i < 110; i++) {
+            futures.add(batching.executeAsync(increment.bind(i)));
+            futures.add(batching.executeAsync(insert.bind(i, i)));
+        }
+        for (ResultSetFuture future : futures)
+            future.getUninterruptibly();
+
+        for (int i = 100; i < 110; i++)
+            assertThat(session.execute("SELECT c FROM counters WHERE k = " + i).one().getLong("c")).isEqualTo(1L);
+    }
+
+    @Test(groups = "short")
+    public void should_send_writes_to_the_same_partition_in_different_batches() {
+        BatchingSession batching = new BatchingSession(session, 10000, 50);
+        PreparedStatement insert = batching.prepare("INSERT INTO test (k, v) VALUES (?, ?)");
+        long before = cluster.getMetrics().getRequestsTimer().getCount();
+
+        ResultSetFuture first = batching.executeAsync(insert.bind(200, 1));
+        ResultSetFuture second = batching.executeAsync(insert.bind(200, 2));
+        first.getUninterruptibly();
+        second.getUninterruptibly();
+
+        assertThat(cluster.getMetrics().getRequestsTimer().getCount() - before).isEqualTo(2);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventDebouncerTest {
+
+    private ScheduledExecutorService scheduler;
+    private List<List<Integer>> deliveries;
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        deliveries = new CopyOnWriteArrayList<List<Integer>>();
+    }
+
+    @AfterMethod(groups = "unit")
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private EventDebouncer<Integer> debouncer(final int windowMillis, final int maxPendingEvents) {
+        return new EventDebouncer<Integer>("test", scheduler, MoreExecutors.sameThreadExecutor()) {
+            @Override
+            int windowMillis() {
+                return windowMillis;
+            }
+
+            @Override
+            int maxPendingEvents() {
+                return maxPendingEvents;
+            }
+
+            @Override
+            void deliver(List<Integer> events) {
+                deliveries.add(events);
+            }
+        };
+    }
+
+    @Test(groups = "unit")
+    public void should_deliver_events_in_bulk_at_the_end_of_the_window() throws InterruptedException {
+        EventDebouncer<Integer> debouncer = debouncer(200, 100);
+        for (int i = 0; i < 10; i++)
+            debouncer.eventReceived(i);
+        assertThat(deliveries).isEmpty();
+
+        TimeUnit.MILLISECONDS.sleep(1000);
+        assertThat(deliveries).hasSize(1);
+        assertThat(deliveries.get(0)).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    @Test(groups = "unit")
+    public void should_deliver_right_away_when_too_many_events_are_pending() {
+        EventDebouncer<Integer> debouncer = debouncer(60000, 5);
+        for (int i = 0; i < 12; i++)
+            debouncer.eventReceived(i);
+
+        assertThat(deliveries).hasSize(2);
+        assertThat(deliveries.get(0)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(deliveries.get(1)).containsExactly(5, 6, 7, 8, 9);
+    }
+
+    @Test(groups = "unit")
+    public void should_deliver_each_event_when_window_is_zero() {
+        EventDebouncer<Integer> debouncer = debouncer(0, 100);
+        debouncer.eventReceived(1);
+        debouncer.eventReceived(2);
+
+        assertThat(deliveries).hasSize(2);
+    }
+
+    @Test(groups = "unit")
+    public void should_coalesce_schema_refresh_requests_per_keyspace() {
+        SchemaRefreshRequest t1 = new SchemaRefreshRequest("ks1", "t1", null);
+        SchemaRefreshRequest t2 = new SchemaRefreshRequest("ks1", "t2", null);
+        SchemaRefreshRequest other = new SchemaRefreshRequest("ks2", null, "address");
+
+        assertThat(SchemaRefreshRequest.coalesce(Lists.newArrayList(t1, t1, other, other)))
+            .containsExactly(t1, other);
+        assertThat(SchemaRefreshRequest.coalesce(Lists.newArrayList(t1, other, t2)))
+            .containsExactly(new SchemaRefreshRequest("ks1", null, null), other);
+        assertThat(SchemaRefreshRequest.coalesce(Lists.newArrayList(t1, new SchemaRefreshRequest(null, null, null), t2)))
+            .containsExactly(new SchemaRefreshRequest(null, null, null));
+    }
+}
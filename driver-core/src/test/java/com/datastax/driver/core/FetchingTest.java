@@ -68,4 +68,42 @@ public class FetchingTest extends CCMBridge.PerClassSingleNodeCluster {
             throw e;
         }
     }
+
+    @Test(groups = "short")
+    public void should_prefetch_next_page_when_below_threshold() throws Throwable {
+
+        try {
+
+            String key = "prefetch_test";
+            for (int i = 0; i < 20; i++)
+                session.execute(String.format("INSERT INTO test (k, v) VALUES ('%s', %d)", key, i));
+
+            SimpleStatement st = new SimpleStatement(String.format("SELECT v FROM test WHERE k='%s'", key));
+            st.setFetchSize(10);
+            st.setPrefetchThreshold(5);
+            ResultSet rs = session.execute(st);
+
+            // Consume enough rows to go under the threshold, the second page should then be fetched
+            // in the background
+            for (int i = 0; i < 6; i++)
+                assertEquals(rs.one().getInt(0), i);
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (rs.getAvailableWithoutFetching() <= 4 && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(rs.getAvailableWithoutFetching(), 14);
+
+            for (int i = 6; i < 20; i++)
+                assertEquals(rs.one().getInt(0), i);
+            assertTrue(rs.isExhausted());
+
+        } catch (UnsupportedFeatureException e) {
+            // This is expected when testing the protocol v1
+            if (cluster.getConfiguration().getProtocolOptions().getProtocolVersionEnum() != ProtocolVersion.V1)
+                throw e;
+        } catch (Throwable e) {
+            errorOut();
+            throw e;
+        }
+    }
 }
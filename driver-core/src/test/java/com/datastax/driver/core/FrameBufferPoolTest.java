@@ -0,0 +1,74 @@
+package com.datastax.driver.core;
+
+import java.util.EnumSet;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrameBufferPoolTest {
+
+    @Test(groups = "unit")
+    public void should_reuse_released_buffers() {
+        FrameBufferPool pool = new FrameBufferPool(1024, 2);
+
+        ChannelBuffer buffer = pool.acquire(100);
+        assertThat(buffer.isDirect()).isTrue();
+        assertThat(buffer.capacity()).isEqualTo(1024);
+
+        buffer.writeInt(42);
+        pool.release(buffer);
+        assertThat(pool.pooledCount()).isEqualTo(1);
+
+        ChannelBuffer reused = pool.acquire(100);
+        assertThat(reused).isSameAs(buffer);
+        assertThat(reused.readableBytes()).isEqualTo(0);
+        assertThat(pool.pooledCount()).isEqualTo(0);
+    }
+
+    @Test(groups = "unit")
+    public void should_not_pool_oversized_buffers() {
+        FrameBufferPool pool = new FrameBufferPool(1024, 2);
+
+        ChannelBuffer buffer = pool.acquire(2048);
+        assertThat(buffer.isDirect()).isFalse();
+        assertThat(buffer.capacity()).isEqualTo(2048);
+
+        pool.release(buffer);
+        assertThat(pool.pooledCount()).isEqualTo(0);
+    }
+
+    @Test(groups = "unit")
+    public void should_not_exceed_max_pooled_buffers() {
+        FrameBufferPool pool = new FrameBufferPool(1024, 2);
+
+        ChannelBuffer b1 = pool.acquire(10), b2 = pool.acquire(10), b3 = pool.acquire(10);
+        pool.release(b1);
+        pool.release(b2);
+        pool.release(b3);
+        assertThat(pool.pooledCount()).isEqualTo(2);
+    }
+
+    @Test(groups = "unit")
+    public void should_write_header_in_place() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(1024, 2);
+        int headerLength = Frame.Header.lengthFor(ProtocolVersion.V3);
+
+        ChannelBuffer buffer = pool.acquire(headerLength + 4);
+        buffer.writerIndex(headerLength);
+        buffer.writeInt(42);
+        Frame frame = Frame.createWithHeaderRoom(ProtocolVersion.V3, Message.Request.Type.OPTIONS.opcode, 12,
+                                                 EnumSet.noneOf(Frame.Header.Flag.class), buffer);
+        assertThat(frame.body.readableBytes()).isEqualTo(4);
+
+        ChannelBuffer encoded = (ChannelBuffer)new Frame.Encoder().encode(null, null, frame);
+        assertThat(encoded).isSameAs(buffer);
+        assertThat(encoded.readableBytes()).isEqualTo(headerLength + 4);
+        assertThat(encoded.getByte(0)).isEqualTo((byte)3);
+        assertThat(encoded.getShort(2)).isEqualTo((short)12);
+        assertThat(encoded.getByte(4)).isEqualTo((byte)Message.Request.Type.OPTIONS.opcode);
+        assertThat(encoded.getInt(5)).isEqualTo(4);
+        assertThat(encoded.getInt(9)).isEqualTo(42);
+    }
+}
@@ -0,0 +1,59 @@
+package com.datastax.driver.core;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InFlightReadDeduplicationTest extends CCMBridge.PerClassSingleNodeCluster {
+
+    @Override
+    protected Collection<String> getTableDefinitions() {
+        return Lists.newArrayList(
+            "CREATE TABLE test (k int PRIMARY KEY, v int)",
+            "INSERT INTO test (k, v) VALUES (1, 1)",
+            "INSERT INTO test (k, v) VALUES (2, 2)"
+        );
+    }
+
+    @Override
+    protected Cluster.Builder configure(Cluster.Builder builder) {
+        return builder.withQueryOptions(new QueryOptions().setInFlightReadDeduplicationEnabled(true));
+    }
+
+    @Test(groups = "short")
+    public void should_share_identical_idempotent_reads() {
+        PreparedStatement ps = session.prepare("SELECT v FROM test WHERE k = ?");
+        long before = cluster.getMetrics().getRequestsTimer().getCount();
+
+        int requests = 100;
+        List<ResultSetFuture> futures = Lists.newArrayList();
+        for (int i = 0; i < requests; i++)
+            futures.add(session.executeAsync(ps.bind(i % 2 + 1).setIdempotent(true)));
+
+        for (int i = 0; i < requests; i++)
+            assertThat(futures.get(i).getUninterruptibly().one().getInt("v")).isEqualTo(i % 2 + 1);
+
+        assertThat(cluster.getMetrics().getRequestsTimer().getCount() - before).isLessThan(requests);
+        assertThat(((SessionManager)session).singleFlightReads.inFlightCount()).isEqualTo(0);
+    }
+
+    @Test(groups = "short")
+    public void should_not_share_non_idempotent_reads() {
+        PreparedStatement ps = session.prepare("SELECT v FROM test WHERE k = ?");
+        long before = cluster.getMetrics().getRequestsTimer().getCount();
+
+        int requests = 20;
+        List<ResultSetFuture> futures = Lists.newArrayList();
+        for (int i = 0; i < requests; i++)
+            futures.add(session.executeAsync(ps.bind(1)));
+
+        for (ResultSetFuture future : futures)
+            assertThat(future.getUninterruptibly().one().getInt("v")).isEqualTo(1);
+
+        assertThat(cluster.getMetrics().getRequestsTimer().getCount() - before).isEqualTo(requests);
+    }
+}
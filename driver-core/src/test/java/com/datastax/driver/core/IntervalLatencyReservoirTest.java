@@ -0,0 +1,73 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Snapshot;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntervalLatencyReservoirTest {
+
+    @Test(groups = "unit")
+    public void should_report_values_of_last_complete_interval() throws InterruptedException {
+        IntervalLatencyReservoir reservoir = new IntervalLatencyReservoir(200, TimeUnit.MILLISECONDS, 4);
+        reservoir.update(10);
+        reservoir.update(20);
+        // The first interval is not over yet
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(0);
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        reservoir.update(30);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.getMin()).isEqualTo(10);
+        assertThat(snapshot.getMax()).isEqualTo(20);
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.getMax()).isEqualTo(30);
+    }
+
+    @Test(groups = "unit")
+    public void should_merge_values_recorded_by_concurrent_threads() throws InterruptedException {
+        final IntervalLatencyReservoir reservoir = new IntervalLatencyReservoir(1, TimeUnit.SECONDS, 4);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++)
+                        reservoir.update(j);
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        TimeUnit.MILLISECONDS.sleep(1200);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(80000);
+        assertThat(snapshot.getMin()).isEqualTo(0);
+    }
+}
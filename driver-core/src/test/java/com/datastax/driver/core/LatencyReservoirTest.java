@@ -0,0 +1,65 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.codahale.metrics.Snapshot;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class LatencyReservoirTest {
+
+    @Test(groups = "unit")
+    public void should_map_values_to_contiguous_buckets() {
+        assertThat(LatencyReservoir.bucket(-1)).isEqualTo(0);
+        assertThat(LatencyReservoir.bucket(LatencyReservoir.MAX_VALUE)).isEqualTo(LatencyReservoir.BUCKET_COUNT - 1);
+        assertThat(LatencyReservoir.bucket(Long.MAX_VALUE)).isEqualTo(LatencyReservoir.BUCKET_COUNT - 1);
+
+        for (int i = 0; i < LatencyReservoir.BUCKET_COUNT; i++) {
+            long lower = LatencyReservoir.lowerBound(i);
+            assertThat(LatencyReservoir.bucket(lower)).isEqualTo(i);
+            assertThat(LatencyReservoir.bucket(LatencyReservoir.value(i))).isEqualTo(i);
+            if (i > 0)
+                assertThat(LatencyReservoir.bucket(lower - 1)).isEqualTo(i - 1);
+        }
+    }
+
+    @Test(groups = "unit")
+    public void should_report_percentiles_within_precision() {
+        LatencyReservoir reservoir = new LatencyReservoir();
+        // 1 to 1000 microseconds
+        for (long i = 1; i <= 1000; i++)
+            reservoir.update(i * 1000);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(1000);
+        assertThat((double)snapshot.getMin()).isEqualTo(1000, offset(1000 * 0.03));
+        assertThat((double)snapshot.getMax()).isEqualTo(1000000, offset(1000000 * 0.03));
+        assertThat(snapshot.getMedian()).isEqualTo(500000, offset(500000 * 0.03));
+        assertThat(snapshot.get99thPercentile()).isEqualTo(990000, offset(990000 * 0.03));
+        assertThat(snapshot.getMean()).isEqualTo(500500, offset(500500 * 0.03));
+        assertThat(snapshot.getValues()).hasSize(1000);
+    }
+
+    @Test(groups = "unit")
+    public void should_report_zeros_when_empty() {
+        Snapshot snapshot = new LatencyReservoir().getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(0);
+        assertThat(snapshot.getMax()).isEqualTo(0);
+        assertThat(snapshot.get99thPercentile()).isEqualTo(0.0);
+    }
+}
@@ -0,0 +1,63 @@
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazyRowsTest {
+
+    @Test(groups = "unit")
+    public void should_read_rows_on_demand() {
+        ChannelBuffer body = ChannelBuffers.dynamicBuffer();
+        // Some bytes that precede the rows in the frame
+        body.writeInt(0xCAFE);
+        // 3 rows x 2 columns
+        CBUtil.writeValue(new byte[]{ 1 }, body);
+        CBUtil.writeValue((byte[])null, body);
+        CBUtil.writeValue(new byte[]{ 2, 2 }, body);
+        CBUtil.writeValue(new byte[0], body);
+        CBUtil.writeValue(new byte[]{ 3, 3, 3 }, body);
+        CBUtil.writeValue(new byte[]{ 4 }, body);
+        body.readInt();
+
+        LazyRows rows = LazyRows.decode(body, 3, 2);
+        assertThat(rows.size()).isEqualTo(3);
+
+        List<ByteBuffer> first = rows.peek();
+        assertThat(first.size()).isEqualTo(2);
+        assertThat(first.get(0)).isEqualTo(ByteBuffer.wrap(new byte[]{ 1 }));
+        assertThat(first.get(1)).isNull();
+        assertThat(rows.size()).isEqualTo(3);
+
+        // Iterating does not consume rows
+        int count = 0;
+        for (List<ByteBuffer> row : rows)
+            count += 1;
+        assertThat(count).isEqualTo(3);
+
+        assertThat(rows.poll().get(0)).isEqualTo(ByteBuffer.wrap(new byte[]{ 1 }));
+        List<ByteBuffer> second = rows.poll();
+        List<ByteBuffer> third = rows.poll();
+        assertThat(rows.poll()).isNull();
+        assertThat(rows.isEmpty()).isTrue();
+
+        // Rows stay valid after being polled
+        assertThat(second.get(0)).isEqualTo(ByteBuffer.wrap(new byte[]{ 2, 2 }));
+        assertThat(second.get(1).remaining()).isEqualTo(0);
+        assertThat(third.get(0)).isEqualTo(ByteBuffer.wrap(new byte[]{ 3, 3, 3 }));
+        assertThat(third.get(1)).isEqualTo(ByteBuffer.wrap(new byte[]{ 4 }));
+    }
+
+    @Test(groups = "unit", expectedExceptions = IndexOutOfBoundsException.class)
+    public void should_fail_on_out_of_range_column() {
+        ChannelBuffer body = ChannelBuffers.dynamicBuffer();
+        CBUtil.writeValue(new byte[]{ 1 }, body);
+
+        LazyRows.decode(body, 1, 1).poll().get(1);
+    }
+}
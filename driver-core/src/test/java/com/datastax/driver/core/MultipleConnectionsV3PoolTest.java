@@ -0,0 +1,68 @@
+package com.datastax.driver.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import org.testng.collections.Lists;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.utils.CassandraVersion;
+
+@CassandraVersion(major=2.1)
+public class MultipleConnectionsV3PoolTest extends CCMBridge.PerClassSingleNodeCluster {
+    @Override
+    protected Collection<String> getTableDefinitions() {
+        return Lists.newArrayList();
+    }
+
+    @Override
+    protected Cluster.Builder configure(Cluster.Builder builder) {
+        return builder.withPoolingOptions(new PoolingOptions()
+            .setMaxConnectionsPerHostV3(HostDistance.LOCAL, 3)
+            .setCoreConnectionsPerHostV3(HostDistance.LOCAL, 2)
+            .setNewConnectionThreshold(HostDistance.LOCAL, 10));
+    }
+
+    @Test(groups = "short")
+    public void should_open_core_connections_and_spread_requests() throws Exception {
+        Host host = cluster.getMetadata().getAllHosts().iterator().next();
+        HostConnectionPool pool = ((SessionManager)session).pools.get(host);
+
+        assertThat(pool).isInstanceOf(DynamicConnectionPool.class);
+        assertThat(session.getState().getOpenConnections(host)).isEqualTo(2);
+
+        // The least busy connection is picked, so two borrows with nothing else in flight use distinct connections
+        PooledConnection c1 = null, c2 = null;
+        try {
+            c1 = pool.borrowConnection(100, MILLISECONDS);
+            c2 = pool.borrowConnection(100, MILLISECONDS);
+            assertThat(c1).isNotSameAs(c2);
+        } finally {
+            if (c1 != null)
+                pool.returnConnection(c1);
+            if (c2 != null)
+                pool.returnConnection(c2);
+        }
+    }
+
+    @Test(groups = "short")
+    public void should_grow_up_to_max_connections_under_load() {
+        Host host = cluster.getMetadata().getAllHosts().iterator().next();
+
+        // Connections are opened in the background, so keep the load up until the pool has grown
+        for (int round = 0; round < 10 && session.getState().getOpenConnections(host) <= 2; round++) {
+            List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+            for (int i = 0; i < 1000; i++)
+                futures.add(session.executeAsync("SELECT release_version FROM system.local"));
+            for (ResultSetFuture future : futures)
+                future.getUninterruptibly();
+        }
+
+        assertThat(session.getState().getOpenConnections(host)).isGreaterThan(2);
+        assertThat(session.getState().getOpenConnections(host)).isLessThanOrEqualTo(3);
+    }
+}
@@ -0,0 +1,75 @@
+package com.datastax.driver.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.scassandra.Scassandra;
+import org.scassandra.http.client.PrimingRequest;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+
+public class PendingRequestQueueTest {
+
+    @Test(groups = "short")
+    public void should_park_requests_without_blocking_and_reject_when_queue_is_full() {
+        Scassandra scassandra = TestUtils.createScassandraServer();
+        Cluster cluster = null;
+
+        try {
+            // Use a mock server that takes a long time to reply, so that the pool gets saturated
+            scassandra.start();
+            scassandra.primingClient().prime(
+                PrimingRequest.queryBuilder()
+                    .withQuery("mock query")
+                    .withRows(ImmutableMap.of("key", 1))
+                    .withFixedDelay(2000)
+                    .build()
+            );
+
+            // Stick to V2 so that the pool's capacity is known (a single connection with 128 streams)
+            cluster = Cluster.builder().addContactPoint("127.0.0.1").withPort(scassandra.getBinaryPort())
+                .withProtocolVersion(ProtocolVersion.V2)
+                .withPoolingOptions(new PoolingOptions()
+                    .setCoreConnectionsPerHost(HostDistance.LOCAL, 1)
+                    .setMaxConnectionsPerHost(HostDistance.LOCAL, 1)
+                    .setMaxQueueSize(10)
+                    .setPoolTimeoutMillis(10000)
+                    .setHeartbeatIntervalSeconds(0))
+                .withSocketOptions(new SocketOptions().setReadTimeoutMillis(20000))
+                .build();
+
+            Session session = cluster.connect();
+
+            // Anything above 128 in flight plus 10 pending requests must fail fast
+            int requests = 200;
+            List<ResultSetFuture> futures = Lists.newArrayList();
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++)
+                futures.add(session.executeAsync("mock query"));
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertThat(elapsedMs).isLessThan(2000);
+
+            int succeeded = 0, rejected = 0;
+            for (ResultSetFuture future : futures) {
+                try {
+                    future.getUninterruptibly();
+                    succeeded++;
+                } catch (NoHostAvailableException e) {
+                    rejected++;
+                }
+            }
+            assertThat(succeeded).isGreaterThanOrEqualTo(128 + 10);
+            assertThat(rejected).isGreaterThan(0);
+            assertThat(succeeded + rejected).isEqualTo(requests);
+        } finally {
+            if (cluster != null)
+                cluster.close();
+            scassandra.stop();
+        }
+    }
+}
@@ -14,6 +14,25 @@ import static com.datastax.driver.core.Assertions.assertThat;
 
 public class PoolingOptionsTest {
 
+    @Test(groups = "unit")
+    public void should_default_to_single_connection_per_host_with_v3() {
+        PoolingOptions options = new PoolingOptions();
+        assertThat(options.getCoreConnectionsPerHostV3(HostDistance.LOCAL)).isEqualTo(1);
+        assertThat(options.getMaxConnectionsPerHostV3(HostDistance.LOCAL)).isEqualTo(1);
+        assertThat(options.getCoreConnectionsPerHostV3(HostDistance.REMOTE)).isEqualTo(1);
+        assertThat(options.getMaxConnectionsPerHostV3(HostDistance.REMOTE)).isEqualTo(1);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void should_reject_v3_core_connections_above_max() {
+        new PoolingOptions().setCoreConnectionsPerHostV3(HostDistance.LOCAL, 2);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void should_reject_out_of_range_new_connection_threshold() {
+        new PoolingOptions().setNewConnectionThreshold(HostDistance.LOCAL, 0);
+    }
+
     /**
      * Tests {@link PoolingOptions#refreshConnectedHost(Host)} through a custom load balancing policy.
      */
@@ -0,0 +1,59 @@
+package com.datastax.driver.core;
+
+import java.util.Collection;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+
+public class PreparedStatementCacheTest extends CCMBridge.PerClassSingleNodeCluster {
+
+    @Override
+    protected Collection<String> getTableDefinitions() {
+        return Lists.newArrayList("CREATE TABLE test (k int PRIMARY KEY, v int)");
+    }
+
+    @Override
+    protected Cluster.Builder configure(Cluster.Builder builder) {
+        return builder.withQueryOptions(new QueryOptions().setPreparedStatementCacheSize(100));
+    }
+
+    @Test(groups = "short")
+    public void should_share_concurrent_preparations_of_the_same_query() throws Exception {
+        String query = "SELECT v FROM test WHERE k = ?";
+        ListenableFuture<PreparedStatement> first = session.prepareAsync(query);
+        ListenableFuture<PreparedStatement> second = session.prepareAsync(query);
+
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(session.prepare(query)).isSameAs(first.get());
+    }
+
+    @Test(groups = "short")
+    public void should_not_share_cancellation_of_a_preparation() throws Exception {
+        String query = "SELECT k FROM test WHERE k = ?";
+        ListenableFuture<PreparedStatement> cancelled = session.prepareAsync(query);
+        ListenableFuture<PreparedStatement> other = session.prepareAsync(query);
+        // This may come too late if the query is already prepared, which is fine: all that matters is what follows
+        cancelled.cancel(true);
+
+        assertThat(other.get()).isNotNull();
+        assertThat(session.prepare(query)).isSameAs(other.get());
+    }
+
+    @Test(groups = "short")
+    public void should_not_cache_failed_preparations() {
+        String query = "SELECT v FROM test_not_created_yet WHERE k = ?";
+        try {
+            session.prepare(query);
+        } catch (InvalidQueryException e) {
+            // expected
+        }
+
+        session.execute("CREATE TABLE test_not_created_yet (k int PRIMARY KEY, v int)");
+        assertThat(session.prepare(query)).isNotNull();
+    }
+}
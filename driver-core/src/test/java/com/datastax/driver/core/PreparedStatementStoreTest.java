@@ -0,0 +1,52 @@
+package com.datastax.driver.core;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PreparedStatementStoreTest {
+
+    private static PreparedStatement statement(String keyspace, String query, int id) {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.getQueryKeyspace()).thenReturn(keyspace);
+        when(statement.getQueryString()).thenReturn(query);
+        when(statement.getPreparedId()).thenReturn(new PreparedId(MD5Digest.wrap(new byte[]{ (byte)id }), null, null, null, ProtocolVersion.V2));
+        return statement;
+    }
+
+    @Test(groups = "unit")
+    public void should_persist_statements_across_restarts() throws IOException {
+        File file = File.createTempFile("prepared", ".txt");
+        file.delete();
+        try {
+            PreparedStatementStore store = PreparedStatementStore.open(file, MoreExecutors.sameThreadExecutor());
+            assertThat(store.queries(null)).isEmpty();
+
+            store.add(statement("ks", "SELECT * FROM t WHERE k = ?", 1));
+            store.add(statement("ks", "SELECT * FROM t WHERE k = ?", 1));
+            store.add(statement(null, "SELECT *\n\tFROM ks.t", 2));
+            // Same query, new id (the table was altered)
+            store.add(statement("ks", "SELECT * FROM t WHERE k = ?", 3));
+            store.close();
+
+            store = PreparedStatementStore.open(file, MoreExecutors.sameThreadExecutor());
+            assertThat(store.queries("ks")).containsExactly("SELECT * FROM t WHERE k = ?");
+            assertThat(store.queries(null)).containsExactly("SELECT *\n\tFROM ks.t");
+            assertThat(store.queries("other")).isEmpty();
+            store.close();
+
+            // The file was rewritten without duplicates
+            assertThat(Files.readLines(file, Charsets.UTF_8)).hasSize(2);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.datastax.driver.core;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import org.testng.annotations.Test;
@@ -334,6 +335,25 @@ public class PreparedStatementTest extends CCMBridge.PerClassSingleNodeCluster {
         reprepareOnNewlyUpNodeTest(keyspace, cluster.connect());
     }
 
+    @Test(groups = "long")
+    public void reprepareManyQueriesOnNewlyUpNodeTest() throws Exception {
+        // More queries than there are streams on a V2 connection, to check that re-preparation is windowed
+        int count = 500;
+        session.execute("INSERT INTO test (k, i) VALUES ('125', 19)");
+        List<PreparedStatement> statements = new ArrayList<PreparedStatement>(count);
+        for (int i = 1; i <= count; i++)
+            statements.add(session.prepare("SELECT i FROM test WHERE k = ? LIMIT " + i));
+
+        ccmBridge.stop();
+        waitForDown(CCMBridge.IP_PREFIX + '1', cluster);
+
+        ccmBridge.start();
+        waitFor(CCMBridge.IP_PREFIX + '1', cluster, 120);
+
+        for (PreparedStatement ps : statements)
+            assertEquals(session.execute(ps.bind("125")).one().getInt("i"), 19);
+    }
+
     @Test(groups = "short")
     public void prepareWithNullValuesTest() throws Exception {
 
@@ -452,4 +472,34 @@ public class PreparedStatementTest extends CCMBridge.PerClassSingleNodeCluster {
         BoundStatement bs = ps.bind(1);
         assertThat(bs.getRoutingKey()).isNotNull();
     }
+
+    @Test(groups="short")
+    public void should_memoize_routing_key_and_token_until_partition_key_changes() {
+        session.execute(String.format("CREATE TABLE %s.composite (a int, b int, c int, PRIMARY KEY ((a, b), c))", keyspace));
+        Token.Factory factory = cluster.getMetadata().tokenFactory();
+
+        PreparedStatement ps = session.prepare(String.format("INSERT INTO %s.composite (a, b, c) VALUES (?, ?, ?)", keyspace));
+        BoundStatement bs = ps.bind(1, 2, 3);
+
+        ByteBuffer routingKey = bs.getRoutingKey();
+        Token token = bs.routingToken(factory);
+        assertThat(bs.getRoutingKey()).isSameAs(routingKey);
+        assertThat(bs.routingToken(factory)).isSameAs(token);
+        assertThat(token).isEqualTo(factory.hash(routingKey));
+
+        // Changing a clustering column does not change the routing key
+        bs.setInt("c", 4);
+        assertThat(bs.getRoutingKey()).isSameAs(routingKey);
+
+        // Changing a partition key component does
+        bs.setInt("b", 5);
+        assertThat(bs.getRoutingKey()).isNotSameAs(routingKey);
+        assertThat(bs.routingToken(factory)).isEqualTo(factory.hash(bs.getRoutingKey()));
+
+        // An explicit routing token takes precedence
+        Token explicit = factory.hash(routingKey);
+        bs.setRoutingToken(explicit);
+        assertThat(bs.routingToken(factory)).isSameAs(explicit);
+        assertThat(cluster.getMetadata().getReplicas(keyspace, bs)).isEqualTo(cluster.getMetadata().getReplicas(keyspace, routingKey));
+    }
 }
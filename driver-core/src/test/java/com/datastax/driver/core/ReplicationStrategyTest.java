@@ -79,4 +79,22 @@ public class ReplicationStrategyTest {
 
         assertNull(strategy);
     }
+
+    @Test(groups = "unit")
+    public void strategiesWithSameSettingsShouldBeEqualTest() throws Exception {
+        ReplicationStrategy simple1 = ReplicationStrategy.create(ImmutableMap.of("class", "SimpleStrategy", "replication_factor", "3"));
+        ReplicationStrategy simple2 = ReplicationStrategy.create(ImmutableMap.of("class", "org.apache.cassandra.locator.SimpleStrategy", "replication_factor", "3"));
+        ReplicationStrategy simple3 = ReplicationStrategy.create(ImmutableMap.of("class", "SimpleStrategy", "replication_factor", "2"));
+        assertEquals(simple1, simple2);
+        assertEquals(simple1.hashCode(), simple2.hashCode());
+        assertNotEquals(simple1, simple3);
+
+        ReplicationStrategy nts1 = ReplicationStrategy.create(ImmutableMap.of("class", "NetworkTopologyStrategy", "dc1", "3", "dc2", "2"));
+        ReplicationStrategy nts2 = ReplicationStrategy.create(ImmutableMap.of("class", "NetworkTopologyStrategy", "dc2", "2", "dc1", "3"));
+        ReplicationStrategy nts3 = ReplicationStrategy.create(ImmutableMap.of("class", "NetworkTopologyStrategy", "dc1", "3"));
+        assertEquals(nts1, nts2);
+        assertEquals(nts1.hashCode(), nts2.hashCode());
+        assertNotEquals(nts1, nts3);
+        assertNotEquals(simple1, nts3);
+    }
 }
@@ -0,0 +1,44 @@
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestCopyTest {
+
+    @Test(groups = "unit")
+    public void should_copy_request_with_its_own_stream_id() {
+        Requests.QueryProtocolOptions options = new Requests.QueryProtocolOptions(ConsistencyLevel.QUORUM,
+            Collections.<ByteBuffer>emptyList(), false, 100, null, ConsistencyLevel.SERIAL, Long.MIN_VALUE);
+        Requests.Query query = new Requests.Query("SELECT * FROM foo", options);
+        query.setTracingRequested();
+        query.setStreamId(1);
+
+        Requests.Query copy = (Requests.Query)query.copy();
+        copy.setStreamId(2);
+
+        assertThat(copy).isNotSameAs(query);
+        assertThat(copy.query).isEqualTo(query.query);
+        assertThat(copy.options).isSameAs(query.options);
+        assertThat(copy.isTracingRequested()).isTrue();
+        assertThat(query.getStreamId()).isEqualTo(1);
+    }
+
+    @Test(groups = "unit")
+    public void should_copy_every_request_sent_by_request_handler() {
+        Requests.Execute execute = new Requests.Execute(MD5Digest.wrap(new byte[16]), Requests.QueryProtocolOptions.DEFAULT);
+        assertThat(execute.copy()).isInstanceOf(Requests.Execute.class).isNotSameAs(execute);
+
+        Requests.Batch batch = new Requests.Batch(BatchStatement.Type.UNLOGGED, Collections.<Object>emptyList(),
+            Collections.<List<ByteBuffer>>emptyList(),
+            new Requests.BatchProtocolOptions(ConsistencyLevel.ONE, ConsistencyLevel.SERIAL, Long.MIN_VALUE));
+        assertThat(batch.copy()).isInstanceOf(Requests.Batch.class).isNotSameAs(batch);
+
+        Requests.Prepare prepare = new Requests.Prepare("SELECT * FROM foo");
+        assertThat(prepare.copy()).isInstanceOf(Requests.Prepare.class).isNotSameAs(prepare);
+    }
+}
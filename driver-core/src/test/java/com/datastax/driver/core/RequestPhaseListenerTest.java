@@ -0,0 +1,68 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.Sets;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestPhaseListenerTest extends CCMBridge.PerClassSingleNodeCluster {
+
+    @Override
+    protected Collection<String> getTableDefinitions() {
+        return Collections.singletonList("CREATE TABLE test (k int PRIMARY KEY, v int)");
+    }
+
+    @Override
+    protected Cluster.Builder configure(Cluster.Builder builder) {
+        return builder.withMetricsOptions(new MetricsOptions().setRequestPhaseTimersEnabled(true));
+    }
+
+    @Test(groups = "short")
+    public void should_report_each_phase_of_a_request() {
+        final Set<RequestPhase> phases = Sets.newSetFromMap(new ConcurrentHashMap<RequestPhase, Boolean>());
+        // Don't assert in the listener, it runs on driver threads
+        final AtomicBoolean unexpected = new AtomicBoolean();
+        RequestPhaseListener listener = new RequestPhaseListener() {
+            @Override
+            public void onPhase(Host host, RequestPhase phase, long durationNanos) {
+                if (durationNanos < 0 || (host == null) != (phase == RequestPhase.QUERY_PLAN))
+                    unexpected.set(true);
+                phases.add(phase);
+            }
+        };
+        cluster.register(listener);
+        try {
+            for (int i = 0; i < 10; i++)
+                session.execute(String.format("INSERT INTO test (k, v) VALUES (%d, %d)", i, i));
+        } finally {
+            cluster.unregister(listener);
+        }
+
+        assertThat(unexpected.get()).isFalse();
+        assertThat(phases).isEqualTo(EnumSet.allOf(RequestPhase.class));
+        for (RequestPhase phase : RequestPhase.values())
+            assertThat(cluster.getMetrics().getRequestPhaseTimers().get(phase).getCount()).isGreaterThan(0);
+    }
+}
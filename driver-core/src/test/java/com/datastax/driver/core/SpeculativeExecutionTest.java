@@ -0,0 +1,194 @@
+package com.datastax.driver.core;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.scassandra.Scassandra;
+import org.scassandra.ScassandraFactory;
+import org.scassandra.http.client.ColumnTypes;
+import org.scassandra.http.client.PrimingRequest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+
+/**
+ * Runs requests against two mock nodes: a slow one, always tried first, and a fast one.
+ */
+public class SpeculativeExecutionTest {
+
+    private static final String SLOW_ADDRESS = "127.0.0.1";
+    private static final String FAST_ADDRESS = "127.0.0.2";
+    private static final int SLOW_DELAY_MS = 2000;
+    private static final int SPECULATIVE_DELAY_MS = 100;
+
+    private Scassandra slow;
+    private Scassandra fast;
+    private Cluster cluster;
+    private Session session;
+    private Host slowHost;
+    private Host fastHost;
+
+    @BeforeMethod(groups = "short")
+    public void setup() {
+        // Both nodes must listen on the same port, since the driver uses a single port for all hosts
+        int port = TestUtils.findAvailablePort(8042);
+        slow = ScassandraFactory.createServer(SLOW_ADDRESS, port, SLOW_ADDRESS, TestUtils.findAvailablePort(8052));
+        slow.start();
+        fast = ScassandraFactory.createServer(FAST_ADDRESS, port, FAST_ADDRESS, TestUtils.findAvailablePort(8052));
+        fast.start();
+
+        primePeer(slow, FAST_ADDRESS);
+        primePeer(fast, SLOW_ADDRESS);
+        slow.primingClient().prime(PrimingRequest.queryBuilder()
+            .withQuery("mock query")
+            .withRows(ImmutableMap.of("key", 1))
+            .withFixedDelay(SLOW_DELAY_MS)
+            .build());
+        fast.primingClient().prime(PrimingRequest.queryBuilder()
+            .withQuery("mock query")
+            .withRows(ImmutableMap.of("key", 1))
+            .build());
+
+        // V2 with a single connection per host, so that we know which connection a request used
+        cluster = Cluster.builder().addContactPoints(SLOW_ADDRESS, FAST_ADDRESS).withPort(port)
+            .withProtocolVersion(ProtocolVersion.V2)
+            .withLoadBalancingPolicy(new SortingLoadBalancingPolicy())
+            .withSpeculativeExecutionPolicy(new ConstantSpeculativeExecutionPolicy(SPECULATIVE_DELAY_MS, 1))
+            .withPoolingOptions(new PoolingOptions()
+                .setCoreConnectionsPerHost(HostDistance.LOCAL, 1)
+                .setMaxConnectionsPerHost(HostDistance.LOCAL, 1)
+                .setHeartbeatIntervalSeconds(0))
+            .withSocketOptions(new SocketOptions().setReadTimeoutMillis(10000))
+            .build();
+        session = cluster.connect();
+
+        slowHost = cluster.getMetadata().getHost(new InetSocketAddress(SLOW_ADDRESS, port));
+        fastHost = cluster.getMetadata().getHost(new InetSocketAddress(FAST_ADDRESS, port));
+        assertThat(slowHost).isNotNull();
+        assertThat(fastHost).isNotNull();
+    }
+
+    // Without this, the control connection would remove the node it is not connected to
+    private static void primePeer(Scassandra node, String peerAddress) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("peer", peerAddress);
+        row.put("rpc_address", peerAddress);
+        row.put("data_center", "dc1");
+        row.put("rack", "rack1");
+        row.put("release_version", "2.0.1");
+        row.put("tokens", Collections.emptyList());
+        node.primingClient().prime(PrimingRequest.queryBuilder()
+            .withQuery("SELECT * FROM system.peers")
+            .withColumnTypes(ImmutableMap.of("peer", ColumnTypes.Inet, "rpc_address", ColumnTypes.Inet, "tokens", ColumnTypes.VarcharSet))
+            .withRows(row)
+            .build());
+    }
+
+    @AfterMethod(groups = "short")
+    public void teardown() {
+        if (cluster != null)
+            cluster.close();
+        if (slow != null)
+            slow.stop();
+        if (fast != null)
+            fast.stop();
+    }
+
+    @Test(groups = "short")
+    public void should_use_response_of_speculative_execution_and_release_losing_stream() throws InterruptedException {
+        long start = System.nanoTime();
+        ResultSet rs = session.execute(new SimpleStatement("mock query").setIdempotent(true));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(rs.getExecutionInfo().getQueriedHost()).isEqualTo(fastHost);
+        assertThat(elapsedMs).isLessThan(SLOW_DELAY_MS);
+        Metrics.Errors errors = cluster.getMetrics().getErrorMetrics();
+        assertThat(errors.getSpeculativeExecutions().getCount()).isEqualTo(1);
+        assertThat(errors.getSpeculativeExecutionsWon().getCount()).isEqualTo(1);
+
+        // The losing execution gave its connection back right away, but its stream id stays reserved until the
+        // slow node replies, so that the late response can't be mistaken for another request's
+        PooledConnection slowConnection = singleConnection(slowHost);
+        assertThat(slowConnection.inFlight.get()).isEqualTo(0);
+        TimeUnit.MILLISECONDS.sleep(SLOW_DELAY_MS + 500);
+        assertThat(slowConnection.maxAvailableStreams()).isEqualTo(128);
+        assertThat(singleConnection(fastHost).inFlight.get()).isEqualTo(0);
+    }
+
+    @Test(groups = "short")
+    public void should_not_speculatively_execute_non_idempotent_statement() {
+        long start = System.nanoTime();
+        ResultSet rs = session.execute(new SimpleStatement("mock query").setIdempotent(false));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(rs.getExecutionInfo().getQueriedHost()).isEqualTo(slowHost);
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(SLOW_DELAY_MS);
+        assertThat(cluster.getMetrics().getErrorMetrics().getSpeculativeExecutions().getCount()).isEqualTo(0);
+        assertThat(singleConnection(slowHost).inFlight.get()).isEqualTo(0);
+    }
+
+    private PooledConnection singleConnection(Host host) {
+        HostConnectionPool pool = ((SessionManager)session).pools.get(host);
+        return ((DynamicConnectionPool)pool).connections.get(0);
+    }
+
+    /**
+     * Always tries the hosts in the order of their addresses, so that the slow node is queried first.
+     */
+    static class SortingLoadBalancingPolicy implements LoadBalancingPolicy {
+        private final SortedSet<Host> hosts = new ConcurrentSkipListSet<Host>(new Comparator<Host>() {
+            @Override
+            public int compare(Host host1, Host host2) {
+                return host1.getAddress().getHostAddress().compareTo(host2.getAddress().getHostAddress());
+            }
+        });
+
+        @Override
+        public void init(Cluster cluster, Collection<Host> hosts) {
+            this.hosts.addAll(hosts);
+        }
+
+        @Override
+        public HostDistance distance(Host host) {
+            return HostDistance.LOCAL;
+        }
+
+        @Override
+        public Iterator<Host> newQueryPlan(String loggedKeyspace, Statement statement) {
+            return Lists.newArrayList(hosts).iterator();
+        }
+
+        @Override
+        public void onAdd(Host host) {
+            onUp(host);
+        }
+
+        @Override
+        public void onUp(Host host) {
+            hosts.add(host);
+        }
+
+        @Override
+        public void onSuspected(Host host) {
+        }
+
+        @Override
+        public void onDown(Host host) {
+            hosts.remove(host);
+        }
+
+        @Override
+        public void onRemove(Host host) {
+            onDown(host);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.datastax.driver.core;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TableMetadataLoadingTest extends CCMBridge.PerClassSingleNodeCluster {
+
+    @Override
+    protected Collection<String> getTableDefinitions() {
+        return Lists.newArrayList(
+            "CREATE TABLE test1 (k int PRIMARY KEY, v int)",
+            "CREATE TABLE test2 (k int PRIMARY KEY, v int)"
+        );
+    }
+
+    private Cluster newCluster(QueryOptions queryOptions) {
+        return Cluster.builder()
+            .addContactPointsWithPorts(Collections.singletonList(hostAddress))
+            .withQueryOptions(queryOptions)
+            .build();
+    }
+
+    @Test(groups = "short")
+    public void should_load_table_metadata_on_demand() {
+        Cluster lazyCluster = newCluster(new QueryOptions().setTableMetadataLoading(QueryOptions.TableMetadataLoading.LAZY));
+        try {
+            Session lazySession = lazyCluster.connect(keyspace);
+            KeyspaceMetadata ksm = lazyCluster.getMetadata().getKeyspace(keyspace);
+            assertThat(ksm).isNotNull();
+
+            assertThat(ksm.getTable("test1")).isNotNull();
+            assertThat(ksm.getTable("unknown")).isNull();
+            assertThat(ksm.getTables()).hasSize(2);
+
+            // The routing key of prepared statements is still known
+            PreparedStatement ps = lazySession.prepare("INSERT INTO test2 (k, v) VALUES (?, ?)");
+            assertThat(ps.bind(1, 1).getRoutingKey()).isNotNull();
+
+            // The token map is not affected
+            assertThat(lazyCluster.getMetadata().getReplicas(keyspace, ps.bind(1, 1).getRoutingKey())).hasSize(1);
+        } finally {
+            lazyCluster.close();
+        }
+    }
+
+    @Test(groups = "short")
+    public void should_load_table_metadata_on_demand_once_it_is_created() throws InterruptedException {
+        Cluster lazyCluster = newCluster(new QueryOptions().setTableMetadataLoading(QueryOptions.TableMetadataLoading.LAZY));
+        try {
+            lazyCluster.init();
+            assertThat(lazyCluster.getMetadata().getKeyspace(keyspace).getTable("created_later")).isNull();
+
+            // The schema event for the new table makes the driver forget that it was missing
+            session.execute("CREATE TABLE created_later (k int PRIMARY KEY, v int)");
+            TableMetadata table = null;
+            for (int i = 0; i < 100 && table == null; i++) {
+                table = lazyCluster.getMetadata().getKeyspace(keyspace).getTable("created_later");
+                if (table == null)
+                    Thread.sleep(100);
+            }
+            assertThat(table).isNotNull();
+        } finally {
+            lazyCluster.close();
+        }
+    }
+
+    @Test(groups = "short")
+    public void should_not_load_table_metadata_of_excluded_keyspaces() {
+        Cluster filteredCluster = newCluster(new QueryOptions().setMetadataKeyspaces("system"));
+        try {
+            filteredCluster.init();
+            Metadata metadata = filteredCluster.getMetadata();
+            assertThat(metadata.getKeyspace(keyspace)).isNotNull();
+            assertThat(metadata.getKeyspace(keyspace).getTable("test1")).isNull();
+            assertThat(metadata.getKeyspace("system").getTable("local")).isNotNull();
+        } finally {
+            filteredCluster.close();
+        }
+    }
+
+    @Test(groups = "short")
+    public void should_never_load_table_metadata_if_disabled() {
+        Cluster noTablesCluster = newCluster(new QueryOptions().setTableMetadataLoading(QueryOptions.TableMetadataLoading.NONE));
+        try {
+            noTablesCluster.init();
+            Metadata metadata = noTablesCluster.getMetadata();
+            assertThat(metadata.getKeyspace(keyspace)).isNotNull();
+            assertThat(metadata.getKeyspace(keyspace).getTables()).isEmpty();
+            assertThat(metadata.getKeyspace("system").getTable("local")).isNull();
+        } finally {
+            noTablesCluster.close();
+        }
+    }
+}
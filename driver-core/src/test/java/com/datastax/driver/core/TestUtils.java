@@ -394,7 +394,7 @@ public abstract class TestUtils {
         ProtocolVersion protocolVersion = configuration.getProtocolOptions().getProtocolVersionEnum();
         return (protocolVersion.compareTo(ProtocolVersion.V3) < 0)
             ? configuration.getPoolingOptions().getCoreConnectionsPerHost(HostDistance.LOCAL)
-            : 1;
+            : configuration.getPoolingOptions().getCoreConnectionsPerHostV3(HostDistance.LOCAL);
     }
 
     /**
@@ -126,6 +126,28 @@ public abstract class TokenIntegrationTest {
         assertThat(foundRange).isNotNull();
     }
 
+    /**
+     * <p>
+     * Validates that {@link Session#scanAsync} reads every row of a table exactly once.
+     * </p>
+     *
+     * @test_category metadata:token
+     * @expected_result all rows are passed to the callback exactly once.
+     */
+    @Test(groups = "short")
+    public void should_scan_table_by_token_ranges() throws Exception {
+        final List<Integer> keys = Collections.synchronizedList(new ArrayList<Integer>());
+
+        session.scanAsync("test", "foo", 4, 8, new ScanCallback() {
+            @Override
+            public void onRow(Row row) {
+                keys.add(row.getInt("i"));
+            }
+        }).get();
+
+        assertThat(keys).containsOnly(1, 2, 3).hasSize(3);
+    }
+
     private List<Row> rangeQuery(PreparedStatement rangeStmt, TokenRange range) {
         List<Row> rows = Lists.newArrayList();
         for (TokenRange subRange : range.unwrap()) {
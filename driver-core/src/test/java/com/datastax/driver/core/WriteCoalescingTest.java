@@ -0,0 +1,55 @@
+package com.datastax.driver.core;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.scassandra.Scassandra;
+import org.scassandra.http.client.PrimingRequest;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteCoalescingTest {
+
+    @Test(groups = "short")
+    public void should_complete_all_requests_when_writes_are_coalesced() {
+        Scassandra scassandra = TestUtils.createScassandraServer();
+        Cluster cluster = null;
+
+        try {
+            scassandra.start();
+            scassandra.primingClient().prime(
+                PrimingRequest.queryBuilder()
+                    .withQuery("mock query")
+                    .withRows(ImmutableMap.of("key", 1))
+                    .build()
+            );
+
+            // Use small caps so that both the size and the count limits get hit during the test
+            cluster = Cluster.builder().addContactPoint("127.0.0.1").withPort(scassandra.getBinaryPort())
+                .withSocketOptions(new SocketOptions()
+                    .setWriteCoalescingEnabled(true)
+                    .setMaxCoalescedRequests(16)
+                    .setMaxCoalescedWriteBytes(256))
+                .withPoolingOptions(new PoolingOptions()
+                    .setCoreConnectionsPerHost(HostDistance.LOCAL, 1)
+                    .setMaxConnectionsPerHost(HostDistance.LOCAL, 1)
+                    .setHeartbeatIntervalSeconds(0))
+                .build();
+
+            Session session = cluster.connect();
+
+            List<ResultSetFuture> futures = Lists.newArrayList();
+            for (int i = 0; i < 100; i++)
+                futures.add(session.executeAsync("mock query"));
+
+            for (ResultSetFuture future : futures)
+                assertThat(future.getUninterruptibly().one().getInt("key")).isEqualTo(1);
+        } finally {
+            if (cluster != null)
+                cluster.close();
+            scassandra.stop();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.datastax.driver.core.policies;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+
+public class SpeculativeExecutionPolicyTest {
+
+    private final Statement statement = new SimpleStatement("SELECT * FROM system.local").setIdempotent(true);
+
+    @Test(groups = "unit")
+    public void should_never_schedule_with_no_speculative_execution_policy() {
+        SpeculativeExecutionPolicy.SpeculativeExecutionPlan plan = NoSpeculativeExecutionPolicy.INSTANCE.newPlan(null, statement);
+        assertThat(plan.nextExecution(null)).isLessThanOrEqualTo(0);
+    }
+
+    @Test(groups = "unit")
+    public void should_schedule_constant_delays_up_to_max() {
+        SpeculativeExecutionPolicy policy = new ConstantSpeculativeExecutionPolicy(50, 2);
+        SpeculativeExecutionPolicy.SpeculativeExecutionPlan plan = policy.newPlan(null, statement);
+
+        assertThat(plan.nextExecution(null)).isEqualTo(50);
+        assertThat(plan.nextExecution(null)).isEqualTo(50);
+        assertThat(plan.nextExecution(null)).isLessThanOrEqualTo(0);
+
+        // Each request gets its own plan
+        assertThat(policy.newPlan(null, statement).nextExecution(null)).isEqualTo(50);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void should_reject_non_positive_constant_delay() {
+        new ConstantSpeculativeExecutionPolicy(0, 1);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void should_reject_out_of_range_percentile() {
+        new PercentileSpeculativeExecutionPolicy(100.0, 1);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.stress;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+
+/**
+ * A consumer that sends requests at a fixed rate, whether or not the previous ones have completed (open loop).
+ * <p>
+ * Request {@code i} is scheduled to start at {@code start + i / rate}. If a request cannot be sent on time (because
+ * the scheduling thread was held up, or because the driver blocked waiting for a connection), the following ones are
+ * sent as soon as possible to catch up with the schedule, and their latency is measured from the time they should
+ * have been sent. Queueing delays thus show up in the reported latencies instead of being hidden by a lower request
+ * rate, which is what closed-loop consumers do when the cluster can't keep up (coordinated omission).
+ * <p>
+ * Requests are taken from the generators in turn, from a single thread.
+ */
+public class OpenLoopConsumer implements Consumer {
+
+    private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+
+    // The requests not completed yet, plus one while requests are being scheduled
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+    private final AtomicBoolean errorPrinted = new AtomicBoolean();
+
+    private final Session session;
+    private final QueryGenerator[] generators;
+    private final OpenLoopReporter reporter;
+    private final double intervalNanos;
+
+    private final Thread scheduler = new Thread("Open loop scheduler") {
+        @Override
+        public void run() {
+            schedule();
+        }
+    };
+
+    public OpenLoopConsumer(Session session,
+                            QueryGenerator[] generators,
+                            double rate,
+                            OpenLoopReporter reporter) {
+        if (rate <= 0)
+            throw new IllegalArgumentException("Rate must be strictly positive, got " + rate);
+        this.session = session;
+        this.generators = generators;
+        this.reporter = reporter;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.scheduler.setDaemon(true);
+    }
+
+    @Override
+    public void start() {
+        scheduler.start();
+    }
+
+    @Override
+    public void join() {
+        awaitUninterruptibly(shutdownLatch);
+    }
+
+    private void schedule() {
+        long start = System.nanoTime();
+        long i = 0;
+        int exhausted = 0;
+        int g = 0;
+        while (exhausted < generators.length) {
+            QueryGenerator generator = generators[g];
+            g = (g + 1) % generators.length;
+            if (!generator.hasNext()) {
+                ++exhausted;
+                continue;
+            }
+            exhausted = 0;
+
+            long intendedStart = start + (long)(i++ * intervalNanos);
+            long delay;
+            while ((delay = intendedStart - System.nanoTime()) > 0)
+                LockSupport.parkNanos(delay);
+
+            send(generator.next(), intendedStart);
+        }
+        done();
+    }
+
+    private void send(QueryGenerator.Request request, final long intendedStart) {
+        outstanding.incrementAndGet();
+        final long actualStart = System.nanoTime();
+        try {
+            ResultSetFuture future = request.executeAsync(session);
+            // Only records the latencies, no need to leave the I/O thread for that
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    reporter.record(intendedStart, actualStart, System.nanoTime(), false);
+                    done();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    failed(t, intendedStart, actualStart);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        } catch (RuntimeException e) {
+            failed(e, intendedStart, actualStart);
+        }
+    }
+
+    private void failed(Throwable t, long intendedStart, long actualStart) {
+        // Errors are counted by the reporter, only print the first one so that an overloaded cluster doesn't flood the console
+        if (errorPrinted.compareAndSet(false, true))
+            System.err.println("Error during request (further errors are only counted): " + t);
+        reporter.record(intendedStart, actualStart, System.nanoTime(), true);
+        done();
+    }
+
+    private void done() {
+        if (outstanding.decrementAndGet() == 0)
+            shutdownLatch.countDown();
+    }
+}
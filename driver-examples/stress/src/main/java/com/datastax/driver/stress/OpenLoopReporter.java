@@ -0,0 +1,244 @@
+/*
+ *      Copyright (C) 2012-2014 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.stress;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Reports the latencies of an {@link OpenLoopConsumer}, recorded in HdrHistograms.
+ * <p>
+ * Two latencies are recorded for each request, in microseconds:
+ * <ul>
+ *   <li>the latency from the time the request should have been sent, which includes any delay in sending it. This
+ *   is the one that matters to a client sending requests at that rate, and the one reported by default;</li>
+ *   <li>the service time, from the time the request was actually sent, which is what closed-loop tools report.</li>
+ * </ul>
+ * A large difference between the two means that requests queue up, and that the cluster (or the client) can't sustain
+ * the requested rate.
+ * <p>
+ * The percentiles of each one second interval are written to a CSV file, and the ones of each console period are
+ * printed on the console. The percentiles of the whole run are printed at the end.
+ */
+public class OpenLoopReporter implements Runnable {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder latencies = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder serviceTimes = new Recorder(SIGNIFICANT_DIGITS);
+    private final AtomicLong errors = new AtomicLong();
+
+    // Only accessed from the reporting thread (or after it has stopped)
+    private Histogram intervalLatencies;
+    private Histogram intervalServiceTimes;
+    private final Histogram consoleLatencies = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram consoleServiceTimes = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram totalLatencies = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram totalServiceTimes = new Histogram(SIGNIFICANT_DIGITS);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final File csvFile;
+    private final String header;
+    private final int consoleReportPeriod;
+    private final double targetRate;
+
+    private PrintStream csv;
+
+    private long startTime;
+    private long lastTimestamp;
+    private long lastErrors;
+    private long lastConsoleTimestamp;
+    private long lastConsoleErrors;
+    private int tickSinceLastConsoleReport;
+
+    public OpenLoopReporter(int consoleReportPeriod, String csvFileName, String[] args, double targetRate) {
+        this.consoleReportPeriod = consoleReportPeriod;
+        this.csvFile = new File(csvFileName);
+        this.header = formatHeader(args);
+        this.targetRate = targetRate;
+    }
+
+    private static String formatHeader(String[] args) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("stress");
+        for (String arg : args)
+            sb.append(' ').append(arg);
+        return sb.toString();
+    }
+
+    /**
+     * Records a completed request, all times being {@link System#nanoTime()} values.
+     */
+    public void record(long intendedStart, long actualStart, long end, boolean failed) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(end - intendedStart));
+        serviceTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(end - actualStart));
+        if (failed)
+            errors.incrementAndGet();
+    }
+
+    public void start() {
+        this.startTime = System.currentTimeMillis();
+        this.lastTimestamp = startTime;
+        this.lastConsoleTimestamp = startTime;
+        initConsole();
+        initCSV();
+
+        this.executor.scheduleAtFixedRate(this, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Report what was recorded since the last tick
+        report();
+        if (consoleLatencies.getTotalCount() > 0)
+            printToConsole(consoleLatencies, consoleServiceTimes, lastTimestamp, lastConsoleTimestamp, errors.get() - lastConsoleErrors);
+        csv.close();
+
+        printSummary();
+    }
+
+    @Override
+    public void run() {
+        report();
+    }
+
+    private void report() {
+        long tstamp = System.currentTimeMillis();
+        long errorCount = errors.get();
+
+        intervalLatencies = latencies.getIntervalHistogram(intervalLatencies);
+        intervalServiceTimes = serviceTimes.getIntervalHistogram(intervalServiceTimes);
+        totalLatencies.add(intervalLatencies);
+        totalServiceTimes.add(intervalServiceTimes);
+        consoleLatencies.add(intervalLatencies);
+        consoleServiceTimes.add(intervalServiceTimes);
+
+        reportToCSV(tstamp, errorCount - lastErrors);
+        lastTimestamp = tstamp;
+        lastErrors = errorCount;
+
+        if (++tickSinceLastConsoleReport < consoleReportPeriod)
+            return;
+
+        printToConsole(consoleLatencies, consoleServiceTimes, tstamp, lastConsoleTimestamp, errorCount - lastConsoleErrors);
+        consoleLatencies.reset();
+        consoleServiceTimes.reset();
+        tickSinceLastConsoleReport = 0;
+        lastConsoleTimestamp = tstamp;
+        lastConsoleErrors = errorCount;
+    }
+
+    private void initCSV() {
+        if (csvFile.exists())
+            if (!csvFile.delete())
+                throw new RuntimeException("File " + csvFile + " already exists and cannot delete it");
+
+        try {
+            if (!csvFile.createNewFile())
+                throw new RuntimeException("Unable to create report file " + csvFile);
+
+            csv = new PrintStream(new FileOutputStream(csvFile));
+
+            csv.println("# " + header);
+            csv.println("# latencies in milliseconds, measured from the intended start of each request; service_* from its actual start");
+            csv.println("# elapsed,interval_ops,interval_rate,errors,p50,p99,p999,max,service_p50,service_p99,service_p999,service_max");
+
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating report file " + csvFile, e);
+        }
+    }
+
+    private void reportToCSV(long tstamp, long intervalErrors) {
+        csv.println(new StringBuilder()
+                    .append(elapsedSeconds(tstamp)).append(',')
+                    .append(intervalLatencies.getTotalCount()).append(',')
+                    .append(rate(intervalLatencies, tstamp, lastTimestamp)).append(',')
+                    .append(intervalErrors).append(',')
+                    .append(percentiles(intervalLatencies)).append(',')
+                    .append(percentiles(intervalServiceTimes)));
+    }
+
+    private void initConsole() {
+        System.out.println(String.format("Target rate: %.1f ops/sec. Latencies (ms) are measured from the intended start of each request, service times from its actual start.", targetRate));
+        System.out.println(" Time (s) |   ops/sec | errors |    p50 |    p99 |  p99.9 |     max | service p50 | service p99 | service max");
+        System.out.println("--------------------------------------------------------------------------------------------------------------");
+    }
+
+    private void printToConsole(Histogram latencies, Histogram serviceTimes, long tstamp, long since, long intervalErrors) {
+        System.out.println(String.format(" %8d | %9.1f | %6d | %6.2f | %6.2f | %6.2f | %7.2f | %11.2f | %11.2f | %11.2f",
+                                         elapsedSeconds(tstamp),
+                                         rate(latencies, tstamp, since),
+                                         intervalErrors,
+                                         millis(latencies.getValueAtPercentile(50)),
+                                         millis(latencies.getValueAtPercentile(99)),
+                                         millis(latencies.getValueAtPercentile(99.9)),
+                                         millis(latencies.getMaxValue()),
+                                         millis(serviceTimes.getValueAtPercentile(50)),
+                                         millis(serviceTimes.getValueAtPercentile(99)),
+                                         millis(serviceTimes.getMaxValue())));
+    }
+
+    private void printSummary() {
+        long elapsed = lastTimestamp - startTime;
+
+        System.out.println();
+        System.out.println("For the whole run:");
+        System.out.println(String.format("  Target rate (ops/sec):          %10.1f", targetRate));
+        System.out.println(String.format("  Achieved rate (ops/sec):        %10.1f", elapsed == 0 ? 0.0 : totalLatencies.getTotalCount() * 1000.0 / elapsed));
+        System.out.println(String.format("  Errors:                         %10d", errors.get()));
+        System.out.println(String.format("  Mean latency (ms):              %10.3f", totalLatencies.getMean() / 1000));
+        System.out.println(String.format("  Median latency (ms):            %10.3f", millis(totalLatencies.getValueAtPercentile(50))));
+        System.out.println(String.format("  99th percentile latency (ms):   %10.3f", millis(totalLatencies.getValueAtPercentile(99))));
+        System.out.println(String.format("  99.9th percentile latency (ms): %10.3f", millis(totalLatencies.getValueAtPercentile(99.9))));
+        System.out.println(String.format("  Max latency (ms):               %10.3f", millis(totalLatencies.getMaxValue())));
+        System.out.println(String.format("  Median service time (ms):       %10.3f", millis(totalServiceTimes.getValueAtPercentile(50))));
+        System.out.println(String.format("  99th percentile service (ms):   %10.3f", millis(totalServiceTimes.getValueAtPercentile(99))));
+        System.out.println(String.format("  Max service time (ms):          %10.3f", millis(totalServiceTimes.getMaxValue())));
+    }
+
+    private long elapsedSeconds(long tstamp) {
+        return TimeUnit.MILLISECONDS.toSeconds(tstamp - startTime);
+    }
+
+    private static double rate(Histogram histogram, long tstamp, long since) {
+        long delay = tstamp - since;
+        return delay <= 0 ? 0.0 : histogram.getTotalCount() * 1000.0 / delay;
+    }
+
+    private static String percentiles(Histogram histogram) {
+        return new StringBuilder()
+               .append(millis(histogram.getValueAtPercentile(50))).append(',')
+               .append(millis(histogram.getValueAtPercentile(99))).append(',')
+               .append(millis(histogram.getValueAtPercentile(99.9))).append(',')
+               .append(millis(histogram.getMaxValue()))
+               .toString();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
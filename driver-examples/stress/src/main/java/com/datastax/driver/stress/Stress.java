@@ -53,6 +53,7 @@ public class Stress {
             accepts("n", "Number of requests to perform (default: unlimited)").withRequiredArg().ofType(Integer.class);
             accepts("t", "Level of concurrency to use").withRequiredArg().ofType(Integer.class).defaultsTo(50);
             accepts("async", "Make asynchronous requests instead of blocking ones");
+            accepts("rate", "Send requests at this fixed rate (requests/sec), without waiting for previous ones to complete, and measure latencies from when each request should have been sent (open loop)").withRequiredArg().ofType(Double.class);
             accepts("ip", "The hosts ip to connect to").withRequiredArg().ofType(String.class).defaultsTo("127.0.0.1");
             accepts("report-file", "The name of csv file to use for reporting results").withRequiredArg().ofType(String.class).defaultsTo("last.csv");
             accepts("print-delay", "The delay in seconds at which to report on the console").withRequiredArg().ofType(Integer.class).defaultsTo(5);
@@ -201,6 +202,7 @@ public class Stress {
         String reportFileName = (String)options.valueOf("report-file");
 
         boolean async = options.has("async");
+        Double rate = (Double)options.valueOf("rate");
 
         int iterations = (requests  == -1 ? -1 : requests / concurrency);
 
@@ -219,7 +221,7 @@ public class Stress {
         System.out.println("Initializing stress test:");
         System.out.println("  request count:        " + (requests == -1 ? "unlimited" : requests));
         System.out.println("  concurrency:          " + concurrency + " (" + iterations + " requests/thread)");
-        System.out.println("  mode:                 " + (async ? "asynchronous" : "blocking"));
+        System.out.println("  mode:                 " + (rate != null ? "open loop at " + rate + " requests/sec" : async ? "asynchronous" : "blocking"));
         System.out.println("  per-host connections: " + maxConnections);
         System.out.println("  compression:          " + options.has("compression"));
 
@@ -242,27 +244,44 @@ public class Stress {
             System.out.println("Preparing test...");
             stresser.prepare(session);
 
-            Reporter reporter = new Reporter((Integer)options.valueOf("print-delay"), reportFileName, args, requests);
+            if (rate != null) {
+                // A single consumer sends the requests of all the generators, concurrency is only bounded by the rate
+                OpenLoopReporter reporter = new OpenLoopReporter((Integer)options.valueOf("print-delay"), reportFileName, args, rate);
+                QueryGenerator[] generators = new QueryGenerator[concurrency];
+                for (int i = 0; i < concurrency; i++)
+                    generators[i] = stresser.newGenerator(i, session, iterations);
+                Consumer consumer = new OpenLoopConsumer(session, generators, rate, reporter);
 
-            Consumer[] consumers = new Consumer[concurrency];
-            for (int i = 0; i < concurrency; i++) {
-                QueryGenerator generator = stresser.newGenerator(i, session, iterations);
-                consumers[i] = async ? new AsynchronousConsumer(session, generator, reporter) :
-                                       new BlockingConsumer(session, generator, reporter);
-            }
+                System.out.println("Starting to stress test...");
+                System.out.println();
+
+                reporter.start();
+                consumer.start();
+                consumer.join();
+                reporter.stop();
+            } else {
+                Reporter reporter = new Reporter((Integer)options.valueOf("print-delay"), reportFileName, args, requests);
+
+                Consumer[] consumers = new Consumer[concurrency];
+                for (int i = 0; i < concurrency; i++) {
+                    QueryGenerator generator = stresser.newGenerator(i, session, iterations);
+                    consumers[i] = async ? new AsynchronousConsumer(session, generator, reporter) :
+                                           new BlockingConsumer(session, generator, reporter);
+                }
 
-            System.out.println("Starting to stress test...");
-            System.out.println();
+                System.out.println("Starting to stress test...");
+                System.out.println();
 
-            reporter.start();
+                reporter.start();
 
-            for (Consumer consumer : consumers)
-                consumer.start();
+                for (Consumer consumer : consumers)
+                    consumer.start();
 
-            for (Consumer consumer : consumers)
-                consumer.join();
+                for (Consumer consumer : consumers)
+                    consumer.join();
 
-            reporter.stop();
+                reporter.stop();
+            }
 
             System.out.println("Stress test successful.");
             System.exit(0);